@@ -0,0 +1,61 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The client's local file reads before an upload: the CRC32C that decides whether a file changed,
+// and the gzip copy made with client.compression=gzip.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientBenchmark {
+
+    @Param({"100000", "1000000"})
+    int rows;
+
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("01-01-2024-benchmark-", ".csv");
+        Files.write(file, SyntheticSales.generate("01-01-2024", rows, 100, 1000, 42));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long checksum() throws IOException {
+        return UploadManifest.checksum(file);
+    }
+
+    @Benchmark
+    public long compress() throws IOException {
+        Path compressed = UploadEngine.compress(file);
+        try {
+            return Files.size(compressed);
+        } finally {
+            Files.delete(compressed);
+        }
+    }
+}
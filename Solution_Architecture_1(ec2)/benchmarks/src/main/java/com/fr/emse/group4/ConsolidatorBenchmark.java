@@ -0,0 +1,98 @@
+package com.fr.emse.group4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Consolidator.processData over summaries held in memory, in either format, and the parsing of a
+// single summary (the CSV path is where amounts are parsed as text).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConsolidatorBenchmark {
+
+    @Param({"64"})
+    int files;
+
+    @Param({"100", "10000"})
+    int products;
+
+    @Param({"csv", "binary"})
+    String format;
+
+    private final Consolidator consolidator = new Consolidator();
+    private final SummaryStore store = new SummaryStore(new MemoryObjectStore(), SummaryWriter.OUTPUT_BUCKET);
+    private final List<String> keys = new ArrayList<>();
+    private String singleKey;
+    private byte[] singleSummary;
+    private PrintStream standardOut;
+
+    @Setup
+    public void setUp() throws IOException {
+        for (int i = 0; i < files; i++) {
+            byte[] file = SyntheticSales.generate("01-01-2024", 20_000, 50, products, i);
+            SalesAggregate aggregate = SalesFileReader.parse(new ByteArrayInputStream(file), true, Long.MAX_VALUE);
+            String key = SummaryManifest.summaryKey("01-01-2024-store-" + i + ".csv");
+            ByteArrayOutputStream summary = new ByteArrayOutputStream();
+            if ("binary".equals(format)) {
+                key += SummaryCodec.EXTENSION;
+                SummaryCodec.write(aggregate, summary);
+            } else {
+                try (Writer writer = new OutputStreamWriter(summary, StandardCharsets.UTF_8)) {
+                    SummaryCsvWriter.write(aggregate, writer);
+                }
+            }
+            store.put(key, summary.toByteArray());
+            keys.add(key);
+            if (i == 0) {
+                singleKey = key;
+                singleSummary = summary.toByteArray();
+            }
+        }
+
+        // processData prints the totals of every run
+        standardOut = System.out;
+        System.setOut(new PrintStream(new DiscardingOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(standardOut);
+        consolidator.close();
+    }
+
+    @Benchmark
+    public void processData() {
+        consolidator.processData(keys, store);
+    }
+
+    @Benchmark
+    public SalesAggregate readSummary() throws IOException {
+        SalesAggregate totals = new SalesAggregate();
+        consolidator.readSummary(singleKey, new ByteArrayInputStream(singleSummary), totals);
+        return totals;
+    }
+}
@@ -0,0 +1,23 @@
+package com.fr.emse.group4;
+
+import java.io.OutputStream;
+
+// Counts and drops what is written, standing in for an upload stream.
+final class DiscardingOutputStream extends OutputStream {
+
+    private long count;
+
+    @Override
+    public void write(int b) {
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        count += len;
+    }
+
+    long count() {
+        return count;
+    }
+}
@@ -0,0 +1,55 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The Lambda architecture's push model: every notification invokes the worker directly, with at
+// most `concurrency` invocations running and the rest waiting, as asynchronous invocations wait
+// for reserved concurrency. Each invocation first pays the given invoke latency.
+final class InvokingNotifier implements Notifier, AutoCloseable {
+
+    private final WorkerJavaApplication worker;
+    private final Latency invokeLatency;
+    private final ExecutorService invocations;
+
+    InvokingNotifier(WorkerJavaApplication worker, int concurrency, Latency invokeLatency) {
+        this.worker = worker;
+        this.invokeLatency = invokeLatency;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.invocations = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "invocation-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public List<String> sendBatch(List<String> bodies) {
+        for (String body : bodies) {
+            invocations.execute(() -> {
+                invokeLatency.pause();
+                try {
+                    worker.process(body);
+                } catch (IOException e) {
+                    System.err.println("Invocation failed for " + body + ": " + e.getMessage());
+                }
+            });
+        }
+        return new ArrayList<>();
+    }
+
+    @Override
+    public void close() {
+        invocations.shutdown();
+        try {
+            invocations.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.fr.emse.group4;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Latency injected into every call to a stand-in store or queue, taken uniformly between a
+// minimum and a maximum: "20" is a fixed 20 ms, "10-50" anything from 10 to 50 ms, "0" none.
+final class Latency {
+
+    private final long minMillis;
+    private final long maxMillis;
+    private final AtomicLong calls = new AtomicLong();
+
+    Latency(long minMillis, long maxMillis) {
+        if (minMillis < 0 || maxMillis < minMillis) {
+            throw new IllegalArgumentException("Invalid latency " + minMillis + "-" + maxMillis + " ms");
+        }
+        this.minMillis = minMillis;
+        this.maxMillis = maxMillis;
+    }
+
+    static Latency parse(String spec) {
+        int dash = spec.indexOf('-');
+        return dash < 0 ? new Latency(Long.parseLong(spec), Long.parseLong(spec))
+                : new Latency(Long.parseLong(spec.substring(0, dash)), Long.parseLong(spec.substring(dash + 1)));
+    }
+
+    void pause() {
+        calls.incrementAndGet();
+        long millis = minMillis == maxMillis ? minMillis : ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+        if (millis == 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long calls() {
+        return calls.get();
+    }
+
+    @Override
+    public String toString() {
+        return minMillis == maxMillis ? minMillis + " ms" : minMillis + "-" + maxMillis + " ms";
+    }
+}
@@ -0,0 +1,42 @@
+package com.fr.emse.group4;
+
+import java.util.List;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+// Adds the latency of an SQS request to every call on the worker's side of a stand-in queue.
+final class LatentMessageQueue implements MessageQueue {
+
+    private final MessageQueue delegate;
+    private final Latency latency;
+
+    LatentMessageQueue(MessageQueue delegate, Latency latency) {
+        this.delegate = delegate;
+        this.latency = latency;
+    }
+
+    @Override
+    public List<Message> receive(int maxMessages, int waitTimeSeconds, int visibilityTimeoutSeconds) {
+        List<Message> messages = delegate.receive(maxMessages, waitTimeSeconds, visibilityTimeoutSeconds);
+        latency.pause();
+        return messages;
+    }
+
+    @Override
+    public List<Message> deleteBatch(List<Message> messages) {
+        latency.pause();
+        return delegate.deleteBatch(messages);
+    }
+
+    @Override
+    public List<Message> changeVisibilityBatch(List<Message> messages, int visibilityTimeoutSeconds) {
+        latency.pause();
+        return delegate.changeVisibilityBatch(messages, visibilityTimeoutSeconds);
+    }
+
+    @Override
+    public long approximateBacklog() {
+        latency.pause();
+        return delegate.approximateBacklog();
+    }
+}
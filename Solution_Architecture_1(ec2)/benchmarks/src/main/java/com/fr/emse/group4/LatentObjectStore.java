@@ -0,0 +1,65 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+// Adds the latency of an S3 request to every call on a stand-in store. Uploads are buffered and
+// stored with one put, so each costs a single request whatever its size.
+final class LatentObjectStore implements ObjectStore {
+
+    private final ObjectStore delegate;
+    private final Latency latency;
+
+    LatentObjectStore(ObjectStore delegate, Latency latency) {
+        this.delegate = delegate;
+        this.latency = latency;
+    }
+
+    @Override
+    public StoredObject get(String bucketName, String key) throws IOException {
+        latency.pause();
+        return delegate.get(bucketName, key);
+    }
+
+    @Override
+    public StoredObject head(String bucketName, String key) throws IOException {
+        latency.pause();
+        return delegate.head(bucketName, key);
+    }
+
+    @Override
+    public InputStream openRange(String bucketName, String key, long start, long end) throws IOException {
+        latency.pause();
+        return delegate.openRange(bucketName, key, start, end);
+    }
+
+    @Override
+    public List<SummaryManifest.Entry> list(String bucketName, String prefix) throws IOException {
+        latency.pause();
+        return delegate.list(bucketName, prefix);
+    }
+
+    @Override
+    public String put(String bucketName, String key, byte[] content, String contentType, String contentEncoding) throws IOException {
+        latency.pause();
+        return delegate.put(bucketName, key, content, contentType, contentEncoding);
+    }
+
+    @Override
+    public String putIfMatch(String bucketName, String key, byte[] content, String contentType, String expectedETag) throws IOException {
+        latency.pause();
+        return delegate.putIfMatch(bucketName, key, content, contentType, expectedETag);
+    }
+
+    @Override
+    public ObjectUpload upload(String bucketName, String key, String contentEncoding) {
+        return new PutObjectUpload(this, bucketName, key, contentEncoding);
+    }
+
+    @Override
+    public void delete(String bucketName, String key) throws IOException {
+        latency.pause();
+        delegate.delete(bucketName, key);
+    }
+}
@@ -0,0 +1,326 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+// Pushes days x stores sales files through the whole pipeline in one JVM, without AWS: the
+// client's UploadEngine uploads them to a stand-in input bucket and notifies the workers, the
+// workers turn them into summaries, and the Consolidator consolidates every date. Buckets live in
+// memory (or in a directory with --storage <dir>) and the queue is an InMemoryMessageQueue; every
+// storage and queue call can be given the latency of the real service.
+//
+// In ec2 mode, --workers instances of WorkerJavaApplication long poll the queue with
+// --worker-concurrency threads each. In lambda mode the notifications invoke the worker's
+// processing directly, at most --lambda-concurrency at a time. Reports files/s, the end-to-end
+// latency of a file (submitted to the client until its input is deleted by the worker) and the
+// process CPU time per file.
+//   java -cp target/benchmarks.jar com.fr.emse.group4.LoadTest [--mode ec2|lambda] [--days N] [--stores N]
+//       [--rows N] [--products N] [--workers N] [--worker-concurrency N] [--lambda-concurrency N]
+//       [--client-concurrency N] [--rate files/s] [--storage memory|<dir>] [--storage-latency ms[-ms]]
+//       [--queue-latency ms[-ms]] [--invoke-latency ms[-ms]] [--compress] [--timeout s] [--verbose]
+public class LoadTest {
+
+    private static final String INPUT_BUCKET = "sales-data-input-bucket";
+    private static final String OUTPUT_BUCKET = "sales-data-output-bucket";
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    public static void main(String[] args) throws Exception {
+        String mode = "ec2";
+        int days = 7;
+        int stores = 10;
+        int rows = 20_000;
+        int products = 1000;
+        int workers = 1;
+        int workerConcurrency = Runtime.getRuntime().availableProcessors();
+        int lambdaConcurrency = 10;
+        int clientConcurrency = 16;
+        double rate = 0;
+        String storage = "memory";
+        Latency storageLatency = new Latency(0, 0);
+        Latency queueLatency = new Latency(0, 0);
+        Latency invokeLatency = new Latency(0, 0);
+        boolean compress = false;
+        long timeoutSeconds = 600;
+        boolean verbose = false;
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if ("--compress".equals(option)) {
+                compress = true;
+            } else if ("--verbose".equals(option)) {
+                verbose = true;
+            } else if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Unknown option or missing value: " + option);
+            } else if ("--mode".equals(option)) {
+                mode = args[++i];
+            } else if ("--days".equals(option)) {
+                days = Integer.parseInt(args[++i]);
+            } else if ("--stores".equals(option)) {
+                stores = Integer.parseInt(args[++i]);
+            } else if ("--rows".equals(option)) {
+                rows = Integer.parseInt(args[++i]);
+            } else if ("--products".equals(option)) {
+                products = Integer.parseInt(args[++i]);
+            } else if ("--workers".equals(option)) {
+                workers = Integer.parseInt(args[++i]);
+            } else if ("--worker-concurrency".equals(option)) {
+                workerConcurrency = Integer.parseInt(args[++i]);
+            } else if ("--lambda-concurrency".equals(option)) {
+                lambdaConcurrency = Integer.parseInt(args[++i]);
+            } else if ("--client-concurrency".equals(option)) {
+                clientConcurrency = Integer.parseInt(args[++i]);
+            } else if ("--rate".equals(option)) {
+                rate = Double.parseDouble(args[++i]);
+            } else if ("--storage".equals(option)) {
+                storage = args[++i];
+            } else if ("--storage-latency".equals(option)) {
+                storageLatency = Latency.parse(args[++i]);
+            } else if ("--queue-latency".equals(option)) {
+                queueLatency = Latency.parse(args[++i]);
+            } else if ("--invoke-latency".equals(option)) {
+                invokeLatency = Latency.parse(args[++i]);
+            } else if ("--timeout".equals(option)) {
+                timeoutSeconds = Long.parseLong(args[++i]);
+            } else {
+                throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if (!"ec2".equals(mode) && !"lambda".equals(mode)) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+
+        // The client reads the sales files from disk, as it does on EC2
+        Path directory = Files.createTempDirectory("load-test-");
+        List<String> dates = new ArrayList<>(days);
+        List<String> fileNames = new ArrayList<>(days * stores);
+        LocalDate firstDate = LocalDate.of(2024, 1, 1);
+        for (int day = 0; day < days; day++) {
+            String date = firstDate.plusDays(day).format(DATE_FORMAT);
+            dates.add(date);
+            for (int store = 1; store <= stores; store++) {
+                String fileName = date + "-store" + store + ".csv";
+                Files.write(directory.resolve(fileName), SyntheticSales.generate(date, rows, 1, products, (long) day * stores + store));
+                fileNames.add(fileName);
+            }
+        }
+        long inputBytes = Files.size(directory.resolve(fileNames.get(0))) * fileNames.size();
+
+        ObjectStore buckets = "memory".equals(storage) ? new MemoryObjectStore() : new FileObjectStore(Paths.get(storage));
+        TrackingStore store = new TrackingStore(new LatentObjectStore(buckets, storageLatency), fileNames.size());
+        InMemoryMessageQueue queue = new InMemoryMessageQueue();
+        MessageQueue workerQueue = new LatentMessageQueue(queue, queueLatency);
+
+        PrintStream standardOut = System.out;
+        if (!verbose) {
+            System.setOut(new PrintStream(new DiscardingOutputStream()));
+        }
+        long cpuStart = processCpuNanos();
+        long start = System.nanoTime();
+
+        List<WorkerJavaApplication> instances = new ArrayList<>();
+        List<Thread> workerThreads = new ArrayList<>();
+        Notifier notifier;
+        InvokingNotifier invoker = null;
+        if ("ec2".equals(mode)) {
+            for (int i = 0; i < workers; i++) {
+                WorkerJavaApplication worker = new WorkerJavaApplication(store, workerQueue);
+                int concurrency = workerConcurrency;
+                Thread thread = new Thread(() -> {
+                    try {
+                        worker.run(true, concurrency, 60, 1000L);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }, "worker-instance-" + (i + 1));
+                thread.start();
+                instances.add(worker);
+                workerThreads.add(thread);
+            }
+            notifier = new QueueNotifier(queue, queueLatency);
+        } else {
+            invoker = new InvokingNotifier(new WorkerJavaApplication(store, workerQueue), lambdaConcurrency, invokeLatency);
+            notifier = invoker;
+        }
+
+        NotificationBatcher notifications = new NotificationBatcher(notifier, 1000L);
+        UploadManifest manifest = UploadManifest.load(directory.resolve(".upload-manifest"));
+        UploadEngine engine = new UploadEngine(new ObjectStoreUploadStore(store, INPUT_BUCKET), INPUT_BUCKET, clientConcurrency,
+                notifications, manifest, compress);
+        for (int i = 0; i < fileNames.size(); i++) {
+            if (rate > 0) {
+                long due = start + (long) (i / rate * 1e9);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            store.submitted(fileNames.get(i));
+            engine.submit(directory.resolve(fileNames.get(i)), fileNames.get(i));
+        }
+        engine.close();
+
+        boolean complete = store.await(timeoutSeconds);
+        long elapsed = System.nanoTime() - start;
+        for (WorkerJavaApplication worker : instances) {
+            worker.stop();
+        }
+        queue.close();
+        for (Thread thread : workerThreads) {
+            thread.join();
+        }
+        if (invoker != null) {
+            invoker.close();
+        }
+        long cpu = processCpuNanos() - cpuStart;
+
+        // Every date consolidated from scratch, as the Operator does with --full
+        SummaryStore summaries = new SummaryStore(store, OUTPUT_BUCKET);
+        long consolidationStart = System.nanoTime();
+        try (Consolidator consolidator = new Consolidator()) {
+            for (String date : dates) {
+                try (InputStream content = summaries.open(SummaryManifest.manifestKey(date))) {
+                    consolidator.processDate(date, SummaryManifest.read(content).entries(), summaries, false);
+                } catch (IOException e) {
+                    System.err.println("Could not consolidate date " + date + ": " + e.getMessage());
+                }
+            }
+        }
+        long consolidation = System.nanoTime() - consolidationStart;
+        System.setOut(standardOut);
+
+        List<Long> latencies = store.latencies();
+        int processed = latencies.size();
+        System.out.println("Load test in " + mode + " mode: " + days + " days x " + stores + " stores, " + rows + " rows per file ("
+                + inputBytes / fileNames.size() / 1024 + " KB), " + products + " products");
+        if ("ec2".equals(mode)) {
+            System.out.println("  workers: " + workers + " x " + workerConcurrency + " threads, queue latency " + queueLatency);
+        } else {
+            System.out.println("  Lambda concurrency: " + lambdaConcurrency + ", invoke latency " + invokeLatency);
+        }
+        System.out.println("  storage: " + storage + ", latency " + storageLatency + "; client: " + clientConcurrency + " threads"
+                + (rate > 0 ? ", " + rate + " files/s offered" : ", all files at once") + (compress ? ", gzip" : ""));
+        System.out.printf("  files:        %d of %d processed in %.1f s, %.1f files/s, %.1f MB/s%n", processed, fileNames.size(),
+                elapsed / 1e9, processed / (elapsed / 1e9), inputBytes * ((double) processed / fileNames.size()) / (elapsed / 1e9) / (1024 * 1024));
+        if (processed > 0) {
+            System.out.printf("  end-to-end:   p50 %d ms, p99 %d ms, max %d ms%n", percentile(latencies, 50), percentile(latencies, 99),
+                    percentile(latencies, 100));
+            System.out.printf("  CPU per file: %.1f ms (whole process, GC included)%n", cpu / 1e6 / processed);
+        }
+        System.out.printf("  consolidation: %d dates in %d ms%n", dates.size(), TimeUnit.NANOSECONDS.toMillis(consolidation));
+        System.out.println("  requests:     " + storageLatency.calls() + " storage, " + queue.apiCalls() + " queue, "
+                + queue.redeliveries() + " redeliveries");
+        if (!complete) {
+            System.out.println("  timed out after " + timeoutSeconds + " s with " + (fileNames.size() - processed) + " files not processed");
+        }
+        deleteRecursively(directory);
+        System.exit(complete ? 0 : 1);
+    }
+
+    // Latency at the given percentile, in milliseconds, of a sorted list of nanoseconds
+    private static long percentile(List<Long> sortedNanos, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sortedNanos.size()) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sortedNanos.get(Math.max(0, index)));
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        Files.walk(directory).forEach(paths::add);
+        Collections.reverse(paths);
+        for (Path path : paths) {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    // Notes when each file is submitted to the client and when the worker deletes it from the input
+    // bucket, which it does once its summaries are stored and in the manifest.
+    private static final class TrackingStore implements ObjectStore {
+        private final ObjectStore delegate;
+        private final Map<String, Long> submitted = new ConcurrentHashMap<>();
+        private final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        private final CountDownLatch done;
+
+        TrackingStore(ObjectStore delegate, int files) {
+            this.delegate = delegate;
+            this.done = new CountDownLatch(files);
+        }
+
+        void submitted(String fileName) {
+            submitted.put(fileName, System.nanoTime());
+        }
+
+        boolean await(long timeoutSeconds) throws InterruptedException {
+            return done.await(timeoutSeconds, TimeUnit.SECONDS);
+        }
+
+        List<Long> latencies() {
+            List<Long> sorted;
+            synchronized (latencies) {
+                sorted = new ArrayList<>(latencies);
+            }
+            Collections.sort(sorted);
+            return sorted;
+        }
+
+        @Override
+        public StoredObject get(String bucketName, String key) throws IOException {
+            return delegate.get(bucketName, key);
+        }
+
+        @Override
+        public StoredObject head(String bucketName, String key) throws IOException {
+            return delegate.head(bucketName, key);
+        }
+
+        @Override
+        public InputStream openRange(String bucketName, String key, long start, long end) throws IOException {
+            return delegate.openRange(bucketName, key, start, end);
+        }
+
+        @Override
+        public List<SummaryManifest.Entry> list(String bucketName, String prefix) throws IOException {
+            return delegate.list(bucketName, prefix);
+        }
+
+        @Override
+        public String put(String bucketName, String key, byte[] content, String contentType, String contentEncoding) throws IOException {
+            return delegate.put(bucketName, key, content, contentType, contentEncoding);
+        }
+
+        @Override
+        public String putIfMatch(String bucketName, String key, byte[] content, String contentType, String expectedETag) throws IOException {
+            return delegate.putIfMatch(bucketName, key, content, contentType, expectedETag);
+        }
+
+        @Override
+        public ObjectUpload upload(String bucketName, String key, String contentEncoding) throws IOException {
+            return delegate.upload(bucketName, key, contentEncoding);
+        }
+
+        @Override
+        public void delete(String bucketName, String key) throws IOException {
+            delegate.delete(bucketName, key);
+            Long start = INPUT_BUCKET.equals(bucketName) ? submitted.remove(SalesFileReader.uncompressedName(key)) : null;
+            if (start != null) {
+                latencies.add(System.nanoTime() - start);
+                done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// The client's input bucket on a worker ObjectStore, so the client and the workers share one
+// stand-in bucket.
+final class ObjectStoreUploadStore implements UploadStore {
+
+    private final ObjectStore store;
+    private final String bucketName;
+
+    ObjectStoreUploadStore(ObjectStore store, String bucketName) {
+        this.store = store;
+        this.bucketName = bucketName;
+    }
+
+    @Override
+    public void createBucketIfMissing() {
+        // Stand-in buckets are created on first use
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        try (StoredObject object = store.get(bucketName, key)) {
+            return object != null;
+        }
+    }
+
+    @Override
+    public void put(String key, Path file, String contentEncoding) throws IOException {
+        store.put(bucketName, key, Files.readAllBytes(file), "text/csv", contentEncoding);
+    }
+}
@@ -0,0 +1,25 @@
+package com.fr.emse.group4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The client's notifications sent to a stand-in queue, one batch call at a time like SqsNotifier.
+final class QueueNotifier implements Notifier {
+
+    private final InMemoryMessageQueue queue;
+    private final Latency latency;
+
+    QueueNotifier(InMemoryMessageQueue queue, Latency latency) {
+        this.queue = queue;
+        this.latency = latency;
+    }
+
+    @Override
+    public List<String> sendBatch(List<String> bodies) {
+        latency.pause();
+        for (String body : bodies) {
+            queue.send(body);
+        }
+        return new ArrayList<>();
+    }
+}
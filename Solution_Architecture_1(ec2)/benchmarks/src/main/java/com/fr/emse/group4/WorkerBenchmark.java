@@ -0,0 +1,71 @@
+package com.fr.emse.group4;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The worker's processFile path without S3: parsing and aggregating a sales file held in memory,
+// then writing its summary as CSV (SummaryCsvWriter) and in the binary format.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkerBenchmark {
+
+    @Param({"100000"})
+    int rows;
+
+    @Param({"10", "1000"})
+    int stores;
+
+    @Param({"100", "10000"})
+    int products;
+
+    private byte[] file;
+    private SalesAggregate aggregate;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = SyntheticSales.generate("01-01-2024", rows, stores, products, 42);
+        aggregate = SalesFileReader.parse(new ByteArrayInputStream(file), true, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public SalesAggregate parseAndAggregate() throws IOException {
+        return SalesFileReader.parse(new ByteArrayInputStream(file), true, Long.MAX_VALUE);
+    }
+
+    @Benchmark
+    public long writeCsvSummary() throws IOException {
+        DiscardingOutputStream out = new DiscardingOutputStream();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024)) {
+            SummaryCsvWriter.write(aggregate, writer);
+        }
+        return out.count();
+    }
+
+    @Benchmark
+    public long writeBinarySummary() throws IOException {
+        DiscardingOutputStream out = new DiscardingOutputStream();
+        SummaryCodec.write(aggregate, out);
+        return out.count();
+    }
+}
@@ -0,0 +1,40 @@
+package com.fr.emse.group4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.SendMessageBatchRequestEntry;
+
+final class SqsNotifier implements Notifier {
+
+    private final SqsClient sqsClient;
+    private final String queueURL;
+
+    SqsNotifier(SqsClient sqsClient, String queueURL) {
+        this.sqsClient = sqsClient;
+        this.queueURL = queueURL;
+    }
+
+    @Override
+    public List<String> sendBatch(List<String> bodies) {
+        List<SendMessageBatchRequestEntry> entries = new ArrayList<>(bodies.size());
+        for (int i = 0; i < bodies.size(); i++) {
+            entries.add(SendMessageBatchRequestEntry.builder()
+                    .id(String.valueOf(i))
+                    .messageBody(bodies.get(i))
+                    .build());
+        }
+        SendMessageBatchRequest request = SendMessageBatchRequest.builder()
+                .queueUrl(queueURL)
+                .entries(entries)
+                .build();
+        List<String> failed = new ArrayList<>();
+        for (BatchResultErrorEntry error : sqsClient.sendMessageBatch(request).failed()) {
+            failed.add(bodies.get(Integer.parseInt(error.id())));
+        }
+        return failed;
+    }
+}
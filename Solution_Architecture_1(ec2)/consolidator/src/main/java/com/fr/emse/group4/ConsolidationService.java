@@ -0,0 +1,240 @@
+package com.fr.emse.group4;
+
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// A long-running Operator: keeps one store client, one Consolidator and the totals of recently
+// queried dates, and answers over HTTP on localhost with the same reports the Operator prints.
+//   GET /date?date=01-01-2024[&store=..][&product=..]
+//   GET /range?from=01-01-2024&to=07-01-2024[&store=..][&product=..]
+//   GET /stats
+public class ConsolidationService {
+
+    private final AggregateCache cache;
+    private final ExecutorService datePool;
+    private final int maxRangeDays;
+
+    // Ranges of more than maxRangeDays dates are refused, so one query cannot fill the cache and
+    // the date pool
+    ConsolidationService(AggregateCache cache, int parallel, int maxRangeDays) {
+        this.cache = cache;
+        this.datePool = Executors.newFixedThreadPool(parallel);
+        this.maxRangeDays = maxRangeDays;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String localDirectory = null;
+        int port = 8080;
+        int threads = 8;
+        int parallel = 8;
+        long cacheMB = Long.getLong("service.cacheMB", 256L);
+        long revalidateSeconds = 30;
+        int maxRangeDays = Integer.getInteger("service.maxRangeDays", 366);
+        for (int i = 0; i < args.length; i++) {
+            if ("--local".equals(args[i]) && i + 1 < args.length) {
+                localDirectory = args[++i];
+            } else if ("--port".equals(args[i]) && i + 1 < args.length) {
+                port = Integer.parseInt(args[++i]);
+            } else if ("--threads".equals(args[i]) && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if ("--parallel".equals(args[i]) && i + 1 < args.length) {
+                parallel = Integer.parseInt(args[++i]);
+            } else if ("--cache-mb".equals(args[i]) && i + 1 < args.length) {
+                cacheMB = Long.parseLong(args[++i]);
+            } else if ("--revalidate-seconds".equals(args[i]) && i + 1 < args.length) {
+                revalidateSeconds = Long.parseLong(args[++i]);
+            } else if ("--max-range-days".equals(args[i]) && i + 1 < args.length) {
+                maxRangeDays = Integer.parseInt(args[++i]);
+            }
+        }
+
+        SummaryStore store;
+        if (localDirectory != null) {
+            store = SummaryStore.local(Paths.get(localDirectory));
+        } else {
+            store = SummaryStore.s3(AmazonS3ClientBuilder.defaultClient(), "sales-data-output-bucket");
+        }
+
+        Consolidator consolidator = new Consolidator();
+        AggregateCache cache = new AggregateCache(new AggregateCache.Source() {
+            @Override
+            public List<SummaryManifest.Entry> summaries(String date) throws IOException {
+                return Operator.summariesOf(store, date, false);
+            }
+
+            @Override
+            public SalesAggregate consolidate(String date, List<SummaryManifest.Entry> summaries) throws IOException {
+                return consolidator.consolidateDate(date, summaries, store, true);
+            }
+        }, cacheMB * 1024 * 1024, TimeUnit.SECONDS.toNanos(revalidateSeconds));
+        ConsolidationService service = new ConsolidationService(cache, Math.max(1, parallel), Math.max(1, maxRangeDays));
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/date", service::handleDate);
+        server.createContext("/range", service::handleRange);
+        server.createContext("/stats", service::handleStats);
+        server.setExecutor(Executors.newFixedThreadPool(Math.max(1, threads)));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(0);
+            service.datePool.shutdownNow();
+            consolidator.close();
+            Metrics.dump();
+        }));
+        server.start();
+        System.out.println("Consolidation service listening on http://localhost:" + port + " with a " + cacheMB + " MB cache");
+    }
+
+    private void handleDate(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        Map<String, List<String>> query = query(exchange);
+        String date = first(query, "date");
+        if (date == null) {
+            respond(exchange, 400, "Give the date as ?date=DD-MM-YYYY\n", null, start);
+            return;
+        }
+        AggregateCache.Result result;
+        try {
+            result = cache.get(date);
+        } catch (IOException e) {
+            System.err.println("Failed to consolidate date " + date + ": " + e.getMessage());
+            respond(exchange, 500, "Failed to consolidate date " + date + ": " + e.getMessage() + "\n", null, start);
+            return;
+        }
+        if (result.totals == null) {
+            respond(exchange, 404, "No files found for the given date: " + date + "\n", result.hit, start);
+            return;
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(body, false, "UTF-8")) {
+            Consolidator.writeResults(Operator.filter(result.totals, values(query, "store"), values(query, "product")), out);
+        }
+        respond(exchange, 200, body, result.hit, start);
+    }
+
+    private void handleRange(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        Map<String, List<String>> query = query(exchange);
+        String from = first(query, "from");
+        String to = first(query, "to");
+        if (from == null && to == null) {
+            respond(exchange, 400, "Give the range as ?from=DD-MM-YYYY&to=DD-MM-YYYY (or YYYY-MM-DD)\n", null, start);
+            return;
+        }
+        List<String> dates;
+        try {
+            dates = Operator.datesBetween(from != null ? from : to, to != null ? to : from, maxRangeDays);
+        } catch (DateTimeParseException e) {
+            respond(exchange, 400, "Dates must be given as DD-MM-YYYY or YYYY-MM-DD: " + e.getParsedString() + "\n", null, start);
+            return;
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage() + "\n", null, start);
+            return;
+        }
+
+        List<Future<AggregateCache.Result>> results = new ArrayList<>(dates.size());
+        for (String date : dates) {
+            results.add(datePool.submit(() -> cache.get(date)));
+        }
+        List<Operator.DayResult> days = new ArrayList<>(dates.size());
+        boolean hit = true;
+        try {
+            for (int i = 0; i < dates.size(); i++) {
+                try {
+                    AggregateCache.Result result = results.get(i).get();
+                    days.add(new Operator.DayResult(dates.get(i), result.totals, null));
+                    hit &= result.hit;
+                } catch (ExecutionException e) {
+                    days.add(new Operator.DayResult(dates.get(i), null, Operator.failureOf(e)));
+                    hit = false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            results.forEach(result -> result.cancel(true));
+            respond(exchange, 503, "Interrupted while consolidating dates\n", null, start);
+            return;
+        }
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (PrintStream out = new PrintStream(body, false, "UTF-8")) {
+            Operator.writeRangeReport(days, values(query, "store"), values(query, "product"), out);
+        }
+        respond(exchange, 200, body, hit, start);
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        respond(exchange, 200, cache.stats(), null, System.nanoTime());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body, Boolean hit, long start) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(body.getBytes(StandardCharsets.UTF_8));
+        respond(exchange, status, bytes, hit, start);
+    }
+
+    // X-Cache tells whether every date asked for was answered from the cache
+    private static void respond(HttpExchange exchange, int status, ByteArrayOutputStream body, Boolean hit, long start) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        if (hit != null) {
+            exchange.getResponseHeaders().set("X-Cache", hit ? "hit" : "miss");
+        }
+        long elapsed = System.nanoTime() - start;
+        exchange.getResponseHeaders().set("X-Elapsed-Micros", Long.toString(TimeUnit.NANOSECONDS.toMicros(elapsed)));
+        exchange.sendResponseHeaders(status, body.size());
+        try (OutputStream out = exchange.getResponseBody()) {
+            body.writeTo(out);
+        }
+        Metrics.recordLatency("query", elapsed);
+        Metrics.dumpIfDue();
+    }
+
+    private static Map<String, List<String>> query(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, List<String>> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                String name = URLDecoder.decode(pair.substring(0, equals), "UTF-8");
+                String value = URLDecoder.decode(pair.substring(equals + 1), "UTF-8");
+                parameters.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+            }
+        }
+        return parameters;
+    }
+
+    private static String first(Map<String, List<String>> query, String name) {
+        List<String> values = query.get(name);
+        return values == null ? null : values.get(0);
+    }
+
+    private static Set<String> values(Map<String, List<String>> query, String name) {
+        List<String> values = query.get(name);
+        return values == null ? Collections.emptySet() : new HashSet<>(values);
+    }
+}
@@ -2,113 +2,299 @@ package com.fr.emse.group4;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.opencsv.CSVReader;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
-import java.text.DecimalFormat;
-import java.util.*;
-import java.util.Map.Entry;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
-public class Consolidator {
+// One instance keeps CONCURRENCY daemon threads that every consolidation shares, so several dates
+// can be consolidated at the same time without each starting its own pool.
+public class Consolidator implements AutoCloseable {
+
+    // Summaries fetched and parsed at the same time
+    private static final int CONCURRENCY = Integer.getInteger("consolidator.concurrency", 16);
+    // Summaries written with summary.compression=gzip
+    private static final String GZIP_SUFFIX = ".gz";
+    // A bad summary would otherwise log every one of its rows
+    private static final SampledLog ROW_ERRORS = new SampledLog(10, 1000);
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(CONCURRENCY, runnable -> {
+        Thread thread = new Thread(runnable, "consolidator-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
 
     public void processData(List<S3ObjectSummary> objects, String bucketName) {
         AmazonS3 s3Client = AmazonS3ClientBuilder.defaultClient();
-        Map<String, Double> profitOfEachStoreList = new HashMap<>();
-        Map<String, Double> quantitySoldProductList = new HashMap<>();
-        Map<String, Double> profitEachProductList = new HashMap<>();
-        Map<String, Double> soldEachProductList = new HashMap<>();
-        Double totalRetailersProfit = 0.0;
-
+        List<String> keys = new ArrayList<>();
         for (S3ObjectSummary obj : objects) {
-            try (S3Object s3Object = s3Client.getObject(bucketName, obj.getKey());
-                 InputStreamReader streamReader = new InputStreamReader(s3Object.getObjectContent(), StandardCharsets.UTF_8);
-                 BufferedReader reader = new BufferedReader(streamReader)) {
+            keys.add(obj.getKey());
+        }
+        processData(keys, SummaryStore.s3(s3Client, bucketName));
+    }
 
-                String line;
-                boolean isFirstLine = true;
+    public void processData(List<String> summaryKeys, SummaryStore store) {
+        List<SummaryManifest.Entry> summaries = new ArrayList<>(summaryKeys.size());
+        for (String key : summaryKeys) {
+            summaries.add(new SummaryManifest.Entry(key, -1, ""));
+        }
+        SalesAggregate totals = new SalesAggregate();
+        fold(preferBinary(summaries), store, totals);
+        displayResults(totals);
+    }
 
-                while ((line = reader.readLine()) != null) {
-                    if (isFirstLine) {
-                        isFirstLine = false;
-                        continue;
-                    }
+    // Consolidates a date on top of the state saved by the previous run, reading only the summaries
+    // added since. If a summary that was already folded in has changed or disappeared, the date is
+    // recomputed from scratch.
+    public void processDate(String date, List<SummaryManifest.Entry> summaryEntries, SummaryStore store, boolean incremental) throws IOException {
+        displayResults(consolidateDate(date, summaryEntries, store, incremental));
+    }
 
-                    String[] rows = line.replace("\"", "").split(",");
-                    if (rows.length < 5) {
-                        System.err.println("Unexpected number of columns in row: " + line);
-                        continue;
-                    }
+    // processDate without printing the totals; may be called for several dates at once
+    @SuppressWarnings("try")
+    SalesAggregate consolidateDate(String date, List<SummaryManifest.Entry> summaryEntries, SummaryStore store, boolean incremental) throws IOException {
+        List<SummaryManifest.Entry> summaries = preferBinary(summaryEntries);
+        ConsolidationState state = incremental ? ConsolidationState.load(store, date) : null;
+        if (state != null && !state.isConsistentWith(summaries)) {
+            System.out.println("Summaries consolidated earlier have changed; recomputing date: " + date);
+            state = null;
+        }
+        if (state == null) {
+            state = new ConsolidationState();
+        }
+
+        List<SummaryManifest.Entry> pending = state.pending(summaries);
+        System.out.println((summaries.size() - pending.size()) + " of " + summaries.size() + " files already consolidated for date: " + date);
+        List<SummaryManifest.Entry> folded = fold(pending, store, state.totals);
+        if (!folded.isEmpty() || !incremental) {
+            state.addAll(folded);
+            try (StageTimer timer = Metrics.start("state", date)) {
+                state.save(store, date);
+            }
+        }
+        return state.totals;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
 
-                    String type = rows[0].trim().toLowerCase();
-                    String name = rows[1].trim();
-                    Double quantity = type.equals("product") ? parseDouble(rows[2]) : 0.0;
-                    Double sold = type.equals("product") ? parseDouble(rows[3]) : 0.0;
-                    Double profit = parseDouble(rows[4]);
-
-                    if ("product".equals(type)) {
-                        quantitySoldProductList.merge(name, quantity, Double::sum);
-                        profitEachProductList.merge(name, profit, Double::sum);
-                        soldEachProductList.merge(name, sold, Double::sum);
-                    } else if ("store".equals(type)) {
-                        profitOfEachStoreList.merge(name, profit, Double::sum);
-                        totalRetailersProfit += profit;
-                    } else {
-                        System.err.println("Unknown type in row: " + line);
+    // Reads the summaries concurrently and adds them to the totals; returns those read successfully.
+    // Per summary, the time to open and read it is recorded as the fetch stage, parsing it as the
+    // decode stage and adding it to a partial aggregate as the merge stage.
+    private List<SummaryManifest.Entry> fold(List<SummaryManifest.Entry> summaries, SummaryStore store, SalesAggregate totals) {
+        long start = System.nanoTime();
+        if (summaries.isEmpty()) {
+            return summaries;
+        }
+        int threads = Math.max(1, Math.min(CONCURRENCY, summaries.size()));
+        AtomicInteger next = new AtomicInteger();
+        List<SummaryManifest.Entry> folded = Collections.synchronizedList(new ArrayList<>());
+
+        // Each thread keeps taking the next summary and adds it to its own partial aggregate. A
+        // summary is read into its own aggregate first so that one failing halfway adds nothing.
+        List<Future<SalesAggregate>> partials = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            partials.add(pool.submit(() -> {
+                SalesAggregate partial = new SalesAggregate();
+                int index;
+                while ((index = next.getAndIncrement()) < summaries.size()) {
+                    SummaryManifest.Entry summary = summaries.get(index);
+                    SalesAggregate file = new SalesAggregate();
+                    try (StageTimer timer = Metrics.start("decode", summary.key)) {
+                        long openStart = System.nanoTime();
+                        try (TimedInputStream content = new TimedInputStream(store.open(summary.key))) {
+                            long openNanos = System.nanoTime() - openStart;
+                            readSummary(summary.key, content, file);
+                            timer.bytes(content.bytes()).ioWait("fetch", openNanos + content.nanos());
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        System.err.println("Error processing file: " + summary.key + " - " + e.getMessage());
+                        continue;
                     }
+                    long mergeStart = System.nanoTime();
+                    partial.merge(file);
+                    Metrics.recordLatency("merge", System.nanoTime() - mergeStart);
+                    folded.add(summary);
                 }
+                return partial;
+            }));
+        }
 
-            } catch (IOException e) {
-                System.err.println("Error processing file: " + obj.getKey() + " - " + e.getMessage());
+        try {
+            for (Future<SalesAggregate> partial : partials) {
+                totals.merge(partial.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            for (Future<SalesAggregate> partial : partials) {
+                partial.cancel(true);
             }
+            throw new IllegalStateException("Interrupted while consolidating summaries", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error occurred while consolidating summaries", e.getCause());
+        }
+        long nanos = System.nanoTime() - start;
+        Metrics.recordLatency("consolidate", nanos);
+        Metrics.increment("summaries", folded.size());
+        System.out.println("Consolidated " + summaries.size() + " files with " + threads + " threads in "
+                + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms.");
+        return folded;
+    }
+
+    void readSummary(String key, InputStream content, SalesAggregate totals) throws IOException {
+        if (key.endsWith(GZIP_SUFFIX)) {
+            readSummary(uncompressedKey(key), new GZIPInputStream(content, 64 * 1024), totals);
+        } else if (key.endsWith(SummaryCodec.EXTENSION)) {
+            SummaryCodec.read(content, totals);
+        } else {
+            readCsvSummary(content, totals);
         }
+    }
 
-        displayResults(profitOfEachStoreList, quantitySoldProductList, profitEachProductList, soldEachProductList, totalRetailersProfit);
+    private static String uncompressedKey(String key) {
+        return key.endsWith(GZIP_SUFFIX) ? key.substring(0, key.length() - GZIP_SUFFIX.length()) : key;
     }
 
-    private Double parseDouble(String value) {
+    private void readCsvSummary(InputStream content, SalesAggregate totals) throws IOException {
+        CSVReader reader = new CSVReader(new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8)));
+        String[] rows;
+        boolean isFirstLine = true;
+
+        while ((rows = reader.readNext()) != null) {
+            if (isFirstLine) {
+                isFirstLine = false;
+                continue;
+            }
+
+            if (rows.length < 5) {
+                String[] row = rows;
+                ROW_ERRORS.log(System.err::println, () -> "Unexpected number of columns in row: " + String.join(",", row));
+                continue;
+            }
+
+            String type = rows[0].trim().toLowerCase();
+            String name = rows[1].trim();
+
+            if ("product".equals(type)) {
+                totals.addProduct(name, parseQuantity(rows[2]), parseCents(rows[3]), parseCents(rows[4]));
+            } else if ("store".equals(type)) {
+                totals.addStore(name, parseCents(rows[4]));
+            } else {
+                String[] row = rows;
+                ROW_ERRORS.log(System.err::println, () -> "Unknown type in row: " + String.join(",", row));
+            }
+        }
+    }
+
+    // A file summarised in both formats is only read once, from its binary summary
+    private static List<SummaryManifest.Entry> preferBinary(List<SummaryManifest.Entry> summaries) {
+        Set<String> binaryKeys = new HashSet<>();
+        for (SummaryManifest.Entry summary : summaries) {
+            String key = uncompressedKey(summary.key);
+            if (key.endsWith(SummaryCodec.EXTENSION)) {
+                binaryKeys.add(key);
+            }
+        }
+        List<SummaryManifest.Entry> selected = new ArrayList<>(summaries.size());
+        for (SummaryManifest.Entry summary : summaries) {
+            if (!binaryKeys.contains(uncompressedKey(summary.key) + SummaryCodec.EXTENSION)) {
+                selected.add(summary);
+            }
+        }
+        return selected;
+    }
+
+    // Amounts are summed as cents; summaries may hold plain or scientific notation
+    private long parseCents(String value) {
         if (value == null || value.trim().isEmpty()) {
-            return 0.0;
+            return 0;
         }
 
         try {
-            // Convert scientific notation to the correct numeric format
-            DecimalFormat decimalFormat = new DecimalFormat("0.00");
-            String formattedValue = decimalFormat.format(Double.parseDouble(value));
-            return Double.parseDouble(formattedValue);
+            return Money.parse(value);
         } catch (NumberFormatException e) {
-            System.err.println("Invalid number format: " + value);
-            return 0.0;
+            ROW_ERRORS.log(System.err::println, () -> "Invalid number format: " + value);
+            return 0;
         }
     }
 
-    private void displayResults(Map<String, Double> profitOfEachStoreList, Map<String, Double> quantitySoldProductList,
-                                Map<String, Double> profitEachProductList, Map<String, Double> soldEachProductList,
-                                Double totalRetailersProfit) {
-        System.out.println("Total retailer's profit: " + String.format("%.2f", totalRetailersProfit));
+    private long parseQuantity(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            ROW_ERRORS.log(System.err::println, () -> "Invalid number format: " + value);
+            return 0;
+        }
+    }
 
-        if (!profitOfEachStoreList.isEmpty()) {
-            Entry<String, Double> mostProfitableStore = Collections.max(profitOfEachStoreList.entrySet(), Entry.comparingByValue());
-            Entry<String, Double> leastProfitableStore = Collections.min(profitOfEachStoreList.entrySet(), Entry.comparingByValue());
+    void displayResults(SalesAggregate totals) {
+        writeResults(totals, System.out);
+    }
 
-            System.out.println("Most profitable store: " + mostProfitableStore.getKey() + " - Profit: " + String.format("%.2f", mostProfitableStore.getValue()));
-            System.out.println("Least profitable store: " + leastProfitableStore.getKey() + " - Profit: " + String.format("%.2f", leastProfitableStore.getValue()));
+    static void writeResults(SalesAggregate totals, PrintStream out) {
+        long totalRetailersProfit = 0;
+        int mostProfitableStore = -1;
+        int leastProfitableStore = -1;
+        for (int store = 0; store < totals.storeCount(); store++) {
+            long profit = totals.storeProfit(store);
+            totalRetailersProfit += profit;
+            if (mostProfitableStore < 0 || profit > totals.storeProfit(mostProfitableStore)) {
+                mostProfitableStore = store;
+            }
+            if (leastProfitableStore < 0 || profit < totals.storeProfit(leastProfitableStore)) {
+                leastProfitableStore = store;
+            }
+        }
+        out.println("Total retailer's profit: " + Money.format(totalRetailersProfit));
+
+        if (totals.storeCount() > 0) {
+            out.println("Most profitable store: " + totals.storeName(mostProfitableStore) + " - Profit: " + Money.format(totals.storeProfit(mostProfitableStore)));
+            out.println("Least profitable store: " + totals.storeName(leastProfitableStore) + " - Profit: " + Money.format(totals.storeProfit(leastProfitableStore)));
         } else {
-            System.out.println("No data available for profit calculation.");
+            out.println("No data available for profit calculation.");
         }
 
-        System.out.println("Profit of each store:");
-        profitOfEachStoreList.forEach((store, profit) -> System.out.println(store + ": " + String.format("%.2f", profit)));
+        out.println("Profit of each store:");
+        for (int store = 0; store < totals.storeCount(); store++) {
+            out.println(totals.storeName(store) + ": " + Money.format(totals.storeProfit(store)));
+        }
 
-        System.out.println("Total quantity sold per product:");
-        quantitySoldProductList.forEach((product, quantity) -> System.out.println(product + ": " + String.format("%.0f", quantity)));
+        out.println("Total quantity sold per product:");
+        for (int product = 0; product < totals.productCount(); product++) {
+            out.println(totals.productName(product) + ": " + totals.productQuantity(product));
+        }
 
-        System.out.println("Total profit per product:");
-        profitEachProductList.forEach((product, profit) -> System.out.println(product + ": " + String.format("%.2f", profit)));
+        out.println("Total profit per product:");
+        for (int product = 0; product < totals.productCount(); product++) {
+            out.println(totals.productName(product) + ": " + Money.format(totals.productProfit(product)));
+        }
 
-        System.out.println("Total sold per product:");
-        soldEachProductList.forEach((product, sold) -> System.out.println(product + ": " + String.format("%.2f", sold)));
+        out.println("Total sold per product:");
+        for (int product = 0; product < totals.productCount(); product++) {
+            out.println(totals.productName(product) + ": " + Money.format(totals.productSold(product)));
+        }
     }
 }
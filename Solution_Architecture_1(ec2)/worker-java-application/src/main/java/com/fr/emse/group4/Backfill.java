@@ -0,0 +1,302 @@
+package com.fr.emse.group4;
+
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+// Regenerates the summaries of historical sales files kept in a local directory, without the
+// client, the input bucket or the queue, e.g. after a fix to the aggregation:
+//   Backfill <directory> [--output <root>] [--parallel N] [--replace]
+// Every file whose name starts with a date (<date>-store<N>.csv, optionally .gz) gets the summaries
+// the worker would have written for it, under the same keys, and the summaries of each date are
+// added to its manifest in one update, unless some of the files are already counted in a batch of
+// worker.batchFiles. --replace writes the manifests with only these summaries, dropping any other
+// summary of those dates, such as those batches.
+// --output <root> writes the output bucket under <root>/sales-data-output-bucket (see
+// FileObjectStore) instead of to S3.
+//
+// The files are memory-mapped and read with fork/join: one task per date, forking one per file,
+// and files of at least RANGE_SIZE are split into ranges that own the lines starting inside them,
+// as SalesFileReader does with ranged reads. Gzip-compressed files are inflated as one range.
+public final class Backfill {
+
+    private static final long RANGE_SIZE = Long.getLong("backfill.rangeBytes", 16L * 1024 * 1024);
+
+    private final SummaryWriter writer;
+    private final ObjectStore store;
+    private final boolean replace;
+    private final AtomicInteger files = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+
+    Backfill(ObjectStore store, boolean replace) {
+        this.writer = new SummaryWriter(store);
+        this.store = store;
+        this.replace = replace;
+    }
+
+    public static void main(String[] args) throws IOException {
+        String directory = null;
+        String output = null;
+        int parallel = Runtime.getRuntime().availableProcessors();
+        boolean replace = false;
+        for (int i = 0; i < args.length; i++) {
+            if ("--output".equals(args[i]) && i + 1 < args.length) {
+                output = args[++i];
+            } else if ("--parallel".equals(args[i]) && i + 1 < args.length) {
+                parallel = Integer.parseInt(args[++i]);
+            } else if ("--replace".equals(args[i])) {
+                replace = true;
+            } else if (directory == null) {
+                directory = args[i];
+            }
+        }
+        if (directory == null) {
+            System.err.println("Usage: Backfill <directory> [--output <root>] [--parallel N] [--replace]");
+            System.exit(2);
+        }
+
+        BufferPool buffers = new BufferPool(64 * 1024, Math.max(1, parallel));
+        ObjectStore store = output != null
+                ? new FileObjectStore(Paths.get(output))
+                : new S3ObjectStore(AmazonS3ClientBuilder.defaultClient(), buffers);
+        Backfill backfill = new Backfill(store, replace);
+        boolean complete = backfill.run(Paths.get(directory), Math.max(1, parallel));
+        Metrics.dump();
+        if (!complete) {
+            System.exit(1);
+        }
+    }
+
+    // Returns false if a file or a manifest could not be stored
+    boolean run(Path directory, int parallel) throws IOException {
+        Map<String, List<Path>> dates = new TreeMap<>();
+        try (Stream<Path> list = Files.list(directory)) {
+            list.filter(Files::isRegularFile).sorted().forEach(file -> {
+                String date = SummaryManifest.dateOf(SalesFileReader.uncompressedName(file.getFileName().toString()));
+                if (date != null) {
+                    dates.computeIfAbsent(date, d -> new ArrayList<>()).add(file);
+                } else {
+                    System.out.println("Skipping " + file.getFileName() + ": its name does not start with a date.");
+                }
+            });
+        }
+        System.out.println("Backfilling " + dates.values().stream().mapToInt(List::size).sum() + " files of " + dates.size()
+                + " dates from " + directory + " on " + parallel + " cores.");
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(parallel);
+        try {
+            List<DateTask> tasks = new ArrayList<>(dates.size());
+            dates.forEach((date, files) -> tasks.add(new DateTask(date, files)));
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+        } finally {
+            pool.shutdown();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("Backfilled " + files.get() + " files in " + millis + " ms"
+                + (failures.get() > 0 ? "; " + failures.get() + " failures, see above." : "."));
+        return failures.get() == 0;
+    }
+
+    // Summarizes the files of a date, then adds their summaries to its manifest
+    private final class DateTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String date;
+        private final List<Path> paths;
+
+        DateTask(String date, List<Path> paths) {
+            this.date = date;
+            this.paths = paths;
+        }
+
+        @SuppressWarnings("try")
+        @Override
+        protected void compute() {
+            List<FileTask> tasks = new ArrayList<>(paths.size());
+            for (Path path : paths) {
+                tasks.add(new FileTask(path));
+            }
+            invokeAll(tasks);
+
+            List<SummaryManifest.Entry> summaries = new ArrayList<>();
+            for (FileTask task : tasks) {
+                summaries.addAll(task.getRawResult());
+            }
+            if (summaries.isEmpty()) {
+                return;
+            }
+            try (StageTimer timer = Metrics.start("manifest", date)) {
+                if (replace) {
+                    SummaryManifest manifest = new SummaryManifest();
+                    summaries.forEach(manifest::put);
+                    store.put(SummaryWriter.OUTPUT_BUCKET, SummaryManifest.manifestKey(date), manifest.toBytes(), "text/plain", null);
+                } else {
+                    Map<String, String> covered = ManifestWriter.record(store, SummaryWriter.OUTPUT_BUCKET, date, summaries);
+                    if (!covered.isEmpty()) {
+                        refused(covered);
+                    }
+                }
+            } catch (ManifestWriter.ChangedFilesException e) {
+                // Local files have no ETag, so any file a batch counts is taken for another version
+                refused(e.files);
+            } catch (IOException e) {
+                System.err.println("Could not update the manifest of " + date + ": " + e.getMessage());
+                failures.incrementAndGet();
+            }
+        }
+
+        private void refused(Map<String, String> covered) {
+            System.err.println("Did not add the summaries of " + date + " to its manifest: " + covered.size()
+                    + " of the files are counted in other summaries, such as " + covered.values().iterator().next()
+                    + ". Run again with --replace to drop them.");
+            failures.incrementAndGet();
+        }
+    }
+
+    // Summarizes one file; its result lists the summaries written, none if it failed
+    private final class FileTask extends RecursiveTask<List<SummaryManifest.Entry>> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Path path;
+
+        FileTask(Path path) {
+            this.path = path;
+        }
+
+        @SuppressWarnings("try")
+        @Override
+        protected List<SummaryManifest.Entry> compute() {
+            String fileName = path.getFileName().toString();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                SalesAggregate totals = new SalesAggregate();
+                if (fileName.endsWith(SalesFileReader.GZIP_SUFFIX)) {
+                    totals.merge(new RangeTask(channel, fileName, 0, size, true).compute());
+                } else {
+                    int rangeCount = (int) Math.max(1, size / RANGE_SIZE);
+                    long rangeSize = (size + rangeCount - 1) / rangeCount;
+                    List<RangeTask> ranges = new ArrayList<>(rangeCount);
+                    for (int i = 0; i < rangeCount; i++) {
+                        long start = i * rangeSize;
+                        ranges.add(new RangeTask(channel, fileName, start, Math.min(size, start + rangeSize), false));
+                    }
+                    invokeAll(ranges);
+                    // In file order, so the products come in the order a single read finds them
+                    try (StageTimer timer = Metrics.start("aggregate", fileName)) {
+                        for (RangeTask range : ranges) {
+                            totals.merge(range.getRawResult());
+                        }
+                    }
+                }
+                if (totals.malformedRowCount > 0) {
+                    System.out.println("Skipped " + totals.malformedRowCount + " malformed rows in file: " + fileName);
+                }
+                List<SummaryManifest.Entry> summaries = writer.write(SalesFileReader.uncompressedName(fileName), totals,
+                        totals.productCount(), consumer -> consumer.accept(totals));
+                files.incrementAndGet();
+                Metrics.increment("files", 1);
+                return summaries;
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Could not backfill " + path + ": " + e.getMessage());
+                failures.incrementAndGet();
+                return Collections.emptyList();
+            }
+        }
+    }
+
+    // Parses the lines of a file starting between start and end, reading them from a mapping of the
+    // file; a line that continues past end is read to its newline
+    private static final class RangeTask extends RecursiveTask<SalesAggregate> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final String fileName;
+        private final long start;
+        private final long end;
+        private final boolean gzip;
+
+        RangeTask(FileChannel channel, String fileName, long start, long end, boolean gzip) {
+            this.channel = channel;
+            this.fileName = fileName;
+            this.start = start;
+            this.end = end;
+            this.gzip = gzip;
+        }
+
+        @Override
+        protected SalesAggregate compute() {
+            // Start one byte early so a range beginning exactly at a line start does not lose that line
+            long mapStart = start == 0 ? 0 : start - 1;
+            try (StageTimer timer = Metrics.start("parse", fileName)) {
+                long mapSize = Math.min(channel.size() - mapStart, Integer.MAX_VALUE);
+                MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapSize);
+                SalesAggregate aggregate;
+                if (gzip) {
+                    try (InputStream content = new GZIPInputStream(new MappedInputStream(mapping), 64 * 1024)) {
+                        aggregate = SalesFileReader.parse(content, true, Long.MAX_VALUE);
+                    }
+                } else {
+                    aggregate = SalesFileReader.parse(new MappedInputStream(mapping), true, end - mapStart);
+                }
+                timer.bytes(end - start);
+                return aggregate;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // Reads a mapped region; the parser copies it into its own buffer, which costs far less than the
+    // read calls and kernel copies of a stream
+    private static final class MappedInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        MappedInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
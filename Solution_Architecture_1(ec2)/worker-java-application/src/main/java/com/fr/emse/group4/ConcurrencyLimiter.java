@@ -0,0 +1,139 @@
+package com.fr.emse.group4;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+
+// How many files the worker processes at once, tuned AIMD style from what it observes:
+// - while the limit is reached and the queue holds more work, it grows by one every `limit`
+//   files (additive increase)
+// - a file that failed because S3 answered 503 Slow Down halves it
+// - when the recent file latency rises well above its long-run average, the worker is taken to be
+//   overloaded (CPU, network or S3) and the limit shrinks by a tenth; store files are of similar
+//   sizes, so the latency of a file is a usable load signal
+// - when the heap left after the last collection runs low, it shrinks too and stops growing, so a
+//   burst of large files cannot exhaust the heap
+// After a decrease, the limit is left alone until the files that were in flight at the time have
+// finished, so one overload does not shrink it once per file that saw it.
+final class ConcurrencyLimiter {
+
+    private static final double FAST_WEIGHT = 0.2;
+    private static final double SLOW_WEIGHT = 0.02;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double HEAP_GROW_LIMIT = 0.7;
+    private static final double HEAP_SHRINK_LIMIT = 0.85;
+
+    private final int min;
+    private final int max;
+    private double limit;
+    private int inFlight;
+    private long backlog = -1;
+    private double fastLatency;
+    private double slowLatency;
+    private long completions;
+    private long settledAt;
+
+    ConcurrencyLimiter(int initial, int min, int max) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.limit = Math.max(this.min, Math.min(this.max, initial));
+        publish();
+    }
+
+    // Blocks until a file may start, then takes as many slots as are free, up to `wanted`
+    synchronized int acquire(int wanted) throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        int granted = Math.min(wanted, (int) limit - inFlight);
+        inFlight += granted;
+        publish();
+        return granted;
+    }
+
+    // Gives back slots that were not used, e.g. when a receive returned fewer messages
+    synchronized void release(int unused) {
+        inFlight -= unused;
+        publish();
+        notifyAll();
+    }
+
+    // A file finished, successfully or not, after the given time
+    synchronized void completed(long nanos, boolean throttled) {
+        boolean saturated = inFlight >= (int) limit;
+        inFlight--;
+        completions++;
+        if (slowLatency == 0) {
+            fastLatency = nanos;
+            slowLatency = nanos;
+        } else {
+            fastLatency += FAST_WEIGHT * (nanos - fastLatency);
+            slowLatency += SLOW_WEIGHT * (nanos - slowLatency);
+        }
+
+        double heap = heapUsedAfterCollection();
+        if (completions <= settledAt) {
+            // Still finishing files started before the last decrease
+        } else if (throttled) {
+            decrease(0.5, "S3 is throttling requests");
+        } else if (heap > HEAP_SHRINK_LIMIT) {
+            decrease(0.9, String.format("%.0f%% of the heap is in use after collection", heap * 100));
+        } else if (fastLatency > LATENCY_TOLERANCE * slowLatency) {
+            decrease(0.9, String.format("file latency rose to %.0f ms from %.0f ms", fastLatency / 1e6, slowLatency / 1e6));
+        } else if (saturated && backlog != 0 && heap < HEAP_GROW_LIMIT && limit < max) {
+            int before = (int) limit;
+            limit = Math.min(max, limit + 1 / limit);
+            if ((int) limit > before) {
+                System.out.println("Concurrency limit raised to " + (int) limit + ".");
+            }
+        }
+        publish();
+        notifyAll();
+    }
+
+    // Approximate number of messages waiting in the queue, -1 if unknown
+    synchronized void backlog(long messages) {
+        backlog = messages;
+        Metrics.gauge("worker.backlog", messages);
+    }
+
+    synchronized int limit() {
+        return (int) limit;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    private void decrease(double factor, String reason) {
+        int before = (int) limit;
+        limit = Math.max(min, limit * factor);
+        settledAt = completions + inFlight;
+        Metrics.increment("worker.limitDecreases", 1);
+        if ((int) limit < before) {
+            System.out.println("Concurrency limit lowered to " + (int) limit + ": " + reason + ".");
+        }
+    }
+
+    private void publish() {
+        Metrics.gauge("worker.concurrencyLimit", (long) limit);
+        Metrics.gauge("worker.inFlight", inFlight);
+    }
+
+    // Fraction of the old generation still in use after its last collection, 0 if unknown. The
+    // young pools are nearly empty after every collection, and only the old ones support a usage
+    // threshold.
+    private static double heapUsedAfterCollection() {
+        long used = 0;
+        long maxBytes = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getType() == MemoryType.HEAP && pool.isUsageThresholdSupported() ? pool.getCollectionUsage() : null;
+            if (usage != null && usage.getMax() > 0) {
+                used += usage.getUsed();
+                maxBytes += usage.getMax();
+            }
+        }
+        return maxBytes == 0 ? 0 : (double) used / maxBytes;
+    }
+}
@@ -0,0 +1,131 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+// Open batches of small files, one per date. The totals of each file are merged into the batch of
+// its date as soon as the file is read, so a batch holds one aggregate however many files are in
+// it; stores keep their own rows, while the products of all the files are summed. A batch is
+// handed back for storing once it holds maxFiles files or maxBytes of input, or maxNanos after
+// its first file was added.
+final class DateBatcher {
+
+    static final class Batch {
+        final String date;
+        final long openedAt = System.nanoTime();
+        final SalesAggregate totals = new SalesAggregate();
+        final List<Message> messages = new ArrayList<>();
+        // "bucket;key" of every input file, as in the message bodies, in the order of messages
+        final List<String> files = new ArrayList<>();
+        // The files as the manifest records them, uncompressed, without their bucket and with the
+        // version that was read, in the same order
+        final List<SummaryManifest.Input> inputs = new ArrayList<>();
+        long bytes;
+
+        Batch(String date) {
+            this.date = date;
+        }
+
+        // Named after the sorted names of its files, so a batch received again with the same files
+        // overwrites its summary instead of adding a second one. One received again with other files
+        // is refused by the manifest, see ManifestWriter.
+        String summaryName() {
+            List<String> sorted = new ArrayList<>(files);
+            Collections.sort(sorted);
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-1");
+                for (String file : sorted) {
+                    digest.update(file.getBytes(StandardCharsets.UTF_8));
+                    digest.update((byte) '\n');
+                }
+                StringBuilder name = new StringBuilder(date).append(SummaryManifest.BATCH_MARKER);
+                byte[] hash = digest.digest();
+                for (int i = 0; i < 8; i++) {
+                    name.append(String.format("%02x", hash[i]));
+                }
+                return name.append(".csv").toString();
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-1 is not available", e);
+            }
+        }
+    }
+
+    private final int maxFiles;
+    private final long maxBytes;
+    private final long maxNanos;
+    private final Map<String, Batch> open = new HashMap<>();
+
+    DateBatcher(int maxFiles, long maxBytes, long maxNanos) {
+        this.maxFiles = maxFiles;
+        this.maxBytes = maxBytes;
+        this.maxNanos = maxNanos;
+    }
+
+    // Files as large as a whole batch, and files read with checkpoints, keep their own summaries
+    boolean accepts(BoundedAggregate aggregate) {
+        return !aggregate.checkpointed() && aggregate.inputBytes() < maxBytes;
+    }
+
+    // Adds a file read from the message to the batch of its date; returns the batch if it is now
+    // full, after which it is no longer open. The file's totals are collected first and only added
+    // to the batch once read in full, so a file whose spilled products fail to read leaves the batch
+    // as it was and is received again without being counted twice.
+    synchronized Batch add(String date, Message message, String file, BoundedAggregate aggregate) throws IOException {
+        SalesAggregate totals = new SalesAggregate();
+        SalesAggregate stores = aggregate.stores();
+        for (int store = 0; store < stores.storeCount(); store++) {
+            totals.addStore(stores.storeName(store), stores.storeProfit(store));
+        }
+        aggregate.forEach(chunk -> {
+            for (int product = 0; product < chunk.productCount(); product++) {
+                totals.addProduct(chunk.productName(product), chunk.productQuantity(product),
+                        chunk.productSold(product), chunk.productProfit(product));
+            }
+        });
+        totals.malformedRowCount = aggregate.malformedRowCount();
+
+        Batch batch = open.computeIfAbsent(date, Batch::new);
+        batch.totals.merge(totals);
+        batch.messages.add(message);
+        batch.files.add(file);
+        batch.inputs.add(new SummaryManifest.Input(SalesFileReader.uncompressedName(file.substring(file.indexOf(';') + 1)),
+                aggregate.inputETag(), aggregate.inputBytes()));
+        batch.bytes += aggregate.inputBytes();
+        if (batch.files.size() >= maxFiles || batch.bytes >= maxBytes) {
+            open.remove(date);
+            return batch;
+        }
+        return null;
+    }
+
+    // Removes and returns the batches opened maxNanos ago or earlier
+    synchronized List<Batch> expired() {
+        List<Batch> expired = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Iterator<Batch> it = open.values().iterator(); it.hasNext(); ) {
+            Batch batch = it.next();
+            if (now - batch.openedAt >= maxNanos) {
+                expired.add(batch);
+                it.remove();
+            }
+        }
+        return expired;
+    }
+
+    // Removes and returns every open batch
+    synchronized List<Batch> drain() {
+        List<Batch> batches = new ArrayList<>(open.values());
+        open.clear();
+        return batches;
+    }
+}
@@ -0,0 +1,150 @@
+package com.fr.emse.group4;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+// In-process stand-in for an SQS queue with the same visibility-timeout semantics: a received
+// message is hidden until it is deleted or its timeout expires, and every receive hands out a new
+// receipt handle so stale handles are rejected. Counts API calls and redeliveries. Once closed,
+// receives return at once with nothing, so workers polling it can be stopped without waiting.
+final class InMemoryMessageQueue implements MessageQueue {
+
+    private static final class Entry {
+        final String messageId;
+        final String body;
+        long visibleAt;
+        String receiptHandle;
+        int receiveCount;
+
+        Entry(String messageId, String body) {
+            this.messageId = messageId;
+            this.body = body;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final AtomicLong apiCalls = new AtomicLong();
+    private final AtomicLong redeliveries = new AtomicLong();
+    private boolean closed;
+
+    synchronized String send(String body) {
+        apiCalls.incrementAndGet();
+        String messageId = UUID.randomUUID().toString();
+        entries.put(messageId, new Entry(messageId, body));
+        notifyAll();
+        return messageId;
+    }
+
+    @Override
+    public synchronized List<Message> receive(int maxMessages, int waitTimeSeconds, int visibilityTimeoutSeconds) {
+        apiCalls.incrementAndGet();
+        long deadline = System.currentTimeMillis() + waitTimeSeconds * 1000L;
+        List<Message> received = new ArrayList<>();
+        while (!closed) {
+            long now = System.currentTimeMillis();
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext() && received.size() < maxMessages; ) {
+                Entry entry = it.next();
+                if (entry.visibleAt <= now) {
+                    if (entry.receiveCount++ > 0) {
+                        redeliveries.incrementAndGet();
+                    }
+                    entry.visibleAt = now + visibilityTimeoutSeconds * 1000L;
+                    entry.receiptHandle = UUID.randomUUID().toString();
+                    received.add(Message.builder()
+                            .messageId(entry.messageId)
+                            .body(entry.body)
+                            .receiptHandle(entry.receiptHandle)
+                            .build());
+                }
+            }
+            long remaining = deadline - now;
+            if (!received.isEmpty() || remaining <= 0) {
+                return received;
+            }
+            try {
+                wait(Math.min(remaining, nextVisibleIn(now)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return received;
+            }
+        }
+        return received;
+    }
+
+    @Override
+    public synchronized List<Message> deleteBatch(List<Message> messages) {
+        apiCalls.incrementAndGet();
+        List<Message> failed = new ArrayList<>();
+        for (Message message : messages) {
+            Entry entry = entries.get(message.messageId());
+            if (entry != null && message.receiptHandle().equals(entry.receiptHandle)) {
+                entries.remove(message.messageId());
+            } else {
+                failed.add(message);
+            }
+        }
+        return failed;
+    }
+
+    @Override
+    public synchronized List<Message> changeVisibilityBatch(List<Message> messages, int visibilityTimeoutSeconds) {
+        apiCalls.incrementAndGet();
+        long now = System.currentTimeMillis();
+        List<Message> failed = new ArrayList<>();
+        for (Message message : messages) {
+            Entry entry = entries.get(message.messageId());
+            if (entry != null && message.receiptHandle().equals(entry.receiptHandle) && entry.visibleAt > now) {
+                entry.visibleAt = now + visibilityTimeoutSeconds * 1000L;
+            } else {
+                failed.add(message);
+            }
+        }
+        notifyAll();
+        return failed;
+    }
+
+    @Override
+    public synchronized long approximateBacklog() {
+        apiCalls.incrementAndGet();
+        long now = System.currentTimeMillis();
+        long visible = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.visibleAt <= now) {
+                visible++;
+            }
+        }
+        return visible;
+    }
+
+    synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    long apiCalls() {
+        return apiCalls.get();
+    }
+
+    long redeliveries() {
+        return redeliveries.get();
+    }
+
+    private long nextVisibleIn(long now) {
+        long next = Long.MAX_VALUE;
+        for (Entry entry : entries.values()) {
+            next = Math.min(next, entry.visibleAt - now);
+        }
+        return Math.max(1, next);
+    }
+}
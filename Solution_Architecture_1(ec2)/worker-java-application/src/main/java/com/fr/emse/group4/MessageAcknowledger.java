@@ -0,0 +1,77 @@
+package com.fr.emse.group4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+// Collects processed messages and deletes them with batch calls, flushing as soon as a full batch
+// is ready or after maxDelayMillis, whichever comes first.
+final class MessageAcknowledger implements AutoCloseable {
+
+    private final MessageQueue queue;
+    private final ScheduledExecutorService scheduler;
+    private final List<Message> pending = new ArrayList<>();
+
+    MessageAcknowledger(MessageQueue queue, long maxDelayMillis) {
+        this.queue = queue;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-acknowledger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, maxDelayMillis, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void acknowledge(Message message) {
+        List<Message> batch = null;
+        synchronized (pending) {
+            pending.add(message);
+            if (pending.size() >= MessageQueue.MAX_BATCH_SIZE) {
+                batch = new ArrayList<>(pending);
+                pending.clear();
+            }
+        }
+        if (batch != null) {
+            delete(batch);
+        }
+    }
+
+    void flush() {
+        List<Message> batch;
+        synchronized (pending) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        for (int from = 0; from < batch.size(); from += MessageQueue.MAX_BATCH_SIZE) {
+            delete(batch.subList(from, Math.min(batch.size(), from + MessageQueue.MAX_BATCH_SIZE)));
+        }
+    }
+
+    @SuppressWarnings("try")
+    private void delete(List<Message> batch) {
+        try (StageTimer timer = Metrics.start("acknowledge", null)) {
+            List<Message> failed = queue.deleteBatch(batch);
+            Metrics.increment("messages.acknowledged", batch.size() - failed.size());
+            System.out.println("Deleted " + (batch.size() - failed.size()) + " processed messages from SQS queue.");
+            for (Message message : failed) {
+                System.err.println("Could not delete message " + message.messageId() + " from SQS queue.");
+            }
+        } catch (RuntimeException e) {
+            // The messages become visible again and are reprocessed; keep the scheduler alive
+            System.err.println("Error occurred while deleting " + batch.size() + " messages from SQS queue: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        flush();
+    }
+}
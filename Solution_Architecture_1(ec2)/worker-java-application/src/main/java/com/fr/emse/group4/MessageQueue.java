@@ -0,0 +1,22 @@
+package com.fr.emse.group4;
+
+import java.util.List;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+// The queue operations the worker needs, so the receive/acknowledge logic can run against SQS
+// or against InMemoryMessageQueue. Batch operations take at most 10 messages and return the
+// messages that could not be handled.
+interface MessageQueue {
+
+    int MAX_BATCH_SIZE = 10;
+
+    List<Message> receive(int maxMessages, int waitTimeSeconds, int visibilityTimeoutSeconds);
+
+    List<Message> deleteBatch(List<Message> messages);
+
+    List<Message> changeVisibilityBatch(List<Message> messages, int visibilityTimeoutSeconds);
+
+    // Messages waiting to be received, not counting those in flight; -1 if it cannot be read
+    long approximateBacklog();
+}
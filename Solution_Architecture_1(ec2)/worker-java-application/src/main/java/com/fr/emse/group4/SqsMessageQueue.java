@@ -0,0 +1,94 @@
+package com.fr.emse.group4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.sqs.SqsClient;
+import software.amazon.awssdk.services.sqs.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequest;
+import software.amazon.awssdk.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequest;
+import software.amazon.awssdk.services.sqs.model.DeleteMessageBatchRequestEntry;
+import software.amazon.awssdk.services.sqs.model.GetQueueAttributesRequest;
+import software.amazon.awssdk.services.sqs.model.Message;
+import software.amazon.awssdk.services.sqs.model.QueueAttributeName;
+import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
+
+final class SqsMessageQueue implements MessageQueue {
+
+    private final SqsClient sqsClient;
+    private final String queueURL;
+
+    SqsMessageQueue(SqsClient sqsClient, String queueURL) {
+        this.sqsClient = sqsClient;
+        this.queueURL = queueURL;
+    }
+
+    @Override
+    public List<Message> receive(int maxMessages, int waitTimeSeconds, int visibilityTimeoutSeconds) {
+        ReceiveMessageRequest receiveRequest = ReceiveMessageRequest.builder()
+                .queueUrl(queueURL)
+                .maxNumberOfMessages(maxMessages)
+                .waitTimeSeconds(waitTimeSeconds)
+                .visibilityTimeout(visibilityTimeoutSeconds)
+                .build();
+        return sqsClient.receiveMessage(receiveRequest).messages();
+    }
+
+    @Override
+    public List<Message> deleteBatch(List<Message> messages) {
+        List<DeleteMessageBatchRequestEntry> entries = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            entries.add(DeleteMessageBatchRequestEntry.builder()
+                    .id(String.valueOf(i))
+                    .receiptHandle(messages.get(i).receiptHandle())
+                    .build());
+        }
+        DeleteMessageBatchRequest request = DeleteMessageBatchRequest.builder()
+                .queueUrl(queueURL)
+                .entries(entries)
+                .build();
+        return failed(messages, sqsClient.deleteMessageBatch(request).failed());
+    }
+
+    @Override
+    public List<Message> changeVisibilityBatch(List<Message> messages, int visibilityTimeoutSeconds) {
+        List<ChangeMessageVisibilityBatchRequestEntry> entries = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            entries.add(ChangeMessageVisibilityBatchRequestEntry.builder()
+                    .id(String.valueOf(i))
+                    .receiptHandle(messages.get(i).receiptHandle())
+                    .visibilityTimeout(visibilityTimeoutSeconds)
+                    .build());
+        }
+        ChangeMessageVisibilityBatchRequest request = ChangeMessageVisibilityBatchRequest.builder()
+                .queueUrl(queueURL)
+                .entries(entries)
+                .build();
+        return failed(messages, sqsClient.changeMessageVisibilityBatch(request).failed());
+    }
+
+    @Override
+    public long approximateBacklog() {
+        GetQueueAttributesRequest request = GetQueueAttributesRequest.builder()
+                .queueUrl(queueURL)
+                .attributeNames(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES)
+                .build();
+        try {
+            String messages = sqsClient.getQueueAttributes(request).attributes().get(QueueAttributeName.APPROXIMATE_NUMBER_OF_MESSAGES);
+            return messages == null ? -1 : Long.parseLong(messages);
+        } catch (SdkException | NumberFormatException e) {
+            System.err.println("Could not read the length of the queue: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    private static List<Message> failed(List<Message> messages, List<BatchResultErrorEntry> errors) {
+        List<Message> failed = new ArrayList<>(errors.size());
+        for (BatchResultErrorEntry error : errors) {
+            failed.add(messages.get(Integer.parseInt(error.id())));
+        }
+        return failed;
+    }
+}
@@ -0,0 +1,65 @@
+package com.fr.emse.group4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+// Keeps received messages invisible while their files are still being processed, so a slow file
+// is not redelivered to another worker. Every third of the visibility timeout the timeout of all
+// tracked messages is reset with batch calls.
+final class VisibilityHeartbeat implements AutoCloseable {
+
+    private final MessageQueue queue;
+    private final int visibilityTimeoutSeconds;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, Message> inFlight = new ConcurrentHashMap<>();
+
+    VisibilityHeartbeat(MessageQueue queue, int visibilityTimeoutSeconds) {
+        this.queue = queue;
+        this.visibilityTimeoutSeconds = visibilityTimeoutSeconds;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "visibility-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMillis = Math.max(1000L, visibilityTimeoutSeconds * 1000L / 3);
+        scheduler.scheduleAtFixedRate(this::extend, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void track(Message message) {
+        inFlight.put(message.messageId(), message);
+    }
+
+    void untrack(Message message) {
+        inFlight.remove(message.messageId());
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private void extend() {
+        List<Message> messages = new ArrayList<>(inFlight.values());
+        for (int from = 0; from < messages.size(); from += MessageQueue.MAX_BATCH_SIZE) {
+            List<Message> batch = messages.subList(from, Math.min(messages.size(), from + MessageQueue.MAX_BATCH_SIZE));
+            try {
+                for (Message message : queue.changeVisibilityBatch(batch, visibilityTimeoutSeconds)) {
+                    System.err.println("Could not extend visibility of message " + message.messageId() + ".");
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error occurred while extending message visibility: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
@@ -1,166 +1,438 @@
 package com.fr.emse.group4;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.S3Object;
-import com.opencsv.CSVWriter;
 
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.sqs.SqsClient;
-import software.amazon.awssdk.services.sqs.model.DeleteMessageRequest;
 import software.amazon.awssdk.services.sqs.model.Message;
-import software.amazon.awssdk.services.sqs.model.ReceiveMessageRequest;
 
 public class WorkerJavaApplication {
 
-    private static AmazonS3 s3;
+    private static final BufferPool SUMMARY_BUFFERS = new BufferPool(64 * 1024, 16);
+    // One line per processed file; worker.logEvery=N keeps the first 10, then one in N
+    private static final SampledLog FILE_LOG = new SampledLog(10, Integer.getInteger("worker.logEvery", 1));
 
-    public static void main(String[] args) {
+    private static final int MAX_MESSAGES_PER_RECEIVE = 10;
+    private static final int WAIT_TIME_SECONDS = 20;
+    // The number of files in flight is tuned by ConcurrencyLimiter between these bounds, starting
+    // from worker.concurrency; worker.adaptiveConcurrency=false keeps it at worker.concurrency
+    private static final boolean ADAPTIVE_CONCURRENCY = !"false".equals(System.getProperty("worker.adaptiveConcurrency"));
+    private static final int MIN_CONCURRENCY = Integer.getInteger("worker.minConcurrency", 1);
+    private static final int MAX_CONCURRENCY = Integer.getInteger("worker.maxConcurrency", 4 * Runtime.getRuntime().availableProcessors());
+    private static final long BACKLOG_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(Long.getLong("worker.backlogIntervalSeconds", 10L));
+    // worker.batchFiles=N above 1 stores the small files received for a date as one summary of up
+    // to N files (see DateBatcher), or worker.batchBytes of input, waiting at most worker.batchMillis
+    private static final int BATCH_FILES = Integer.getInteger("worker.batchFiles", 1);
+    private static final long BATCH_BYTES = Long.getLong("worker.batchBytes", 32L * 1024 * 1024);
+    private static final long BATCH_MILLIS = Long.getLong("worker.batchMillis", 2000L);
+    // Pause after a failed receive, doubled with every consecutive failure up to the maximum
+    private static final long RECEIVE_RETRY_MILLIS = 500;
+    private static final long MAX_RECEIVE_RETRY_MILLIS = 30_000;
+
+    private final ObjectStore store;
+    private final MessageQueue queue;
+    private final SummaryWriter writer;
+    private final AtomicBoolean running = new AtomicBoolean(true);
+    // "bucket;key" of files found to be new versions of files a batch already counts; they are
+    // summarized on their own when received again, so they do not keep refusing the batches of
+    // other files
+    private final Set<String> unbatched = ConcurrentHashMap.newKeySet();
+
+    WorkerJavaApplication(ObjectStore store, MessageQueue queue) {
+        this.store = store;
+        this.queue = queue;
+        this.writer = new SummaryWriter(store);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
         Timestamp startTimestamp = new Timestamp(System.currentTimeMillis());
         System.out.println("Invocation started : " + "[" + startTimestamp + "]");
 
         Region region = Region.US_EAST_1;
         String queueURL = "https://sqs.us-east-1.amazonaws.com/010405860157/data-processing-queue";
         SqsClient sqsClient = SqsClient.builder().region(region).build();
-        s3 = AmazonS3ClientBuilder.defaultClient();
-
-        boolean continueProcessing = true;
-        while (continueProcessing) {
-            ReceiveMessageRequest receiveRequest = ReceiveMessageRequest.builder()
-                    .queueUrl(queueURL)
-                    .maxNumberOfMessages(1)
-                    .build();
+        AmazonS3 s3 = AmazonS3ClientBuilder.defaultClient();
+        WorkerJavaApplication worker = new WorkerJavaApplication(new S3ObjectStore(s3, SUMMARY_BUFFERS), new SqsMessageQueue(sqsClient, queueURL));
 
-            List<Message> messages = sqsClient.receiveMessage(receiveRequest).messages();
-
-            if (!messages.isEmpty()) {
-                System.out.println("Processing message from SQS queue.");
-                processMessage(messages.get(0), sqsClient, queueURL);
-            } else {
-                System.out.println("No messages in the queue.");
-                continueProcessing = false;  // Exit loop when no messages are left
-            }
+        // In daemon mode the worker keeps long polling instead of exiting on the first empty receive
+        boolean daemon = Arrays.asList(args).contains("--daemon") || Boolean.getBoolean("worker.daemon");
+        int concurrency = Integer.getInteger("worker.concurrency", Runtime.getRuntime().availableProcessors());
+        int visibilityTimeoutSeconds = Integer.getInteger("worker.visibilityTimeoutSeconds", 60);
+        long ackDelayMillis = Long.getLong("worker.ackDelayMillis", 1000L);
+        CountDownLatch stopped = new CountDownLatch(1);
+        if (daemon) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                worker.stop();
+                try {
+                    stopped.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
         }
 
+        worker.run(daemon, concurrency, visibilityTimeoutSeconds, ackDelayMillis);
+        stopped.countDown();
+
         Timestamp endTimestamp = new Timestamp(System.currentTimeMillis());
         System.out.println("Invocation completed : " + "[" + endTimestamp + "]");
     }
 
-    private static void processMessage(Message message, SqsClient sqsClient, String queueURL) {
-        String[] arguments = message.body().split(";");
-        String inputBucketName = arguments[0];
-        String fileName = arguments[1];
+    // Receives and processes messages until the queue is empty and nothing is in flight, or in
+    // daemon mode until stop is called
+    void run(boolean daemon, int concurrency, int visibilityTimeoutSeconds, long ackDelayMillis) throws InterruptedException {
+        int maxConcurrency = ADAPTIVE_CONCURRENCY ? Math.max(concurrency, MAX_CONCURRENCY) : concurrency;
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(concurrency, ADAPTIVE_CONCURRENCY ? MIN_CONCURRENCY : concurrency, maxConcurrency);
+        System.out.println("Processing " + (ADAPTIVE_CONCURRENCY ? concurrency + " (adapting up to " + maxConcurrency + ")" : "up to " + concurrency)
+                + " files concurrently" + (daemon ? " in daemon mode." : "."));
 
-        System.out.println("Received message to process file: " + fileName);
-        try (S3Object s3Object = s3.getObject(inputBucketName, fileName);
-             InputStreamReader streamReader = new InputStreamReader(s3Object.getObjectContent(), StandardCharsets.UTF_8);
-             BufferedReader reader = new BufferedReader(streamReader)) {
+        ExecutorService workers = Executors.newFixedThreadPool(maxConcurrency, new WorkerThreadFactory());
+        MessageAcknowledger acknowledger = new MessageAcknowledger(queue, ackDelayMillis);
+        VisibilityHeartbeat heartbeat = new VisibilityHeartbeat(queue, visibilityTimeoutSeconds);
+        long lastBacklogCheck = System.nanoTime() - BACKLOG_INTERVAL_NANOS;
+        DateBatcher batcher = BATCH_FILES > 1 ? new DateBatcher(BATCH_FILES, BATCH_BYTES, TimeUnit.MILLISECONDS.toNanos(BATCH_MILLIS)) : null;
+        ScheduledExecutorService batchTimer = null;
+        if (batcher != null) {
+            // Batches that stop filling up are stored once they are old enough
+            batchTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "date-batcher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(10, BATCH_MILLIS / 4);
+            batchTimer.scheduleWithFixedDelay(() -> {
+                for (DateBatcher.Batch batch : batcher.expired()) {
+                    storeBatch(batch, acknowledger, heartbeat);
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
 
-            System.out.println("Downloading and processing file: " + fileName);
-            processFile(reader, fileName);
-            System.out.println("File processing complete, deleting file from S3 bucket: " + inputBucketName);
-            deleteFileFromS3(inputBucketName, fileName);
-        } catch (IOException e) {
-            e.printStackTrace();
+        int receiveFailures = 0;
+        try {
+            while (running.get()) {
+                // The backlog lets the limiter stop growing when there is no more work, and is published
+                // as the worker.backlog gauge for scaling the fleet
+                if (System.nanoTime() - lastBacklogCheck >= BACKLOG_INTERVAL_NANOS) {
+                    lastBacklogCheck = System.nanoTime();
+                    try {
+                        limiter.backlog(queue.approximateBacklog());
+                    } catch (RuntimeException e) {
+                        System.err.println("Could not read the length of the queue: " + e.getMessage());
+                    }
+                }
+                // Messages are only received for files that may start at once, so a burst stays in the queue
+                int requested = limiter.acquire(MAX_MESSAGES_PER_RECEIVE);
+                long receiveStart = System.nanoTime();
+                List<Message> messages;
+                try {
+                    messages = queue.receive(requested, WAIT_TIME_SECONDS, visibilityTimeoutSeconds);
+                } catch (RuntimeException e) {
+                    // SQS being unreachable or throttling must not end the worker with files in flight
+                    limiter.release(requested);
+                    long pause = Math.min(MAX_RECEIVE_RETRY_MILLIS, RECEIVE_RETRY_MILLIS << Math.min(receiveFailures++, 10));
+                    System.err.println("Could not receive messages, retrying in " + pause + " ms: " + e.getMessage());
+                    Metrics.increment("receive.failures", 1);
+                    Thread.sleep(pause);
+                    continue;
+                }
+                receiveFailures = 0;
+                limiter.release(requested - messages.size());
+
+                if (messages.isEmpty()) {
+                    if (!daemon && limiter.inFlight() == 0) {
+                        System.out.println("No messages in the queue.");
+                        break;  // Exit loop when no messages are left and nothing is in flight
+                    }
+                    continue;
+                }
+
+                // Empty long polls would only measure the wait time, so only receives that got messages count
+                Metrics.recordLatency("receive", System.nanoTime() - receiveStart);
+                Metrics.increment("messages.received", messages.size());
+                System.out.println("Received " + messages.size() + " messages from SQS queue.");
+                for (Message message : messages) {
+                    heartbeat.track(message);
+                    workers.execute(() -> {
+                        long start = System.nanoTime();
+                        boolean throttled = false;
+                        try {
+                            if (batcher != null) {
+                                throttled = processBatched(message, batcher, acknowledger, heartbeat);
+                            } else {
+                                throttled = processMessage(message, acknowledger);
+                            }
+                        } catch (RuntimeException e) {
+                            System.err.println("Error occurred while processing message " + message.messageId() + ": " + e.getMessage());
+                            throttled = S3ObjectStore.isThrottling(e);
+                        } finally {
+                            // processBatched keeps the messages of open batches tracked until they are stored
+                            if (batcher == null) {
+                                heartbeat.untrack(message);
+                            }
+                            limiter.completed(System.nanoTime() - start, throttled);
+                        }
+                    });
+                }
+            }
+        } finally {
+            // Files in flight and open batches are finished, and their messages acknowledged, however
+            // the loop ended
+            workers.shutdown();
+            try {
+                workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                if (batcher != null) {
+                    batchTimer.shutdown();
+                    batchTimer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+                    for (DateBatcher.Batch batch : batcher.drain()) {
+                        storeBatch(batch, acknowledger, heartbeat);
+                    }
+                }
+            } finally {
+                heartbeat.close();
+                acknowledger.close();
+                Metrics.dump();
+            }
         }
+    }
 
-        System.out.println("Deleting processed message from SQS queue.");
-        deleteMessageFromQueue(sqsClient, queueURL, message);
+    // Makes run return once the files in flight are done; a receive already waiting finishes first
+    void stop() {
+        running.set(false);
     }
 
-    private static void processFile(BufferedReader reader, String fileName) throws IOException {
-        Map<String, Double> storeTotalProfit = new HashMap<>();
-        Map<String, ProductSummary> productSummaryMap = new HashMap<>();
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
 
-        reader.readLine(); // skip header
-        System.out.println("Reading data from file.");
-        reader.lines().forEach(line -> {
-            String[] rows = line.split(";");
-            String storeName = rows[1];
-            String product = rows[2];
-            int quantity = Integer.parseInt(rows[3]);
-            double unitPrice = Double.parseDouble(rows[4]);
-            double unitProfit = Double.parseDouble(rows[6]);
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "worker-" + count.incrementAndGet());
+        }
+    }
 
-            storeTotalProfit.merge(storeName, unitProfit * quantity, Double::sum);
+    // True if the file failed because S3 was throttling requests
+    private boolean processMessage(Message message, MessageAcknowledger acknowledger) {
+        if (dropInvalid(message, acknowledger)) {
+            return false;
+        }
+        try {
+            process(message.body());
+        } catch (IOException e) {
+            return failed(message, e, acknowledger);
+        }
+        acknowledger.acknowledge(message);
+        return false;
+    }
 
-            productSummaryMap.computeIfAbsent(product, k -> new ProductSummary())
-                             .addValues(quantity, unitPrice * quantity, unitProfit * quantity);
-        });
+    // Processes the file named by a "bucket;key" message body and deletes it from its bucket
+    void process(String body) throws IOException {
+        if (!isValid(body)) {
+            throw new IllegalArgumentException("Invalid message format: " + body);
+        }
+        String[] arguments = body.split(";");
+        String inputBucketName = arguments[0];
+        String fileName = arguments[1];
 
-        System.out.println("Writing data to summary CSV.");
-        writeToCSV(storeTotalProfit, productSummaryMap, fileName);
+        long start = System.nanoTime();
+        try {
+            processFile(inputBucketName, fileName);
+            deleteFileFromS3(inputBucketName, fileName);
+            long nanos = System.nanoTime() - start;
+            Metrics.recordLatency("file", nanos);
+            Metrics.increment("files", 1);
+            FILE_LOG.log(System.out::println, () -> "Processed file " + fileName + " from " + inputBucketName + " in " + nanos / 1_000_000 + " ms");
+        } finally {
+            Metrics.dumpIfDue();
+        }
     }
 
-    static class ProductSummary {
-        int totalQuantity;
-        double totalSold;
-        double totalProfit;
+    static boolean isValid(String body) {
+        return body != null && body.split(";").length >= 2;
+    }
 
-        void addValues(int quantity, double sold, double profit) {
-            this.totalQuantity += quantity;
-            this.totalSold += sold;
-            this.totalProfit += profit;
+    // A body that does not name a "bucket;key" would fail the same way every time it is received,
+    // so its message is logged and acknowledged, as WorkerLambda does. Returns true if it was.
+    private static boolean dropInvalid(Message message, MessageAcknowledger acknowledger) {
+        if (isValid(message.body())) {
+            return false;
         }
+        System.err.println("Dropping message " + message.messageId() + ": invalid message format: " + message.body());
+        Metrics.increment("messages.dropped", 1);
+        acknowledger.acknowledge(message);
+        return true;
     }
 
-    private static void writeToCSV(Map<String, Double> storeTotalProfit, Map<String, ProductSummary> productSummaryMap, String fileName) throws IOException {
-        String tempDir = System.getProperty("java.io.tmpdir");
-        String outputFilename = tempDir + File.separator + "Summary-" + fileName;
+    // Acknowledges the message of a failed file only if the file itself is at fault, see
+    // SalesFileReader.isDataError. After any other failure, such as a network error or S3
+    // throttling, the message becomes visible again once its visibility timeout expires and the
+    // file is retried. Returns true if S3 was throttling requests.
+    private boolean failed(Message message, IOException e, MessageAcknowledger acknowledger) {
+        if (SalesFileReader.isDataError(e)) {
+            System.err.println("Dropping message " + message.body() + ": " + e.getMessage());
+            Metrics.increment("messages.dropped", 1);
+            acknowledger.acknowledge(message);
+            return false;
+        }
+        if (e instanceof ManifestWriter.ChangedFilesException) {
+            System.err.println("Could not process " + message.body() + ", leaving it to be received again: " + e.getMessage());
+            return false;
+        }
+        System.err.println("Could not process " + message.body() + ", leaving it to be received again:");
+        e.printStackTrace();
+        return S3ObjectStore.isThrottling(e);
+    }
 
-        File tempDirectory = new File(tempDir);
-        if (!tempDirectory.exists()) {
-            System.out.println("Temporary directory not found, creating directory.");
-            tempDirectory.mkdir();
+    // Like processMessage, except that a small file with a date is added to the batch of that date
+    // and its message is only acknowledged once the batch is stored. Returns true if the file
+    // failed because S3 was throttling requests.
+    private boolean processBatched(Message message, DateBatcher batcher, MessageAcknowledger acknowledger, VisibilityHeartbeat heartbeat) {
+        if (dropInvalid(message, acknowledger)) {
+            heartbeat.untrack(message);
+            return false;
         }
+        String[] arguments = message.body().split(";");
+        String inputBucketName = arguments[0];
+        String fileName = arguments[1];
+        String date = SummaryManifest.dateOf(SalesFileReader.uncompressedName(fileName));
 
-        try (CSVWriter csvWriter = new CSVWriter(new FileWriter(outputFilename))) {
-            System.out.println("Creating CSV file: " + outputFilename);
-            String[] header = {"Type", "Name", "Total Quantity", "Total Sold", "Total Profit"};
-            csvWriter.writeNext(header);
+        long start = System.nanoTime();
+        boolean batched = false;
+        DateBatcher.Batch full = null;
+        try (BoundedAggregate aggregate = SalesFileReader.read(store, inputBucketName, fileName)) {
+            if (date != null && batcher.accepts(aggregate) && !unbatched.contains(message.body())) {
+                full = batcher.add(date, message, message.body(), aggregate);
+                batched = true;
+            } else {
+                storeFileSummaries(inputBucketName, fileName, aggregate);
+                deleteFileFromS3(inputBucketName, fileName);
+                long nanos = System.nanoTime() - start;
+                Metrics.recordLatency("file", nanos);
+                Metrics.increment("files", 1);
+                FILE_LOG.log(System.out::println, () -> "Processed file " + fileName + " from " + inputBucketName + " in " + nanos / 1_000_000 + " ms");
+                acknowledger.acknowledge(message);
+                unbatched.remove(message.body());
+            }
+        } catch (IOException e) {
+            return failed(message, e, acknowledger);
+        } finally {
+            if (!batched) {
+                heartbeat.untrack(message);
+            }
+            Metrics.dumpIfDue();
+        }
+        if (full != null) {
+            storeBatch(full, acknowledger, heartbeat);
+        }
+        return false;
+    }
 
-            storeTotalProfit.forEach((store, totalProfit) -> {
-                String[] row = {"Store", store, "", "", String.valueOf(totalProfit)};
-                csvWriter.writeNext(row);
-            });
+    // Stores a batch as one summary, then deletes its input files and acknowledges its messages. If
+    // the summary cannot be stored, nothing is deleted and the messages become visible again, so
+    // the files are received and batched again. If some of the files were already counted, by a
+    // batch whose worker stopped before deleting them, only those are deleted and acknowledged. New
+    // versions of files that other summaries count are left to be received again, and then
+    // summarized on their own.
+    @SuppressWarnings("try")
+    private void storeBatch(DateBatcher.Batch batch, MessageAcknowledger acknowledger, VisibilityHeartbeat heartbeat) {
+        long start = System.nanoTime();
+        Map<String, String> covered;
+        try (StageTimer timer = Metrics.start("batch", batch.date)) {
+            if (batch.totals.malformedRowCount > 0) {
+                System.out.println("Skipped " + batch.totals.malformedRowCount + " malformed rows in the batch of " + batch.date);
+            }
+            covered = writer.store(batch.summaryName(), batch.inputs, batch.totals, batch.totals.productCount(),
+                    consumer -> consumer.accept(batch.totals));
+        } catch (ManifestWriter.ChangedFilesException e) {
+            // The other files of the batch are batched again without the new versions
+            for (int i = 0; i < batch.files.size(); i++) {
+                if (e.files.containsKey(batch.inputs.get(i).name)) {
+                    unbatched.add(batch.files.get(i));
+                }
+            }
+            System.err.println("Could not store the batch of " + batch.files.size() + " files for date " + batch.date
+                    + ", leaving them to be received again: " + e.getMessage());
+            batch.messages.forEach(heartbeat::untrack);
+            return;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Could not store the batch of " + batch.files.size() + " files for date " + batch.date
+                    + ", leaving them to be received again: " + e.getMessage());
+            batch.messages.forEach(heartbeat::untrack);
+            return;
+        }
+        if (!covered.isEmpty()) {
+            releaseCovered(batch, covered, acknowledger, heartbeat);
+            return;
+        }
+        for (String file : batch.files) {
+            String[] arguments = file.split(";");
+            deleteFileFromS3(arguments[0], arguments[1]);
+        }
+        for (Message message : batch.messages) {
+            acknowledger.acknowledge(message);
+            heartbeat.untrack(message);
+        }
+        long nanos = System.nanoTime() - start;
+        Metrics.increment("files", batch.files.size());
+        Metrics.increment("batches", 1);
+        FILE_LOG.log(System.out::println, () -> "Stored " + batch.files.size() + " files for date " + batch.date + " as one summary in "
+                + nanos / 1_000_000 + " ms");
+    }
 
-            productSummaryMap.forEach((product, summary) -> {
-                String[] row = {"Product", product, String.valueOf(summary.totalQuantity), String.valueOf(summary.totalSold), String.valueOf(summary.totalProfit)};
-                csvWriter.writeNext(row);
-            });
+    // Deletes and acknowledges the files of a refused batch that another summary already counts in
+    // the same version; the others become visible again and are batched without them
+    private void releaseCovered(DateBatcher.Batch batch, Map<String, String> covered, MessageAcknowledger acknowledger,
+            VisibilityHeartbeat heartbeat) {
+        for (int i = 0; i < batch.files.size(); i++) {
+            Message message = batch.messages.get(i);
+            String summaryKey = covered.get(batch.inputs.get(i).name);
+            if (summaryKey != null) {
+                String[] arguments = batch.files.get(i).split(";");
+                System.out.println("File " + arguments[1] + " is already counted in " + summaryKey + "; deleting it.");
+                deleteFileFromS3(arguments[0], arguments[1]);
+                acknowledger.acknowledge(message);
+            }
+            heartbeat.untrack(message);
         }
+        Metrics.increment("batch.covered", covered.size());
+        System.out.println("Dropped the batch of " + batch.files.size() + " files for date " + batch.date + ": " + covered.size()
+                + " were already counted, the others will be received again.");
+    }
 
-        File file = new File(outputFilename);
-        s3.putObject("sales-data-output-bucket", "Summary-" + fileName, file);
-        System.out.println("Summary file uploaded to sales-data-output-bucket");
+    private void processFile(String inputBucketName, String fileName) throws IOException {
+        try (BoundedAggregate aggregate = SalesFileReader.read(store, inputBucketName, fileName)) {
+            storeFileSummaries(inputBucketName, fileName, aggregate);
+        }
     }
 
-    private static void deleteFileFromS3(String bucketName, String fileName) {
-        try {
-            s3.deleteObject(bucketName, fileName);
-            System.out.println("Deleted file " + fileName + " from S3 bucket: " + bucketName);
-        } catch (Exception e) {
-            System.err.println("Error occurred while trying to delete file " + fileName + " from S3 bucket: " + e.getMessage());
+    private void storeFileSummaries(String inputBucketName, String fileName, BoundedAggregate aggregate) throws IOException {
+        if (aggregate.malformedRowCount() > 0) {
+            System.out.println("Skipped " + aggregate.malformedRowCount() + " malformed rows in file: " + fileName);
         }
+        writer.storeFile(inputBucketName, fileName, aggregate);
     }
 
-    private static void deleteMessageFromQueue(SqsClient sqsClient, String queueURL, Message message) {
-        DeleteMessageRequest deleteMessageRequest = DeleteMessageRequest.builder()
-                .queueUrl(queueURL)
-                .receiptHandle(message.receiptHandle())
-                .build();
-        sqsClient.deleteMessage(deleteMessageRequest);
-        System.out.println("Message deleted from SQS queue.");
+    @SuppressWarnings("try")
+    private void deleteFileFromS3(String bucketName, String fileName) {
+        try (StageTimer timer = Metrics.start("delete", fileName)) {
+            store.delete(bucketName, fileName);
+        } catch (Exception e) {
+            System.err.println("Error occurred while trying to delete file " + fileName + " from S3 bucket: " + e.getMessage());
+        }
     }
 }
@@ -0,0 +1,88 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long MILLI = 1_000_000;
+
+    @Test
+    public void grantsTheSlotsThatAreFree() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 8);
+        assertEquals(4, limiter.acquire(10));
+        limiter.release(2);
+        assertEquals(2, limiter.inFlight());
+        assertEquals(2, limiter.acquire(5));
+        assertEquals(4, limiter.inFlight());
+    }
+
+    @Test
+    public void growsByOneEveryLimitFilesWhileSaturated() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 3);
+        limiter.backlog(100);
+        // 2 + 1/2 + 1/2.5 + 1/2.9 passes 3 on the third file
+        for (int file = 0; file < 3; file++) {
+            assertEquals(2, limiter.limit());
+            limiter.acquire(10);
+            limiter.completed(MILLI, false);
+        }
+        assertEquals(3, limiter.limit());
+        for (int file = 0; file < 10; file++) {
+            limiter.acquire(10);
+            limiter.completed(MILLI, false);
+        }
+        assertEquals(3, limiter.limit());
+    }
+
+    @Test
+    public void doesNotGrowWithoutABacklog() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 8);
+        limiter.backlog(0);
+        for (int file = 0; file < 10; file++) {
+            limiter.acquire(10);
+            limiter.completed(MILLI, false);
+        }
+        assertEquals(2, limiter.limit());
+    }
+
+    @Test
+    public void throttlingHalvesTheLimitOncePerFilesInFlight() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 16);
+        assertEquals(8, limiter.acquire(8));
+        limiter.completed(MILLI, true);
+        assertEquals(4, limiter.limit());
+        // The other files in flight saw the same throttling
+        for (int file = 0; file < 7; file++) {
+            limiter.completed(MILLI, true);
+        }
+        assertEquals(4, limiter.limit());
+
+        limiter.acquire(1);
+        limiter.completed(MILLI, true);
+        assertEquals(2, limiter.limit());
+    }
+
+    @Test
+    public void neverGoesBelowTheMinimum() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 2, 8);
+        limiter.acquire(1);
+        limiter.completed(MILLI, true);
+        assertEquals(2, limiter.limit());
+    }
+
+    @Test
+    public void shrinksWhenFilesTakeMuchLongerThanUsual() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 20);
+        for (int file = 0; file < 50; file++) {
+            limiter.acquire(1);
+            limiter.completed(MILLI, false);
+        }
+        assertEquals(10, limiter.limit());
+
+        limiter.acquire(1);
+        limiter.completed(100 * MILLI, false);
+        assertEquals(9, limiter.limit());
+    }
+}
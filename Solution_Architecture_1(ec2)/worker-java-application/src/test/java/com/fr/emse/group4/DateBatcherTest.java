@@ -0,0 +1,129 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+public class DateBatcherTest {
+
+    private static final String DATE = "01-01-2024";
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private final MemoryObjectStore store = new MemoryObjectStore();
+
+    @Test
+    public void handsBackABatchOnceItHoldsMaxFiles() throws IOException {
+        DateBatcher batcher = new DateBatcher(2, Long.MAX_VALUE, NEVER);
+        assertNull(add(batcher, "store1", Integer.MAX_VALUE));
+        DateBatcher.Batch batch = add(batcher, "store2", Integer.MAX_VALUE);
+
+        assertNotNull(batch);
+        assertEquals(Arrays.asList("input;" + DATE + "-store1.csv", "input;" + DATE + "-store2.csv"), batch.files);
+        assertEquals(DATE + "-store2.csv", batch.inputs.get(1).name);
+        assertEquals(2, batch.messages.size());
+        assertEquals(storeProfit("store1") + storeProfit("store2"), batch.totals.storeProfit(0));
+        assertTrue(batcher.drain().isEmpty());
+    }
+
+    @Test
+    public void handsBackABatchOnceItHoldsMaxBytes() throws IOException {
+        DateBatcher batcher = new DateBatcher(100, 1, NEVER);
+        DateBatcher.Batch batch = add(batcher, "store1", Integer.MAX_VALUE);
+        assertNotNull(batch);
+        assertEquals(batch.inputs.get(0).size, batch.bytes);
+    }
+
+    @Test
+    public void keepsOneBatchPerDate() throws IOException {
+        DateBatcher batcher = new DateBatcher(100, Long.MAX_VALUE, NEVER);
+        add(batcher, "store1", Integer.MAX_VALUE);
+        store.put("input", "02-01-2024-store1.csv", SyntheticSales.generate("02-01-2024", 20, 1, 5, 3), "text/csv", null);
+        try (BoundedAggregate aggregate = SalesFileReader.read(store, "input", "02-01-2024-store1.csv")) {
+            assertNull(batcher.add("02-01-2024", message("02-01-2024-store1.csv"), "input;02-01-2024-store1.csv", aggregate));
+        }
+        assertEquals(2, batcher.drain().size());
+    }
+
+    @Test
+    public void expiredBatchesAreNoLongerOpen() throws IOException {
+        DateBatcher batcher = new DateBatcher(100, Long.MAX_VALUE, 0);
+        add(batcher, "store1", Integer.MAX_VALUE);
+        assertEquals(1, batcher.expired().size());
+        assertTrue(batcher.drain().isEmpty());
+    }
+
+    @Test
+    public void sumsTheProductsOfItsFiles() throws IOException {
+        DateBatcher batcher = new DateBatcher(100, Long.MAX_VALUE, NEVER);
+        add(batcher, "store1", Integer.MAX_VALUE);
+        // Spilled, so its products are read back in chunks
+        add(batcher, "store2", 5);
+        DateBatcher.Batch batch = batcher.drain().get(0);
+
+        SalesAggregate expected = new SalesAggregate();
+        for (String name : new String[] {"store1", "store2"}) {
+            try (BoundedAggregate aggregate = SalesFileReader.read(store, "input", DATE + "-" + name + ".csv")) {
+                aggregate.forEach(expected::merge);
+            }
+        }
+        assertEquals(expected.productCount(), batch.totals.productCount());
+        for (int i = 0; i < expected.productCount(); i++) {
+            assertEquals(expected.productName(i), batch.totals.productName(i));
+            assertEquals(expected.productProfit(i), batch.totals.productProfit(i));
+        }
+    }
+
+    @Test
+    public void aFileThatFailsToReadLeavesTheBatchAsItWas() throws IOException {
+        DateBatcher batcher = new DateBatcher(100, Long.MAX_VALUE, NEVER);
+        add(batcher, "store1", Integer.MAX_VALUE);
+        put("store2");
+        BoundedAggregate spilled = SalesFileReader.read(store, "input", DATE + "-store2.csv", 5);
+        // Deletes the spilled products, so reading them back fails after the stores were read
+        spilled.close();
+        try {
+            batcher.add(DATE, message(DATE + "-store2.csv"), "input;" + DATE + "-store2.csv", spilled);
+            fail("Added a file whose products could not be read");
+        } catch (IOException expected) {
+            // expected
+        }
+
+        DateBatcher.Batch batch = batcher.drain().get(0);
+        assertEquals(Arrays.asList("input;" + DATE + "-store1.csv"), batch.files);
+        assertEquals(storeProfit("store1"), batch.totals.storeProfit(0));
+    }
+
+    private DateBatcher.Batch add(DateBatcher batcher, String name, int budget) throws IOException {
+        String key = put(name);
+        try (BoundedAggregate aggregate = SalesFileReader.read(store, "input", key, budget)) {
+            return batcher.add(DATE, message(key), "input;" + key, aggregate);
+        }
+    }
+
+    private String put(String name) {
+        String key = DATE + "-" + name + ".csv";
+        store.put("input", key, SyntheticSales.generate(DATE, 200, 1, 40, name.hashCode()), "text/csv", null);
+        return key;
+    }
+
+    // The files all sell in the same store, so a batch holds a single store row
+    private long storeProfit(String name) throws IOException {
+        try (BoundedAggregate aggregate = SalesFileReader.read(store, "input", DATE + "-" + name + ".csv")) {
+            assertEquals(1, aggregate.stores().storeCount());
+            return aggregate.stores().storeProfit(0);
+        }
+    }
+
+    private static Message message(String key) {
+        return Message.builder().messageId(key).receiptHandle(key).body("input;" + key).build();
+    }
+}
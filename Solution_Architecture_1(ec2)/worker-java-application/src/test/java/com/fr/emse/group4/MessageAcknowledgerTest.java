@@ -0,0 +1,100 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+public class MessageAcknowledgerTest {
+
+    private static final long NEVER = 3_600_000;
+
+    private final RecordingQueue queue = new RecordingQueue();
+
+    @Test
+    public void deletesAsSoonAsTenMessagesArePending() {
+        List<Message> messages = queue.receiveNew(12, 60);
+        try (MessageAcknowledger acknowledger = new MessageAcknowledger(queue, NEVER)) {
+            for (int i = 0; i < 9; i++) {
+                acknowledger.acknowledge(messages.get(i));
+            }
+            assertEquals(Collections.emptyList(), queue.deleteBatches());
+            acknowledger.acknowledge(messages.get(9));
+            assertEquals(Arrays.asList(10), queue.deleteBatches());
+            assertEquals(2, queue.queue.size());
+        }
+    }
+
+    @Test
+    public void flushesAPartialBatchAfterTheDelay() throws InterruptedException {
+        List<Message> messages = queue.receiveNew(3, 60);
+        try (MessageAcknowledger acknowledger = new MessageAcknowledger(queue, 1000)) {
+            messages.forEach(acknowledger::acknowledge);
+            Thread.sleep(500);
+            assertEquals(Collections.emptyList(), queue.deleteBatches());
+            long deadline = System.currentTimeMillis() + 5000;
+            while (queue.queue.size() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(Arrays.asList(3), queue.deleteBatches());
+            assertEquals(0, queue.queue.size());
+        }
+    }
+
+    @Test
+    public void closeFlushesWhatIsPending() {
+        List<Message> messages = queue.receiveNew(13, 60);
+        MessageAcknowledger acknowledger = new MessageAcknowledger(queue, NEVER);
+        messages.forEach(acknowledger::acknowledge);
+        assertEquals(Arrays.asList(10), queue.deleteBatches());
+        acknowledger.close();
+        assertEquals(Arrays.asList(10, 3), queue.deleteBatches());
+        assertEquals(0, queue.queue.size());
+    }
+
+    @Test
+    public void keepsFlushingAfterAFailedDelete() throws InterruptedException {
+        List<Message> messages = queue.receiveNew(2, 60);
+        MessageQueue failingOnce = new MessageQueue() {
+            private boolean failed;
+
+            @Override
+            public List<Message> receive(int maxMessages, int waitTimeSeconds, int visibilityTimeoutSeconds) {
+                return queue.receive(maxMessages, waitTimeSeconds, visibilityTimeoutSeconds);
+            }
+
+            @Override
+            public synchronized List<Message> deleteBatch(List<Message> batch) {
+                if (!failed) {
+                    failed = true;
+                    throw new IllegalStateException("throttled");
+                }
+                return queue.deleteBatch(batch);
+            }
+
+            @Override
+            public List<Message> changeVisibilityBatch(List<Message> batch, int visibilityTimeoutSeconds) {
+                return queue.changeVisibilityBatch(batch, visibilityTimeoutSeconds);
+            }
+
+            @Override
+            public long approximateBacklog() {
+                return queue.approximateBacklog();
+            }
+        };
+        try (MessageAcknowledger acknowledger = new MessageAcknowledger(failingOnce, 200)) {
+            acknowledger.acknowledge(messages.get(0));
+            Thread.sleep(600);
+            acknowledger.acknowledge(messages.get(1));
+        }
+        // The first message stays in the queue until its visibility timeout; the second is deleted
+        assertTrue(queue.deleteBatches().contains(1));
+        assertEquals(1, queue.queue.size());
+    }
+}
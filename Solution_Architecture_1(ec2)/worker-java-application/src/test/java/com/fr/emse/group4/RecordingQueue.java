@@ -0,0 +1,56 @@
+package com.fr.emse.group4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+// InMemoryMessageQueue that records the size of every delete and visibility batch
+final class RecordingQueue implements MessageQueue {
+
+    final InMemoryMessageQueue queue = new InMemoryMessageQueue();
+    private final List<Integer> deleteBatches = new ArrayList<>();
+    private final List<Integer> visibilityBatches = new ArrayList<>();
+
+    // Sends count messages and receives them all, hidden for visibilityTimeoutSeconds
+    List<Message> receiveNew(int count, int visibilityTimeoutSeconds) {
+        for (int i = 0; i < count; i++) {
+            queue.send("bucket;file-" + i + ".csv");
+        }
+        return queue.receive(count, 0, visibilityTimeoutSeconds);
+    }
+
+    @Override
+    public List<Message> receive(int maxMessages, int waitTimeSeconds, int visibilityTimeoutSeconds) {
+        return queue.receive(maxMessages, waitTimeSeconds, visibilityTimeoutSeconds);
+    }
+
+    @Override
+    public List<Message> deleteBatch(List<Message> messages) {
+        synchronized (this) {
+            deleteBatches.add(messages.size());
+        }
+        return queue.deleteBatch(messages);
+    }
+
+    @Override
+    public List<Message> changeVisibilityBatch(List<Message> messages, int visibilityTimeoutSeconds) {
+        synchronized (this) {
+            visibilityBatches.add(messages.size());
+        }
+        return queue.changeVisibilityBatch(messages, visibilityTimeoutSeconds);
+    }
+
+    @Override
+    public long approximateBacklog() {
+        return queue.approximateBacklog();
+    }
+
+    synchronized List<Integer> deleteBatches() {
+        return new ArrayList<>(deleteBatches);
+    }
+
+    synchronized List<Integer> visibilityBatches() {
+        return new ArrayList<>(visibilityBatches);
+    }
+}
@@ -0,0 +1,66 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+public class VisibilityHeartbeatTest {
+
+    // The shortest timeout that still extends every second
+    private static final int VISIBILITY_TIMEOUT = 3;
+
+    private final RecordingQueue queue = new RecordingQueue();
+
+    @Test
+    public void keepsTrackedMessagesHiddenPastTheirTimeout() throws InterruptedException {
+        List<Message> messages = queue.receiveNew(1, VISIBILITY_TIMEOUT);
+        try (VisibilityHeartbeat heartbeat = new VisibilityHeartbeat(queue, VISIBILITY_TIMEOUT)) {
+            heartbeat.track(messages.get(0));
+            Thread.sleep(VISIBILITY_TIMEOUT * 1000L + 1500);
+            assertEquals(0, queue.receive(10, 0, VISIBILITY_TIMEOUT).size());
+            assertEquals(0, queue.queue.redeliveries());
+        }
+    }
+
+    @Test
+    public void extendsInBatchesOfTen() throws InterruptedException {
+        List<Message> messages = queue.receiveNew(25, VISIBILITY_TIMEOUT);
+        try (VisibilityHeartbeat heartbeat = new VisibilityHeartbeat(queue, VISIBILITY_TIMEOUT)) {
+            messages.forEach(heartbeat::track);
+            assertEquals(25, heartbeat.inFlightCount());
+            Thread.sleep(1500);
+        }
+        List<Integer> batches = queue.visibilityBatches();
+        assertTrue(batches.size() >= 3);
+        assertEquals(Arrays.asList(10, 10, 5), batches.subList(0, 3));
+    }
+
+    @Test
+    public void untrackedMessagesAreRedelivered() throws InterruptedException {
+        List<Message> messages = queue.receiveNew(2, VISIBILITY_TIMEOUT);
+        try (VisibilityHeartbeat heartbeat = new VisibilityHeartbeat(queue, VISIBILITY_TIMEOUT)) {
+            messages.forEach(heartbeat::track);
+            heartbeat.untrack(messages.get(1));
+            assertEquals(1, heartbeat.inFlightCount());
+            List<Message> redelivered = queue.receive(10, VISIBILITY_TIMEOUT + 2, VISIBILITY_TIMEOUT);
+            assertEquals(1, redelivered.size());
+            assertEquals(messages.get(1).messageId(), redelivered.get(0).messageId());
+        }
+    }
+
+    @Test
+    public void closeStopsExtending() throws InterruptedException {
+        List<Message> messages = queue.receiveNew(1, VISIBILITY_TIMEOUT);
+        VisibilityHeartbeat heartbeat = new VisibilityHeartbeat(queue, VISIBILITY_TIMEOUT);
+        heartbeat.track(messages.get(0));
+        heartbeat.close();
+        Thread.sleep(1500);
+        assertTrue(queue.visibilityBatches().isEmpty());
+    }
+}
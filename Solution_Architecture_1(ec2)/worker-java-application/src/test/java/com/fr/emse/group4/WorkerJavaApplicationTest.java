@@ -0,0 +1,68 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import software.amazon.awssdk.services.sqs.model.Message;
+
+public class WorkerJavaApplicationTest {
+
+    private static final String DATE = "01-01-2024";
+
+    private final MemoryObjectStore store = new MemoryObjectStore();
+    private final RecordingQueue recording = new RecordingQueue();
+    // Receives without waiting, so run returns as soon as the queue is empty
+    private final MessageQueue queue = new MessageQueue() {
+        @Override
+        public List<Message> receive(int maxMessages, int waitTimeSeconds, int visibilityTimeoutSeconds) {
+            return recording.receive(maxMessages, 0, visibilityTimeoutSeconds);
+        }
+
+        @Override
+        public List<Message> deleteBatch(List<Message> messages) {
+            return recording.deleteBatch(messages);
+        }
+
+        @Override
+        public List<Message> changeVisibilityBatch(List<Message> messages, int visibilityTimeoutSeconds) {
+            return recording.changeVisibilityBatch(messages, visibilityTimeoutSeconds);
+        }
+
+        @Override
+        public long approximateBacklog() {
+            return recording.approximateBacklog();
+        }
+    };
+
+    @Test
+    public void acknowledgesMessagesThatNameNoFile() throws Exception {
+        String key = DATE + "-store1.csv";
+        store.put("input", key, SyntheticSales.generate(DATE, 50, 1, 10, 1), "text/csv", null);
+        recording.queue.send("no-separator");
+        recording.queue.send(";");
+        recording.queue.send("input;" + key);
+
+        new WorkerJavaApplication(store, queue).run(false, 2, 30, 50);
+
+        assertEquals(0, recording.queue.size());
+        assertNull(store.get("input", key));
+        assertNotNull(store.get(SummaryWriter.OUTPUT_BUCKET, SummaryManifest.summaryKey(key)));
+    }
+
+    @Test
+    public void processRefusesABodyThatNamesNoFile() throws IOException {
+        try {
+            new WorkerJavaApplication(store, queue).process("input");
+            fail("Processed a body without a key");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+}
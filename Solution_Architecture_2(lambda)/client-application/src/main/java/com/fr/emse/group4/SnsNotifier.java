@@ -0,0 +1,40 @@
+package com.fr.emse.group4;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import software.amazon.awssdk.services.sns.SnsClient;
+import software.amazon.awssdk.services.sns.model.BatchResultErrorEntry;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequest;
+import software.amazon.awssdk.services.sns.model.PublishBatchRequestEntry;
+
+final class SnsNotifier implements Notifier {
+
+    private final SnsClient snsClient;
+    private final String topicArn;
+
+    SnsNotifier(SnsClient snsClient, String topicArn) {
+        this.snsClient = snsClient;
+        this.topicArn = topicArn;
+    }
+
+    @Override
+    public List<String> sendBatch(List<String> bodies) {
+        List<PublishBatchRequestEntry> entries = new ArrayList<>(bodies.size());
+        for (int i = 0; i < bodies.size(); i++) {
+            entries.add(PublishBatchRequestEntry.builder()
+                    .id(String.valueOf(i))
+                    .message(bodies.get(i))
+                    .build());
+        }
+        PublishBatchRequest request = PublishBatchRequest.builder()
+                .topicArn(topicArn)
+                .publishBatchRequestEntries(entries)
+                .build();
+        List<String> failed = new ArrayList<>();
+        for (BatchResultErrorEntry error : snsClient.publishBatch(request).failed()) {
+            failed.add(bodies.get(Integer.parseInt(error.id())));
+        }
+        return failed;
+    }
+}
@@ -1,40 +1,348 @@
 package com.fr.emse.group4;
 
-import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.S3ObjectSummary;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class Operator {
 
-    public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
-        System.out.println("Enter the date in your preferred format (e.g., DD-MM-YYYY): ");
-        String date = scanner.nextLine();
+    // The two date formats of sales file names, as SummaryManifest.dateOf accepts them
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd-MM-uuuu");
+    private static final DateTimeFormatter ISO_DATE_FORMAT = DateTimeFormatter.ofPattern("uuuu-MM-dd");
+
+    public static void main(String[] args) throws IOException {
+        String localDirectory = null;
+        boolean relist = false;
+        boolean full = false;
+        String from = null;
+        String to = null;
+        int parallel = 8;
+        Set<String> storeFilter = new HashSet<>();
+        Set<String> productFilter = new HashSet<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--local".equals(args[i]) && i + 1 < args.length) {
+                localDirectory = args[++i];
+            } else if ("--relist".equals(args[i])) {
+                relist = true;
+            } else if ("--full".equals(args[i])) {
+                full = true;
+            } else if ("--from".equals(args[i]) && i + 1 < args.length) {
+                from = args[++i];
+            } else if ("--to".equals(args[i]) && i + 1 < args.length) {
+                to = args[++i];
+            } else if ("--parallel".equals(args[i]) && i + 1 < args.length) {
+                parallel = Integer.parseInt(args[++i]);
+            } else if ("--store".equals(args[i]) && i + 1 < args.length) {
+                storeFilter.add(args[++i]);
+            } else if ("--product".equals(args[i]) && i + 1 < args.length) {
+                productFilter.add(args[++i]);
+            }
+        }
 
         String bucketName = "sales-data-output-bucket";
-        AmazonS3 s3Client = AmazonS3ClientBuilder.defaultClient();
-        System.out.println("Getting files from the bucket for date: " + date);
+        SummaryStore store;
+        // --local <dir> reads summaries from a directory holding a copy of the bucket
+        if (localDirectory != null) {
+            store = SummaryStore.local(Paths.get(localDirectory));
+        } else {
+            store = SummaryStore.s3(AmazonS3ClientBuilder.defaultClient(), bucketName);
+        }
 
-        List<S3ObjectSummary> filteredObjects = new ArrayList<>();
-        for (S3ObjectSummary object : s3Client.listObjects(bucketName).getObjectSummaries()) {
-            if (object.getKey().contains("Summary-" + date)) {
-                filteredObjects.add(object);
-                System.out.println("File added for processing: " + object.getKey());
+        // --from and --to (DD-MM-YYYY, both included) report on a range of dates without prompting
+        if (from != null || to != null) {
+            try {
+                List<String> dates = datesBetween(from != null ? from : to, to != null ? to : from);
+                processRange(store, dates, relist, !full, Math.max(1, parallel), storeFilter, productFilter);
+            } catch (DateTimeParseException e) {
+                System.err.println("Dates must be given as DD-MM-YYYY or YYYY-MM-DD: " + e.getParsedString());
+            } catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
             }
+            Metrics.dump();
+            return;
+        }
+
+        Scanner scanner = new Scanner(System.in);
+        System.out.println("Enter the date in your preferred format (e.g., DD-MM-YYYY): ");
+        String date = scanner.nextLine().trim();
+        System.out.println("Getting files from " + (localDirectory != null ? "the directory " + localDirectory : "the bucket") + " for date: " + date);
+
+        List<SummaryManifest.Entry> summaries = summariesOf(store, date, relist);
+        for (SummaryManifest.Entry summary : summaries) {
+            System.out.println("File added for processing: " + summary.key);
         }
 
         // Add a print message here
-        if (!filteredObjects.isEmpty()) {
+        if (!summaries.isEmpty()) {
             System.out.println("Files retrieved successfully. Sending files to the Consolidator for processing.");
-            Consolidator consolidator = new Consolidator();
-            consolidator.processData(filteredObjects, bucketName);
+            try (Consolidator consolidator = new Consolidator()) {
+                // Only summaries not yet in the saved state of the date are read, unless --full is given
+                SalesAggregate totals = consolidator.consolidateDate(date, summaries, store, !full);
+                consolidator.displayResults(filter(totals, storeFilter, productFilter));
+            }
         } else {
             System.out.println("No files found for the given date: " + date);
         }
 
+        Metrics.dump();
         scanner.close();
     }
+
+    // Consolidates up to `parallel` dates at a time, all sharing the store and the Consolidator's
+    // threads, then prints a line per date and the totals of the whole range.
+    private static void processRange(SummaryStore store, List<String> dates, boolean relist, boolean incremental, int parallel,
+                                     Set<String> storeFilter, Set<String> productFilter) {
+        long start = System.nanoTime();
+        ExecutorService datePool = Executors.newFixedThreadPool(Math.min(parallel, dates.size()));
+        try (Consolidator consolidator = new Consolidator()) {
+            List<Future<SalesAggregate>> results = new ArrayList<>(dates.size());
+            for (String date : dates) {
+                results.add(datePool.submit(() -> {
+                    List<SummaryManifest.Entry> summaries = summariesOf(store, date, relist);
+                    return summaries.isEmpty() ? null : consolidator.consolidateDate(date, summaries, store, incremental);
+                }));
+            }
+
+            List<DayResult> days = new ArrayList<>(dates.size());
+            for (int i = 0; i < dates.size(); i++) {
+                try {
+                    days.add(new DayResult(dates.get(i), results.get(i).get(), null));
+                } catch (ExecutionException e) {
+                    days.add(new DayResult(dates.get(i), null, failureOf(e)));
+                }
+            }
+            writeRangeReport(days, storeFilter, productFilter, System.out);
+            System.out.println("Consolidated " + dates.size() + " dates in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("Interrupted while consolidating dates");
+        } finally {
+            datePool.shutdownNow();
+        }
+    }
+
+    // Totals of one date of a range; null totals with no error when the date has no files
+    static final class DayResult {
+        final String date;
+        final SalesAggregate totals;
+        final String error;
+
+        DayResult(String date, SalesAggregate totals, String error) {
+            this.date = date;
+            this.totals = totals;
+            this.error = error;
+        }
+    }
+
+    // A line per date, then the totals of the range. The dates are combined in the order given, so
+    // the report does not depend on which date was consolidated first.
+    static void writeRangeReport(List<DayResult> days, Set<String> storeFilter, Set<String> productFilter, PrintStream out) {
+        SalesAggregate range = new SalesAggregate();
+        out.println("Daily breakdown:");
+        for (DayResult result : days) {
+            if (result.error != null) {
+                out.println(result.date + ": failed - " + result.error);
+            } else if (result.totals == null) {
+                out.println(result.date + ": no files");
+            } else {
+                SalesAggregate day = filter(result.totals, storeFilter, productFilter);
+                out.println(result.date + ": profit " + Money.format(storeProfit(day)) + ", quantity sold " + productQuantity(day)
+                        + ", total sold " + Money.format(productSold(day)));
+                range.merge(day);
+            }
+        }
+        out.println("Totals from " + days.get(0).date + " to " + days.get(days.size() - 1).date + ":");
+        Consolidator.writeResults(range, out);
+    }
+
+    static List<String> datesBetween(String from, String to) {
+        return datesBetween(from, to, Integer.MAX_VALUE);
+    }
+
+    // The dates are given in the format of the first one, which is the one of the file names
+    static List<String> datesBetween(String from, String to, int maxDays) {
+        DateTimeFormatter format = formatOf(from);
+        LocalDate first = LocalDate.parse(from, format);
+        LocalDate last = LocalDate.parse(to, formatOf(to));
+        if (last.isBefore(first)) {
+            throw new IllegalArgumentException("The range ends before it starts: " + from + " to " + to);
+        }
+        long days = ChronoUnit.DAYS.between(first, last) + 1;
+        if (days > maxDays) {
+            throw new IllegalArgumentException("The range spans " + days + " days, more than the " + maxDays + " allowed");
+        }
+        List<String> dates = new ArrayList<>();
+        for (LocalDate date = first; !date.isAfter(last); date = date.plusDays(1)) {
+            dates.add(date.format(format));
+        }
+        return dates;
+    }
+
+    private static DateTimeFormatter formatOf(String date) {
+        return date.length() > 4 && date.charAt(4) == '-' ? ISO_DATE_FORMAT : DATE_FORMAT;
+    }
+
+    // What a date's consolidation failed with, for its line of the report
+    static String failureOf(ExecutionException e) {
+        Throwable failure = e.getCause() != null ? e.getCause() : e;
+        return failure.getMessage() != null ? failure.getMessage() : failure.toString();
+    }
+
+    // Only the named stores and products, or all of them when no name is given
+    static SalesAggregate filter(SalesAggregate totals, Set<String> stores, Set<String> products) {
+        if (stores.isEmpty() && products.isEmpty()) {
+            return totals;
+        }
+        SalesAggregate filtered = new SalesAggregate();
+        for (int store = 0; store < totals.storeCount(); store++) {
+            if (stores.isEmpty() || stores.contains(totals.storeName(store))) {
+                filtered.addStore(totals.storeName(store), totals.storeProfit(store));
+            }
+        }
+        for (int product = 0; product < totals.productCount(); product++) {
+            if (products.isEmpty() || products.contains(totals.productName(product))) {
+                filtered.addProduct(totals.productName(product), totals.productQuantity(product),
+                        totals.productSold(product), totals.productProfit(product));
+            }
+        }
+        return filtered;
+    }
+
+    private static long storeProfit(SalesAggregate totals) {
+        long profit = 0;
+        for (int store = 0; store < totals.storeCount(); store++) {
+            profit += totals.storeProfit(store);
+        }
+        return profit;
+    }
+
+    private static long productQuantity(SalesAggregate totals) {
+        long quantity = 0;
+        for (int product = 0; product < totals.productCount(); product++) {
+            quantity += totals.productQuantity(product);
+        }
+        return quantity;
+    }
+
+    private static long productSold(SalesAggregate totals) {
+        long sold = 0;
+        for (int product = 0; product < totals.productCount(); product++) {
+            sold += totals.productSold(product);
+        }
+        return sold;
+    }
+
+    // The summaries of a date from its manifest, or from listing the date's prefix when there is
+    // none yet. --relist lists the prefix and writes the manifest again, see relist.
+    static List<SummaryManifest.Entry> summariesOf(SummaryStore store, String date, boolean relist) throws IOException {
+        if (relist) {
+            return relist(store, date);
+        }
+        SummaryManifest manifest = readManifest(store, date);
+        if (manifest != null) {
+            List<SummaryManifest.Entry> summaries = manifest.entries();
+            System.out.println("Found " + summaries.size() + " files in the manifest for date: " + date);
+            return summaries;
+        }
+        return listSummaries(store, date);
+    }
+
+    // Lists the prefix and replaces the manifest with the summaries relisted keeps, through
+    // ManifestWriter so that summaries a worker records meanwhile are listed again rather than
+    // dropped from the manifest.
+    private static List<SummaryManifest.Entry> relist(SummaryStore store, String date) throws IOException {
+        List<SummaryManifest.Entry> summaries = new ArrayList<>();
+        SummaryManifest written = ManifestWriter.rewrite(store.objects, store.bucketName, date, previous -> {
+            summaries.clear();
+            summaries.addAll(relisted(listSummaries(store, date), previous));
+            if (summaries.isEmpty()) {
+                return null;
+            }
+            SummaryManifest relistedManifest = new SummaryManifest();
+            summaries.forEach(relistedManifest::put);
+            return relistedManifest;
+        });
+        if (written != null) {
+            System.out.println("Manifest rewritten for date: " + date);
+        }
+        return summaries;
+    }
+
+    // The listed summaries that a rewritten manifest keeps. With the previous manifest at hand,
+    // batch summaries keep the files it records for them, and those it does not record are left
+    // out: a worker wrote them but stopped before recording them, and their files were batched
+    // again. So are summaries of single files that a batch already counts.
+    private static List<SummaryManifest.Entry> relisted(List<SummaryManifest.Entry> listed, SummaryManifest previous) {
+        if (previous == null) {
+            return listed;
+        }
+        List<SummaryManifest.Entry> recorded = new ArrayList<>(listed.size());
+        Set<String> batched = new HashSet<>();
+        for (SummaryManifest.Entry summary : listed) {
+            SummaryManifest.Entry entry = previous.get(summary.key);
+            if (entry != null) {
+                recorded.add(summary.covering(entry.files));
+                if (SummaryManifest.isBatch(entry.summaryName())) {
+                    entry.files.forEach(file -> batched.add(file.name));
+                }
+            } else if (SummaryManifest.isBatch(summary.summaryName())) {
+                System.out.println("Leaving out " + summary.key + ": a batch summary the manifest does not record.");
+            } else {
+                recorded.add(summary);
+            }
+        }
+        List<SummaryManifest.Entry> kept = new ArrayList<>(recorded.size());
+        for (SummaryManifest.Entry summary : recorded) {
+            if (!SummaryManifest.isBatch(summary.summaryName()) && batched.contains(summary.summaryName())) {
+                System.out.println("Leaving out " + summary.key + ": a batch summary already counts it.");
+            } else {
+                kept.add(summary);
+            }
+        }
+        if (kept.size() < listed.size()) {
+            System.out.println("Kept " + kept.size() + " of the " + listed.size() + " files listed.");
+        }
+        return kept;
+    }
+
+    // Null if the date has no manifest yet
+    @SuppressWarnings("try")
+    private static SummaryManifest readManifest(SummaryStore store, String date) throws IOException {
+        try (StageTimer timer = Metrics.start("manifest", date);
+             InputStream content = store.open(SummaryManifest.manifestKey(date))) {
+            return SummaryManifest.read(content);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+    }
+
+    // Summaries under the date's prefix, plus any stored with the older flat Summary-<date> keys
+    private static List<SummaryManifest.Entry> listSummaries(SummaryStore store, String date) throws IOException {
+        List<SummaryManifest.Entry> summaries = new ArrayList<>();
+        for (SummaryManifest.Entry object : store.list(SummaryManifest.datePrefix(date))) {
+            if (!SummaryManifest.isMetadata(object.key)) {
+                summaries.add(object);
+            }
+        }
+        summaries.addAll(store.list("Summary-" + date));
+        System.out.println("Listed " + summaries.size() + " files for date: " + date);
+        return summaries;
+    }
 }
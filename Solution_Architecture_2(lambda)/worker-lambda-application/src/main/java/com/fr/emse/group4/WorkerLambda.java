@@ -1,127 +1,173 @@
 package com.fr.emse.group4;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.amazonaws.services.lambda.runtime.events.SNSEvent;
-import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.lambda.runtime.events.SQSBatchResponse;
+import com.amazonaws.services.lambda.runtime.events.SQSEvent;
 import com.amazonaws.services.s3.AmazonS3ClientBuilder;
-import com.amazonaws.services.s3.model.S3Object;
-import com.opencsv.CSVWriter;
 
 public class WorkerLambda implements RequestHandler<SNSEvent, String> {
 
-    private static AmazonS3 s3 = AmazonS3ClientBuilder.defaultClient();
+    // Records of one event are processed concurrently on this many threads
+    private static final int RECORD_CONCURRENCY = Integer.getInteger("worker.recordConcurrency", 10);
+    private static final BufferPool SUMMARY_BUFFERS = new BufferPool(64 * 1024, RECORD_CONCURRENCY);
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService RECORD_POOL = Executors.newFixedThreadPool(RECORD_CONCURRENCY, runnable -> {
+        Thread thread = new Thread(runnable, "record-worker-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    // One line per processed file; worker.logEvery=N keeps the first 10, then one in N
+    private static final SampledLog FILE_LOG = new SampledLog(10, Integer.getInteger("worker.logEvery", 1));
+
+    private final ObjectStore store;
+    private final SummaryWriter writer;
+
+    public WorkerLambda() {
+        this(new S3ObjectStore(AmazonS3ClientBuilder.defaultClient(), SUMMARY_BUFFERS));
+    }
+
+    // Runs the handler against another store, e.g. MemoryObjectStore or FileObjectStore outside AWS
+    WorkerLambda(ObjectStore store) {
+        this.store = store;
+        this.writer = new SummaryWriter(store);
+    }
 
     @Override
     public String handleRequest(SNSEvent event, Context context) {
         context.getLogger().log("Invocation started.");
 
-        if (event.getRecords().isEmpty()) {
+        if (event.getRecords() == null || event.getRecords().isEmpty()) {
             context.getLogger().log("No records found in the event.");
             return "No Records";
         }
 
-        String message = event.getRecords().get(0).getSNS().getMessage();
-        context.getLogger().log("Received message: " + message);
+        List<String> messages = new ArrayList<>(event.getRecords().size());
+        for (SNSEvent.SNSRecord record : event.getRecords()) {
+            messages.add(record.getSNS().getMessage());
+        }
+        List<String> results = processAll(messages, context);
+
+        // Asynchronous invocations are only retried when the handler fails. Records that succeeded
+        // are simply stored again, and their files, deleted by then, are missing and skipped.
+        if (results.contains("Error")) {
+            throw new IllegalStateException("Could not process every record, failing the invocation so that it is retried");
+        }
+        context.getLogger().log("Invocation completed.");
+        // OK, or the result of the first record that failed
+        for (String result : results) {
+            if (!"OK".equals(result)) {
+                return result;
+            }
+        }
+        return "OK";
+    }
+
+    // Entry point for an SQS trigger: use com.fr.emse.group4.WorkerLambda::handleSqsEvent as the handler
+    // and enable ReportBatchItemFailures on the event source mapping, so only the failed files are retried
+    public SQSBatchResponse handleSqsEvent(SQSEvent event, Context context) {
+        context.getLogger().log("Invocation started.");
+        List<SQSBatchResponse.BatchItemFailure> failures = new ArrayList<>();
+        if (event.getRecords() == null || event.getRecords().isEmpty()) {
+            context.getLogger().log("No records found in the event.");
+            return new SQSBatchResponse(failures);
+        }
+
+        List<String> messages = new ArrayList<>(event.getRecords().size());
+        for (SQSEvent.SQSMessage message : event.getRecords()) {
+            messages.add(message.getBody());
+        }
+        List<String> results = processAll(messages, context);
+        for (int i = 0; i < results.size(); i++) {
+            // Messages with an invalid format, and missing or corrupt files, would fail again, so they
+            // are not retried
+            if ("Error".equals(results.get(i))) {
+                failures.add(new SQSBatchResponse.BatchItemFailure(event.getRecords().get(i).getMessageId()));
+            }
+        }
 
+        context.getLogger().log("Invocation completed with " + failures.size() + " failed of " + results.size() + " messages.");
+        return new SQSBatchResponse(failures);
+    }
+
+    // Processes the messages on RECORD_POOL and returns their results in the same order
+    private List<String> processAll(List<String> messages, Context context) {
+        List<Future<String>> futures = new ArrayList<>(messages.size());
+        for (String message : messages) {
+            futures.add(RECORD_POOL.submit(() -> processMessage(message, context)));
+        }
+        List<String> results = new ArrayList<>(messages.size());
+        for (Future<String> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                context.getLogger().log("Error occurred: " + e.getCause());
+                results.add("Error");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                context.getLogger().log("Interrupted while waiting for a record to be processed.");
+                results.add("Error");
+            }
+        }
+        // Background threads do not run while the environment is frozen, so dumps happen here
+        Metrics.dumpIfDue();
+        return results;
+    }
+
+    private String processMessage(String message, Context context) {
         String[] arguments = message.split(";");
         if (arguments.length < 2) {
             context.getLogger().log("Invalid message format.");
+            Metrics.increment("messages.dropped", 1);
             return "Invalid Format";
         }
 
         String inputBucketName = arguments[0];
         String fileName = arguments[1];
 
-        context.getLogger().log("Received message to process file: " + fileName);
-        try (S3Object s3Object = s3.getObject(inputBucketName, fileName);
-             InputStreamReader streamReader = new InputStreamReader(s3Object.getObjectContent(), StandardCharsets.UTF_8);
-             BufferedReader reader = new BufferedReader(streamReader)) {
-
-            context.getLogger().log("Downloading and processing file: " + fileName);
-            processFile(reader, fileName, context);
-            context.getLogger().log("File processing complete. Deleting file from S3 bucket: " + inputBucketName);
+        long start = System.nanoTime();
+        try {
+            processFile(inputBucketName, fileName, context);
             deleteFileFromS3(inputBucketName, fileName, context);
+            long nanos = System.nanoTime() - start;
+            Metrics.recordLatency("file", nanos);
+            Metrics.increment("files", 1);
+            FILE_LOG.log(context.getLogger()::log, () -> "Processed file " + fileName + " from " + inputBucketName + " in " + nanos / 1_000_000 + " ms");
         } catch (IOException e) {
+            if (SalesFileReader.isDataError(e)) {
+                context.getLogger().log("Dropping " + fileName + ": " + e.getMessage());
+                Metrics.increment("messages.dropped", 1);
+                return "Invalid File";
+            }
             context.getLogger().log("Error occurred: " + e.getMessage());
             return "Error";
         }
-
-        context.getLogger().log("Invocation completed.");
         return "OK";
     }
 
-    private static void processFile(BufferedReader reader, String fileName, Context context) throws IOException {
-        Map<String, Double> storeTotalProfit = new HashMap<>();
-        Map<String, ProductSummary> productSummaryMap = new HashMap<>();
-
-        String line;
-        reader.readLine(); // Skip header
-        context.getLogger().log("Reading data from file.");
-        while ((line = reader.readLine()) != null) {
-            String[] rows = line.split(";");
-            if (rows.length < 7) {
-                context.getLogger().log("Skipping malformed line: " + line);
-                continue;
+    private void processFile(String inputBucketName, String fileName, Context context) throws IOException {
+        try (BoundedAggregate aggregate = SalesFileReader.read(store, inputBucketName, fileName)) {
+            if (aggregate.malformedRowCount() > 0) {
+                context.getLogger().log("Skipped " + aggregate.malformedRowCount() + " malformed lines in file: " + fileName);
             }
-            String storeName = rows[1];
-            String product = rows[2];
-            int quantity = Integer.parseInt(rows[3]);
-            double unitPrice = Double.parseDouble(rows[4]);
-            double unitProfit = Double.parseDouble(rows[6]);
-
-            storeTotalProfit.merge(storeName, unitProfit * quantity, Double::sum);
-            productSummaryMap.computeIfAbsent(product, k -> new ProductSummary())
-                    .addValues(quantity, unitPrice * quantity, unitProfit * quantity);
+            writer.storeFile(inputBucketName, fileName, aggregate);
         }
-
-        context.getLogger().log("Writing data to summary CSV.");
-        writeToCSV(storeTotalProfit, productSummaryMap, fileName, context);
     }
 
-    static class ProductSummary {
-        int totalQuantity;
-        double totalSold;
-        double totalProfit;
-
-        void addValues(int quantity, double sold, double profit) {
-            this.totalQuantity += quantity;
-            this.totalSold += sold;
-            this.totalProfit += profit;
-        }
-    }
-
-    private static void writeToCSV(Map<String, Double> storeTotalProfit, Map<String, ProductSummary> productSummaryMap, String fileName, Context context) throws IOException {
-        String tempDir = System.getProperty("java.io.tmpdir");
-        String outputFilename = tempDir + File.separator + "Summary-" + fileName;
-
-        try (CSVWriter csvWriter = new CSVWriter(new FileWriter(outputFilename))) {
-            context.getLogger().log("Creating CSV file: " + outputFilename);
-            String[] header = {"Type", "Name", "Total Quantity", "Total Sold", "Total Profit"};
-            csvWriter.writeNext(header);
-
-            storeTotalProfit.forEach((store, totalProfit) -> csvWriter.writeNext(new String[]{"Store", store, "", "", String.valueOf(totalProfit)}));
-            productSummaryMap.forEach((product, summary) -> csvWriter.writeNext(new String[]{"Product", product, String.valueOf(summary.totalQuantity), String.valueOf(summary.totalSold), String.valueOf(summary.totalProfit)}));
-        }
-
-        File file = new File(outputFilename);
-        s3.putObject("sales-data-output-bucket", "Summary-" + fileName, file); // Replace with your output S3 bucket name
-        context.getLogger().log("Summary file uploaded to sales-data-output-bucket S3 bucket");
-    }
-
-    private static void deleteFileFromS3(String bucketName, String fileName, Context context) {
-        try {
-            s3.deleteObject(bucketName, fileName);
-            context.getLogger().log("Deleted file " + fileName + " from S3 bucket: " + bucketName);
+    @SuppressWarnings("try")
+    private void deleteFileFromS3(String bucketName, String fileName, Context context) {
+        try (StageTimer timer = Metrics.start("delete", fileName)) {
+            store.delete(bucketName, fileName);
         } catch (Exception e) {
             context.getLogger().log("Error occurred while trying to delete file " + fileName + " from S3 bucket: " + e.getMessage());
         }
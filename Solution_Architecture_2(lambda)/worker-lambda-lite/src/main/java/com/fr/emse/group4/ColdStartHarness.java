@@ -0,0 +1,82 @@
+package com.fr.emse.group4;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.amazonaws.services.lambda.runtime.events.SNSEvent;
+
+// Measures the cold start of WorkerLambdaLite without AWS. S3 is served by S3Stub in the same JVM,
+// and for handler init, the first invocation and a second one it reports the wall time and the
+// number of classes loaded. Run it in a fresh JVM each time, with and without --prime:
+//   java -cp worker-lambda-lite-1.0-SNAPSHOT.jar com.fr.emse.group4.ColdStartHarness [--prime] [--rows N] [--verbose]
+public class ColdStartHarness {
+
+    private static final String HANDLER = "com.fr.emse.group4.WorkerLambdaLite";
+    private static final String INPUT_BUCKET = "sales-data-input-bucket";
+
+    public static void main(String[] args) throws Exception {
+        boolean prime = false;
+        boolean verbose = false;
+        int rows = 100_000;
+        for (int i = 0; i < args.length; i++) {
+            if ("--prime".equals(args[i])) {
+                prime = true;
+            } else if ("--verbose".equals(args[i])) {
+                verbose = true;
+            } else if ("--rows".equals(args[i]) && i + 1 < args.length) {
+                rows = Integer.parseInt(args[++i]);
+            }
+        }
+
+        S3Stub stub = S3Stub.start();
+        try {
+            System.setProperty("worker.s3Endpoint", stub.endpoint());
+            System.setProperty("aws.accessKeyId", "local");
+            System.setProperty("aws.secretAccessKey", "local");
+            System.setProperty("worker.primeOnInit", String.valueOf(prime));
+            stub.put(INPUT_BUCKET, "01-01-2024-store-1.csv", SyntheticSales.generate("01-01-2024", rows, 10, 100, 1));
+            stub.put(INPUT_BUCKET, "01-01-2024-store-2.csv", SyntheticSales.generate("01-01-2024", rows, 10, 100, 2));
+            Context context = new LocalContext(verbose);
+
+            ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+            long jvmUptime = ManagementFactory.getRuntimeMXBean().getUptime();
+            long classes = classLoading.getTotalLoadedClassCount();
+            long start = System.nanoTime();
+            @SuppressWarnings("unchecked")
+            RequestHandler<SNSEvent, String> handler =
+                    (RequestHandler<SNSEvent, String>) Class.forName(HANDLER).getConstructor().newInstance();
+            long initNanos = System.nanoTime() - start;
+            long initClasses = classLoading.getTotalLoadedClassCount() - classes;
+
+            classes = classLoading.getTotalLoadedClassCount();
+            start = System.nanoTime();
+            String firstResult = handler.handleRequest(event("01-01-2024-store-1.csv"), context);
+            long firstNanos = System.nanoTime() - start;
+            long firstClasses = classLoading.getTotalLoadedClassCount() - classes;
+
+            classes = classLoading.getTotalLoadedClassCount();
+            start = System.nanoTime();
+            String secondResult = handler.handleRequest(event("01-01-2024-store-2.csv"), context);
+            long secondNanos = System.nanoTime() - start;
+            long secondClasses = classLoading.getTotalLoadedClassCount() - classes;
+
+            System.out.println("Cold start of " + HANDLER + " (priming on init: " + prime + ", " + rows + " rows per file)");
+            System.out.println("  JVM uptime before init: " + jvmUptime + " ms");
+            System.out.printf("  init:               %6d ms, %5d classes loaded%n", initNanos / 1_000_000, initClasses);
+            System.out.printf("  first invocation:   %6d ms, %5d classes loaded (%s)%n", firstNanos / 1_000_000, firstClasses, firstResult);
+            System.out.printf("  second invocation:  %6d ms, %5d classes loaded (%s)%n", secondNanos / 1_000_000, secondClasses, secondResult);
+            System.out.println("  S3 requests served: " + stub.requestCount());
+        } finally {
+            // The stub's dispatcher thread would otherwise keep the JVM alive after a failure
+            stub.stop();
+        }
+    }
+
+    private static SNSEvent event(String fileName) {
+        SNSEvent.SNS sns = new SNSEvent.SNS().withMessage(INPUT_BUCKET + ";" + fileName);
+        return new SNSEvent().withRecords(Collections.singletonList(new SNSEvent.SNSRecord().withSns(sns)));
+    }
+}
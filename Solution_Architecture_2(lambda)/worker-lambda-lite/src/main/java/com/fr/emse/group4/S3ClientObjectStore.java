@@ -0,0 +1,148 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+// ObjectStore over an SDK v2 S3Client, used by the lean Lambda worker instead of the SDK v1 client.
+// Uploads are buffered and sent with a single PutObject, which fits the size of summaries.
+final class S3ClientObjectStore implements ObjectStore {
+
+    private final S3Client s3;
+
+    S3ClientObjectStore(S3Client s3) {
+        this.s3 = s3;
+    }
+
+    @Override
+    public StoredObject get(String bucketName, String key) throws IOException {
+        ResponseInputStream<GetObjectResponse> content;
+        try {
+            content = s3.getObject(GetObjectRequest.builder().bucket(bucketName).key(key).build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return null;
+            }
+            throw new IOException("Error occurred while reading " + key + " from S3 bucket: " + bucketName, e);
+        } catch (SdkException | UncheckedIOException e) {
+            throw new IOException("Error occurred while reading " + key + " from S3 bucket: " + bucketName, e);
+        }
+        return new StoredObject(content.response().contentLength(), content.response().contentEncoding(),
+                unquote(content.response().eTag()), content);
+    }
+
+    @Override
+    public StoredObject head(String bucketName, String key) throws IOException {
+        HeadObjectResponse response;
+        try {
+            response = s3.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key).build());
+        } catch (NoSuchKeyException e) {
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return null;
+            }
+            throw new IOException("Error occurred while reading the metadata of " + key + " from S3 bucket: " + bucketName, e);
+        } catch (SdkException e) {
+            throw new IOException("Error occurred while reading the metadata of " + key + " from S3 bucket: " + bucketName, e);
+        }
+        return new StoredObject(response.contentLength(), response.contentEncoding(), unquote(response.eTag()), null);
+    }
+
+    @Override
+    public InputStream openRange(String bucketName, String key, long start, long end) throws IOException {
+        try {
+            return s3.getObject(GetObjectRequest.builder().bucket(bucketName).key(key).range("bytes=" + start + "-" + end).build());
+        } catch (SdkException | UncheckedIOException e) {
+            throw new IOException("Error occurred while reading a range of " + key + " from S3 bucket: " + bucketName, e);
+        }
+    }
+
+    @Override
+    public List<SummaryManifest.Entry> list(String bucketName, String prefix) throws IOException {
+        List<SummaryManifest.Entry> objects = new ArrayList<>();
+        try {
+            for (S3Object object : s3.listObjectsV2Paginator(request -> request.bucket(bucketName).prefix(prefix)).contents()) {
+                objects.add(new SummaryManifest.Entry(object.key(), object.size(), unquote(object.eTag())));
+            }
+        } catch (SdkException | UncheckedIOException e) {
+            throw new IOException("Error occurred while listing " + prefix + " in S3 bucket: " + bucketName, e);
+        }
+        return objects;
+    }
+
+    @Override
+    public String put(String bucketName, String key, byte[] content, String contentType, String contentEncoding) throws IOException {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .build();
+        try {
+            return unquote(s3.putObject(request, RequestBody.fromBytes(content)).eTag());
+        } catch (SdkException | UncheckedIOException e) {
+            throw new IOException("Error occurred while uploading " + key + " to S3 bucket: " + bucketName, e);
+        }
+    }
+
+    @Override
+    public String putIfMatch(String bucketName, String key, byte[] content, String contentType, String expectedETag) throws IOException {
+        String header = expectedETag == null ? "If-None-Match" : "If-Match";
+        String value = expectedETag == null ? "*" : "\"" + expectedETag + "\"";
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentType(contentType)
+                .overrideConfiguration(configuration -> configuration.putHeader(header, value))
+                .build();
+        try {
+            return unquote(s3.putObject(request, RequestBody.fromBytes(content)).eTag());
+        } catch (S3Exception e) {
+            // 412 when the condition failed, 409 when a concurrent conditional write won the race
+            if (e.statusCode() == 412 || e.statusCode() == 409) {
+                return null;
+            }
+            throw new IOException("Error occurred while uploading " + key + " to S3 bucket: " + bucketName, e);
+        } catch (SdkException | UncheckedIOException e) {
+            throw new IOException("Error occurred while uploading " + key + " to S3 bucket: " + bucketName, e);
+        }
+    }
+
+    @Override
+    public ObjectUpload upload(String bucketName, String key, String contentEncoding) {
+        return new PutObjectUpload(this, bucketName, key, contentEncoding);
+    }
+
+    @Override
+    public void delete(String bucketName, String key) throws IOException {
+        try {
+            s3.deleteObject(request -> request.bucket(bucketName).key(key));
+        } catch (SdkException | UncheckedIOException e) {
+            throw new IOException("Error occurred while deleting " + key + " from S3 bucket: " + bucketName, e);
+        }
+    }
+
+    // SDK v2 returns the ETag header as sent, in quotes; the manifests hold them unquoted like SDK v1
+    private static String unquote(String eTag) {
+        return eTag != null && eTag.length() >= 2 && eTag.startsWith("\"") && eTag.endsWith("\"")
+                ? eTag.substring(1, eTag.length() - 1) : eTag;
+    }
+}
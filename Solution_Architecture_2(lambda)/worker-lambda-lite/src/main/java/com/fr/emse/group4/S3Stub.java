@@ -0,0 +1,213 @@
+package com.fr.emse.group4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+// Minimal path-style S3 endpoint on localhost for the cold-start harness: GET, PUT (including
+// conditional PUT) and DELETE of whole objects kept in memory. ETags are the hex MD5 of the content, as S3 returns for single-part
+// uploads, which the SDK checks after a PutObject.
+final class S3Stub {
+
+    private static final class StoredObject {
+        final byte[] content;
+        final String eTag;
+        final String contentEncoding;
+
+        StoredObject(byte[] content, String contentEncoding) {
+            this.content = content;
+            this.eTag = "\"" + md5Hex(content) + "\"";
+            this.contentEncoding = contentEncoding;
+        }
+    }
+
+    private final Map<String, StoredObject> objects = new ConcurrentHashMap<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private S3Stub(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    static S3Stub start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "s3-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        S3Stub stub = new S3Stub(server, executor);
+        server.createContext("/", stub::handle);
+        server.setExecutor(executor);
+        server.start();
+        return stub;
+    }
+
+    String endpoint() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    void put(String bucketName, String key, byte[] content) {
+        objects.put(bucketName + "/" + key, new StoredObject(content, null));
+    }
+
+    byte[] get(String bucketName, String key) {
+        StoredObject object = objects.get(bucketName + "/" + key);
+        return object == null ? null : object.content;
+    }
+
+    long requestCount() {
+        return requestCount.get();
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requestCount.incrementAndGet();
+        try {
+            // Path-style: /<bucket>/<key>
+            String path = exchange.getRequestURI().getPath().substring(1);
+            String method = exchange.getRequestMethod();
+            if ("PUT".equals(method)) {
+                byte[] body = readBody(exchange);
+                StoredObject object = new StoredObject(body, exchange.getRequestHeaders().getFirst("Content-Encoding"));
+                if (!putIfMatch(path, object, exchange.getRequestHeaders().getFirst("If-Match"),
+                        exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    sendError(exchange, 412, "PreconditionFailed", "At least one of the pre-conditions you specified did not hold", path);
+                    return;
+                }
+                exchange.getResponseHeaders().set("ETag", object.eTag);
+                exchange.sendResponseHeaders(200, -1);
+            } else if ("GET".equals(method)) {
+                StoredObject object = objects.get(path);
+                if (object == null) {
+                    sendNoSuchKey(exchange, path);
+                    return;
+                }
+                exchange.getResponseHeaders().set("ETag", object.eTag);
+                exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+                if (object.contentEncoding != null && !object.contentEncoding.contains("aws-chunked")) {
+                    exchange.getResponseHeaders().set("Content-Encoding", object.contentEncoding);
+                }
+                exchange.sendResponseHeaders(200, object.content.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(object.content);
+                }
+            } else if ("DELETE".equals(method)) {
+                objects.remove(path);
+                exchange.sendResponseHeaders(204, -1);
+            } else {
+                exchange.sendResponseHeaders(405, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Conditional writes as S3 checks them: If-Match against the current ETag, If-None-Match: * for
+    // a key that must not exist yet
+    private synchronized boolean putIfMatch(String path, StoredObject object, String ifMatch, String ifNoneMatch) {
+        StoredObject current = objects.get(path);
+        if (ifMatch != null && (current == null || !current.eTag.equals(ifMatch))) {
+            return false;
+        }
+        if ("*".equals(ifNoneMatch) && current != null) {
+            return false;
+        }
+        objects.put(path, object);
+        return true;
+    }
+
+    private static void sendNoSuchKey(HttpExchange exchange, String path) throws IOException {
+        sendError(exchange, 404, "NoSuchKey", "The specified key does not exist.", path);
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String code, String message, String path) throws IOException {
+        byte[] error = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?><Error><Code>" + code + "</Code>"
+                + "<Message>" + message + "</Message><Key>" + path + "</Key></Error>")
+                .getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, error.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(error);
+        }
+    }
+
+    // Signed uploads over plain HTTP arrive in aws-chunked framing: <hex size>;chunk-signature=...\r\n<data>\r\n
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[64 * 1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                raw.write(buffer, 0, n);
+            }
+        }
+        String contentSha256 = exchange.getRequestHeaders().getFirst("x-amz-content-sha256");
+        String contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+        boolean chunked = (contentSha256 != null && contentSha256.startsWith("STREAMING-"))
+                || (contentEncoding != null && contentEncoding.contains("aws-chunked"));
+        return chunked ? decodeChunks(raw.toByteArray()) : raw.toByteArray();
+    }
+
+    private static byte[] decodeChunks(byte[] framed) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(framed.length);
+        int position = 0;
+        while (position < framed.length) {
+            int lineEnd = indexOfCrLf(framed, position);
+            if (lineEnd < 0) {
+                throw new IOException("Truncated aws-chunked body");
+            }
+            String header = new String(framed, position, lineEnd - position, StandardCharsets.US_ASCII);
+            int semicolon = header.indexOf(';');
+            int size = Integer.parseInt(semicolon < 0 ? header.trim() : header.substring(0, semicolon).trim(), 16);
+            if (size == 0) {
+                break;
+            }
+            position = lineEnd + 2;
+            content.write(framed, position, size);
+            position += size + 2;
+        }
+        return content.toByteArray();
+    }
+
+    private static int indexOfCrLf(byte[] bytes, int from) {
+        for (int i = from; i + 1 < bytes.length; i++) {
+            if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String md5Hex(byte[] content) {
+        try {
+            StringBuilder sb = new StringBuilder(32);
+            for (byte b : MessageDigest.getInstance("MD5").digest(content)) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
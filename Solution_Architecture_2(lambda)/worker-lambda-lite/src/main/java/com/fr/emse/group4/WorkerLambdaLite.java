@@ -0,0 +1,130 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.services.lambda.runtime.events.SNSEvent;
+import org.crac.Core;
+import org.crac.Resource;
+
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProviderChain;
+import software.amazon.awssdk.auth.credentials.ContainerCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.EnvironmentVariableCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.SystemPropertyCredentialsProvider;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+import software.amazon.awssdk.http.SdkHttpRequest;
+import software.amazon.awssdk.http.urlconnection.UrlConnectionHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3ClientBuilder;
+
+// WorkerLambda with a shorter cold start. The handlers are WorkerLambda's; only the start differs:
+// an SDK v2 S3 client over the JDK's URLConnection with its region and credentials taken straight
+// from the Lambda environment, and a priming pass that runs the handler on synthetic files. Priming
+// runs before a CRaC/SnapStart checkpoint, or during init with -Dworker.primeOnInit=true.
+public class WorkerLambdaLite extends WorkerLambda implements Resource {
+
+    private static final int PRIMING_ROUNDS = 5;
+    private static final String PRIMING_BUCKET = "priming-input-bucket";
+    // Never written, so the priming request only reads a 404
+    private static final String PRIMING_KEY = SummaryManifest.ROOT + "_priming";
+
+    private final ObjectStore store;
+
+    public WorkerLambdaLite() {
+        this(new S3ClientObjectStore(buildS3Client()));
+    }
+
+    private WorkerLambdaLite(ObjectStore store) {
+        super(store);
+        this.store = store;
+        // The runtime keeps the handler instance, which keeps the registration alive
+        Core.getGlobalContext().register(this);
+        if (Boolean.getBoolean("worker.primeOnInit")) {
+            prime();
+        }
+    }
+
+    @Override
+    public void beforeCheckpoint(org.crac.Context<? extends Resource> context) {
+        prime();
+    }
+
+    @Override
+    public void afterRestore(org.crac.Context<? extends Resource> context) {
+    }
+
+    // Runs the handler on small synthetic files held in a MemoryObjectStore, so the classes of the
+    // whole file path are loaded and its hot loops compiled before the first real invocation (or
+    // the snapshot). Unless -Dworker.primeS3=false, a GET of a missing key also takes the SDK through
+    // signing, HTTP and error handling once.
+    void prime() {
+        long start = System.nanoTime();
+        try {
+            MemoryObjectStore primingStore = new MemoryObjectStore();
+            WorkerLambda primer = new WorkerLambda(primingStore);
+            List<SNSEvent.SNSRecord> records = new ArrayList<>(PRIMING_ROUNDS);
+            for (int round = 0; round < PRIMING_ROUNDS; round++) {
+                String fileName = "01-01-2000-priming-" + round + ".csv";
+                primingStore.put(PRIMING_BUCKET, fileName, SyntheticSales.generate("01-01-2000", 2000, 10, 100, round), "text/csv", null);
+                records.add(new SNSEvent.SNSRecord().withSns(new SNSEvent.SNS().withMessage(PRIMING_BUCKET + ";" + fileName)));
+            }
+            String result = primer.handleRequest(new SNSEvent().withRecords(records), new LocalContext(false));
+            if (!"OK".equals(result)) {
+                System.err.println("Priming ended with: " + result);
+            }
+            if (!"false".equals(System.getProperty("worker.primeS3"))) {
+                try (StoredObject missing = store.get(SummaryWriter.OUTPUT_BUCKET, PRIMING_KEY)) {
+                    if (missing != null) {
+                        System.out.println("Unexpected object " + PRIMING_KEY + " in " + SummaryWriter.OUTPUT_BUCKET);
+                    }
+                }
+            }
+            System.out.println("Primed the worker in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (IOException | RuntimeException e) {
+            // Priming only warms the code up; the handler works without it
+            System.err.println("Priming failed: " + e.getMessage());
+        }
+    }
+
+    // Region and credentials come from the variables Lambda sets, which skips the provider chains
+    // that look for profile files and instance metadata. SnapStart functions get no key variables
+    // and are given credentials by the container endpoint (AWS_CONTAINER_CREDENTIALS_FULL_URI).
+    // -Dworker.s3Endpoint points the client at another S3 endpoint, such as the stub of
+    // ColdStartHarness.
+    private static S3Client buildS3Client() {
+        String region = System.getenv("AWS_REGION");
+        S3ClientBuilder builder = S3Client.builder()
+                .httpClientBuilder(UrlConnectionHttpClient.builder())
+                .region(Region.of(System.getProperty("worker.region", region != null ? region : "us-east-1")))
+                .credentialsProvider(AwsCredentialsProviderChain.of(
+                        EnvironmentVariableCredentialsProvider.create(),
+                        SystemPropertyCredentialsProvider.create(),
+                        ContainerCredentialsProvider.builder().build()))
+                .overrideConfiguration(ClientOverrideConfiguration.builder()
+                        .addExecutionInterceptor(new WithoutExpectContinue())
+                        .build());
+        String endpoint = System.getProperty("worker.s3Endpoint");
+        if (endpoint != null) {
+            builder.endpointOverride(URI.create(endpoint)).forcePathStyle(true);
+        }
+        return builder.build();
+    }
+
+    // The SDK asks for 100-continue on every PutObject. Summaries and manifests are small, so waiting
+    // for the interim response only adds a round trip, and HttpURLConnection fails that handshake
+    // without a retry when the server has closed the kept-alive connection.
+    private static final class WithoutExpectContinue implements ExecutionInterceptor {
+        @Override
+        public SdkHttpRequest modifyHttpRequest(software.amazon.awssdk.core.interceptor.Context.ModifyHttpRequest context,
+                                                ExecutionAttributes executionAttributes) {
+            SdkHttpRequest request = context.httpRequest();
+            return request.firstMatchingHeader("Expect").isPresent()
+                    ? request.toBuilder().removeHeader("Expect").build() : request;
+        }
+    }
+}
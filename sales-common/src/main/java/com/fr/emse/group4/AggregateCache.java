@@ -0,0 +1,209 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Consolidated totals of recently queried dates, least recently used first out once their
+// estimated size goes over the budget. An entry is trusted for revalidateNanos after it was last
+// checked; after that the date's summaries are listed again and the totals are only recomputed if
+// a summary was added, changed or removed since they were loaded.
+final class AggregateCache {
+
+    // Rough heap cost of a SalesAggregate: its arrays, plus each name and its dictionary slot
+    private static final long BYTES_PER_ENTRY = 100;
+    private static final long BYTES_PER_NAME = 120;
+
+    interface Source {
+        List<SummaryManifest.Entry> summaries(String date) throws IOException;
+
+        SalesAggregate consolidate(String date, List<SummaryManifest.Entry> summaries) throws IOException;
+    }
+
+    // Totals are null when the date has no summaries
+    static final class Result {
+        final SalesAggregate totals;
+        final boolean hit;
+
+        Result(SalesAggregate totals, boolean hit) {
+            this.totals = totals;
+            this.hit = hit;
+        }
+    }
+
+    private static final class Entry {
+        final SalesAggregate totals;
+        final String fingerprint;
+        final long weight;
+        volatile long validatedAt;
+
+        Entry(SalesAggregate totals, String fingerprint, long validatedAt) {
+            this.totals = totals;
+            this.fingerprint = fingerprint;
+            this.weight = BYTES_PER_ENTRY + 2L * fingerprint.length()
+                    + (totals == null ? 0 : BYTES_PER_NAME * (totals.storeCount() + totals.productCount()));
+            this.validatedAt = validatedAt;
+        }
+    }
+
+    private final Source source;
+    private final long capacity;
+    private final long revalidateNanos;
+    // Access order, so the first entry is the least recently used
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // The loads running, one per date, so concurrent queries for a date load it once while other
+    // dates go ahead. A load is removed once it completes, so only dates being loaded are kept.
+    private final Map<String, CompletableFuture<Result>> loading = new ConcurrentHashMap<>();
+    private long weight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    AggregateCache(Source source, long capacityBytes, long revalidateNanos) {
+        this.source = source;
+        this.capacity = capacityBytes;
+        this.revalidateNanos = revalidateNanos;
+    }
+
+    Result get(String date) throws IOException {
+        Entry entry = entry(date);
+        if (entry != null && System.nanoTime() - entry.validatedAt < revalidateNanos) {
+            return hit(entry);
+        }
+
+        CompletableFuture<Result> load = new CompletableFuture<>();
+        CompletableFuture<Result> running = loading.putIfAbsent(date, load);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            Result result = load(date);
+            load.complete(result);
+            return result;
+        } catch (IOException | RuntimeException | Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(date, load);
+        }
+    }
+
+    private Result load(String date) throws IOException {
+        // Read again, as the load that was running may have just stored it
+        Entry entry = entry(date);
+        long now = System.nanoTime();
+        if (entry != null && now - entry.validatedAt < revalidateNanos) {
+            return hit(entry);
+        }
+
+        List<SummaryManifest.Entry> summaries = source.summaries(date);
+        String fingerprint = fingerprint(summaries);
+        if (entry != null && entry.fingerprint.equals(fingerprint)) {
+            entry.validatedAt = now;
+            revalidations.incrementAndGet();
+            return hit(entry);
+        }
+
+        if (entry != null) {
+            reloads.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+        Metrics.increment("cache.misses", 1);
+        SalesAggregate totals = summaries.isEmpty() ? null : source.consolidate(date, summaries);
+        put(date, new Entry(totals, fingerprint, now));
+        return new Result(totals, false);
+    }
+
+    // Answers with the totals of the load running for the date, or fails as it did
+    private Result join(CompletableFuture<Result> running) throws IOException {
+        try {
+            Result result = running.get();
+            hits.incrementAndGet();
+            Metrics.increment("cache.hits", 1);
+            return new Result(result.totals, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the totals of a date");
+        } catch (ExecutionException e) {
+            Throwable failure = e.getCause();
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            throw (RuntimeException) failure;
+        }
+    }
+
+    private Entry entry(String date) {
+        synchronized (entries) {
+            return entries.get(date);
+        }
+    }
+
+    private Result hit(Entry entry) {
+        hits.incrementAndGet();
+        Metrics.increment("cache.hits", 1);
+        return new Result(entry.totals, true);
+    }
+
+    private void put(String date, Entry entry) {
+        synchronized (entries) {
+            Entry replaced = entries.put(date, entry);
+            weight += entry.weight - (replaced == null ? 0 : replaced.weight);
+            // The entry just added stays even if it is alone over the budget
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (weight > capacity && entries.size() > 1) {
+                weight -= eldest.next().weight;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    // Keys, ETags and sizes of the summaries in key order: equal only if no summary was added,
+    // replaced or removed
+    private static String fingerprint(List<SummaryManifest.Entry> summaries) {
+        List<String> parts = new ArrayList<>(summaries.size());
+        for (SummaryManifest.Entry summary : summaries) {
+            parts.add(summary.key + "|" + summary.eTag + "|" + summary.size);
+        }
+        parts.sort(null);
+        return String.join("\n", parts);
+    }
+
+    int loadingCount() {
+        return loading.size();
+    }
+
+    String stats() {
+        long entryCount;
+        long bytes;
+        synchronized (entries) {
+            entryCount = entries.size();
+            bytes = weight;
+        }
+        long lookups = hits.get() + misses.get() + reloads.get();
+        return "entries: " + entryCount + "\n"
+                + "loading: " + loadingCount() + "\n"
+                + "estimated bytes: " + bytes + " of " + capacity + "\n"
+                + "hits: " + hits.get() + " (" + revalidations.get() + " after revalidating)\n"
+                + "misses: " + misses.get() + "\n"
+                + "reloads: " + reloads.get() + "\n"
+                + "evictions: " + evictions.get() + "\n"
+                + "hit rate: " + (lookups == 0 ? "n/a" : String.format("%.1f%%", 100.0 * hits.get() / lookups)) + "\n";
+    }
+}
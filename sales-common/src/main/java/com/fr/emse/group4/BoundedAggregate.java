@@ -0,0 +1,260 @@
+package com.fr.emse.group4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Totals of a sales file read with a memory budget. Stores are in memory; products are either in
+// memory too, when nothing had to be spilled, or in a spill file listing them in the order the
+// in-memory path would, which forEach reads back in chunks of at most `budget` products.
+//
+// Merging the spills goes one partition at a time: the records of a partition are summed by name
+// in memory and written out sorted by first appearance. A partition with more distinct products
+// than the budget is split again with another hash seed first. The sorted partitions are then
+// merged by first appearance into the final file, at most MAX_MERGE_WIDTH at a time.
+final class BoundedAggregate implements SummaryCodec.Chunks, Closeable {
+
+    // Splitting a partition further stops here, in case the names do not spread out
+    private static final int MAX_SPLITS = 4;
+    // Runs merged at once; more are merged in several passes, so the read buffers stay bounded
+    private static final int MAX_MERGE_WIDTH = 32;
+
+    private final SalesAggregate stores;
+    private final int productCount;
+    private final SpillFile products;
+    private final int budget;
+    private final SpillDirectory directory;
+    private boolean checkpointed;
+    private long inputBytes;
+    private String inputETag;
+
+    private BoundedAggregate(SalesAggregate stores, int productCount, SpillFile products, int budget, SpillDirectory directory) {
+        this.stores = stores;
+        this.productCount = productCount;
+        this.products = products;
+        this.budget = budget;
+        this.directory = directory;
+    }
+
+    // Totals of a file read in checkpointed segments, which are always kept in memory
+    static BoundedAggregate checkpointed(SalesAggregate totals, SpillDirectory directory) {
+        BoundedAggregate aggregate = new BoundedAggregate(totals, totals.productCount(), null, Integer.MAX_VALUE, directory);
+        aggregate.checkpointed = true;
+        return aggregate;
+    }
+
+    // Combines the aggregators of the ranges of a file, given in file order
+    static BoundedAggregate merge(List<SpillingAggregator> parts, int budget, SpillDirectory directory) throws IOException {
+        boolean spilled = false;
+        for (SpillingAggregator part : parts) {
+            spilled |= part.spilled();
+        }
+
+        SalesAggregate stores = null;
+        for (SpillingAggregator part : parts) {
+            if (spilled) {
+                part.finish();
+            }
+            if (stores == null) {
+                stores = part.aggregate;
+            } else {
+                stores.merge(part.aggregate);
+            }
+        }
+        if (!spilled) {
+            return new BoundedAggregate(stores, stores.productCount(), null, budget, directory);
+        }
+
+        List<SpillFile> runs = new ArrayList<>();
+        for (int partition = 0; partition < SpillFile.PARTITIONS; partition++) {
+            List<SpillFile> files = new ArrayList<>(parts.size());
+            for (SpillingAggregator part : parts) {
+                files.add(part.partitions()[partition]);
+            }
+            mergePartition(files, 1, budget, directory, runs);
+        }
+        while (runs.size() > MAX_MERGE_WIDTH) {
+            List<SpillFile> merged = new ArrayList<>();
+            for (int from = 0; from < runs.size(); from += MAX_MERGE_WIDTH) {
+                SpillFile run = directory.newFile();
+                mergeRuns(runs.subList(from, Math.min(runs.size(), from + MAX_MERGE_WIDTH)), run);
+                merged.add(run);
+            }
+            runs = merged;
+        }
+        SpillFile merged = directory.newFile();
+        int productCount = mergeRuns(runs, merged);
+        return new BoundedAggregate(stores, productCount, merged, budget, directory);
+    }
+
+    SalesAggregate stores() {
+        return stores;
+    }
+
+    int productCount() {
+        return productCount;
+    }
+
+    long malformedRowCount() {
+        return stores.malformedRowCount;
+    }
+
+    // True if a checkpoint of the file may exist, to be deleted once its summaries are stored
+    boolean checkpointed() {
+        return checkpointed;
+    }
+
+    // Size of the file as stored, compressed or not
+    long inputBytes() {
+        return inputBytes;
+    }
+
+    // ETag of the file as stored, which tells a redelivery from a new version of the file
+    String inputETag() {
+        return inputETag;
+    }
+
+    void setInput(long inputBytes, String inputETag) {
+        this.inputBytes = inputBytes;
+        this.inputETag = inputETag;
+    }
+
+    @Override
+    public void forEach(SummaryCodec.ChunkConsumer consumer) throws IOException {
+        if (products == null) {
+            consumer.accept(stores);
+            return;
+        }
+        try (SpillFile.Reader reader = products.read()) {
+            SalesAggregate chunk = new SalesAggregate();
+            while (reader.next()) {
+                int product = chunk.products.idOf(reader.name, 0, reader.nameLength);
+                chunk.addProduct(product, reader.quantity, reader.soldCents, reader.profitCents);
+                if (chunk.productCount() == budget) {
+                    consumer.accept(chunk);
+                    chunk = new SalesAggregate();
+                }
+            }
+            if (chunk.productCount() > 0) {
+                consumer.accept(chunk);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        directory.close();
+    }
+
+    private static void mergePartition(List<SpillFile> files, int seed, int budget, SpillDirectory directory, List<SpillFile> runs) throws IOException {
+        SalesAggregate totals = new SalesAggregate();
+        long[] firstSeen = new long[16];
+        boolean fits = true;
+        read:
+        for (SpillFile file : files) {
+            try (SpillFile.Reader reader = file.read()) {
+                while (reader.next()) {
+                    int known = totals.productCount();
+                    int product = totals.products.idOf(reader.name, 0, reader.nameLength);
+                    if (product >= budget && seed <= MAX_SPLITS) {
+                        fits = false;
+                        break read;
+                    }
+                    if (product == known) {
+                        if (product == firstSeen.length) {
+                            firstSeen = Arrays.copyOf(firstSeen, firstSeen.length * 2);
+                        }
+                        firstSeen[product] = reader.firstSeen;
+                    } else {
+                        firstSeen[product] = Math.min(firstSeen[product], reader.firstSeen);
+                    }
+                    totals.addProduct(product, reader.quantity, reader.soldCents, reader.profitCents);
+                }
+            }
+        }
+
+        if (!fits) {
+            totals = null;
+            SpillFile[] split = new SpillFile[SpillFile.PARTITIONS];
+            for (int i = 0; i < split.length; i++) {
+                split[i] = directory.newFile();
+            }
+            for (SpillFile file : files) {
+                try (SpillFile.Reader reader = file.read()) {
+                    while (reader.next()) {
+                        split[SpillFile.partitionOf(reader.name, reader.nameLength, seed)].write(reader.name, reader.nameLength,
+                                reader.firstSeen, reader.quantity, reader.soldCents, reader.profitCents);
+                    }
+                }
+                file.delete();
+            }
+            for (SpillFile part : split) {
+                if (part.records() > 0) {
+                    mergePartition(Collections.singletonList(part), seed + 1, budget, directory, runs);
+                } else {
+                    part.delete();
+                }
+            }
+            return;
+        }
+
+        int count = totals.productCount();
+        if (count > 0) {
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            long[] seen = firstSeen;
+            Arrays.sort(order, Comparator.comparingLong(product -> seen[product]));
+            SpillFile run = directory.newFile();
+            for (int product : order) {
+                byte[] name = totals.productName(product).getBytes(StandardCharsets.UTF_8);
+                run.write(name, name.length, seen[product], totals.productQuantity(product), totals.productSold(product), totals.productProfit(product));
+            }
+            run.close();
+            runs.add(run);
+        }
+        for (SpillFile file : files) {
+            file.delete();
+        }
+    }
+
+    // Merges runs sorted by first appearance into one file, returning the number of products
+    private static int mergeRuns(List<SpillFile> runs, SpillFile merged) throws IOException {
+        PriorityQueue<SpillFile.Reader> heads = new PriorityQueue<>(Math.max(1, runs.size()), Comparator.comparingLong(reader -> reader.firstSeen));
+        List<SpillFile.Reader> readers = new ArrayList<>(runs.size());
+        int count = 0;
+        try {
+            for (SpillFile run : runs) {
+                SpillFile.Reader reader = run.read();
+                readers.add(reader);
+                if (reader.next()) {
+                    heads.add(reader);
+                }
+            }
+            SpillFile.Reader head;
+            while ((head = heads.poll()) != null) {
+                merged.write(head.name, head.nameLength, head.firstSeen, head.quantity, head.soldCents, head.profitCents);
+                count++;
+                if (head.next()) {
+                    heads.add(head);
+                }
+            }
+            merged.close();
+        } finally {
+            for (SpillFile.Reader reader : readers) {
+                reader.close();
+            }
+        }
+        for (SpillFile run : runs) {
+            run.delete();
+        }
+        return count;
+    }
+}
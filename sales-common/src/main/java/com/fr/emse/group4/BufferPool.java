@@ -0,0 +1,36 @@
+package com.fr.emse.group4;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Keeps released byte arrays around for the next upload. Buffers may have grown while in use,
+// so acquire() can return a buffer larger than initialSize.
+final class BufferPool {
+
+    private final int initialSize;
+    private final int maxPooled;
+    private final ConcurrentLinkedQueue<byte[]> free = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pooled = new AtomicInteger();
+
+    BufferPool(int initialSize, int maxPooled) {
+        this.initialSize = initialSize;
+        this.maxPooled = maxPooled;
+    }
+
+    byte[] acquire() {
+        byte[] buffer = free.poll();
+        if (buffer == null) {
+            return new byte[initialSize];
+        }
+        pooled.decrementAndGet();
+        return buffer;
+    }
+
+    void release(byte[] buffer) {
+        if (pooled.incrementAndGet() <= maxPooled) {
+            free.offer(buffer);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+}
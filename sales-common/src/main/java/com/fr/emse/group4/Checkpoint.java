@@ -0,0 +1,94 @@
+package com.fr.emse.group4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// How far a large sales file has been read: the offset reached and the totals of the lines
+// starting before it, stored in the output bucket under checkpoints/<bucket>/<key> so that a
+// redelivered message resumes there instead of at byte zero.
+//   magic "SCKP", version byte, object size, object ETag ("" if unknown), offset, malformed rows,
+//   then the totals as a binary summary (SummaryCodec)
+// A checkpoint is only used for the object it was taken from: if the size or ETag differ, the file
+// is read again from the start.
+final class Checkpoint {
+
+    static final String BUCKET = "sales-data-output-bucket";
+    static final String PREFIX = "checkpoints/";
+
+    private static final int MAGIC = 0x53434B50;
+    private static final int VERSION = 1;
+
+    final long offset;
+    final SalesAggregate totals;
+
+    private Checkpoint(long offset, SalesAggregate totals) {
+        this.offset = offset;
+        this.totals = totals;
+    }
+
+    static String key(String bucketName, String key) {
+        return PREFIX + bucketName + "/" + key;
+    }
+
+    // Null if there is no usable checkpoint of this version of the object. A checkpoint that cannot
+    // be decoded, whether truncated, of another format or corrupt, is deleted so the file is read
+    // from the start; only failures to fetch it are thrown.
+    static Checkpoint load(ObjectStore store, String bucketName, String key, long size, String eTag) throws IOException {
+        byte[] stored;
+        try (InputStream content = store.open(BUCKET, key(bucketName, key))) {
+            if (content == null) {
+                return null;
+            }
+            stored = content.readAllBytes();
+        }
+        try {
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(stored));
+            if (data.readInt() != MAGIC || data.readUnsignedByte() != VERSION) {
+                throw new IOException("not a version " + VERSION + " checkpoint");
+            }
+            long checkpointSize = data.readLong();
+            String checkpointETag = data.readUTF();
+            if (checkpointSize != size || !checkpointETag.equals(eTag == null ? "" : eTag)) {
+                System.out.println("Ignoring checkpoint of an earlier version of " + key);
+                return null;
+            }
+            long offset = data.readLong();
+            if (offset <= 0 || offset > size) {
+                throw new IOException("offset " + offset + " outside the file");
+            }
+            SalesAggregate totals = new SalesAggregate();
+            long malformedRowCount = data.readLong();
+            SummaryCodec.read(data, totals);
+            totals.malformedRowCount = malformedRowCount;
+            return new Checkpoint(offset, totals);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Deleting unreadable checkpoint of " + key + ": " + e);
+            Metrics.increment("checkpoint.unreadable", 1);
+            delete(store, bucketName, key);
+            return null;
+        }
+    }
+
+    static void save(ObjectStore store, String bucketName, String key, long size, String eTag, long offset,
+                     SalesAggregate totals) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeLong(size);
+        data.writeUTF(eTag == null ? "" : eTag);
+        data.writeLong(offset);
+        data.writeLong(totals.malformedRowCount);
+        SummaryCodec.write(totals, data);
+        data.flush();
+        store.put(BUCKET, key(bucketName, key), bytes.toByteArray(), "application/octet-stream", null);
+    }
+
+    static void delete(ObjectStore store, String bucketName, String key) throws IOException {
+        store.delete(BUCKET, key(bucketName, key));
+    }
+}
@@ -0,0 +1,100 @@
+package com.fr.emse.group4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Totals of a date as consolidated so far, with the key and ETag of every summary they include.
+// Saved next to the summaries as summaries/<date>/_state:
+//   magic "SSTA", version byte, summary count, then key and ETag of each summary (modified UTF-8),
+//   then the totals in the SummaryCodec format.
+final class ConsolidationState {
+
+    static final String STATE_NAME = "_state";
+
+    private static final int MAGIC = 0x53535441;
+    private static final int VERSION = 1;
+
+    final SalesAggregate totals = new SalesAggregate();
+    private final Map<String, String> foldedETags = new LinkedHashMap<>();
+
+    static String stateKey(String date) {
+        return SummaryManifest.datePrefix(date) + STATE_NAME;
+    }
+
+    // Null if the date has no usable saved state
+    static ConsolidationState load(SummaryStore store, String date) throws IOException {
+        String key = stateKey(date);
+        try (InputStream content = store.open(key)) {
+            DataInputStream data = new DataInputStream(content);
+            if (data.readInt() != MAGIC || data.readUnsignedByte() != VERSION) {
+                System.err.println("Ignoring consolidation state in an unknown format: " + key);
+                return null;
+            }
+            ConsolidationState state = new ConsolidationState();
+            int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                state.foldedETags.put(data.readUTF(), data.readUTF());
+            }
+            SummaryCodec.read(data, state.totals);
+            return state;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable consolidation state " + key + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    // False if a summary already included has since been rewritten or removed
+    boolean isConsistentWith(List<SummaryManifest.Entry> summaries) {
+        Map<String, String> current = new LinkedHashMap<>();
+        for (SummaryManifest.Entry summary : summaries) {
+            current.put(summary.key, summary.eTag);
+        }
+        for (Map.Entry<String, String> folded : foldedETags.entrySet()) {
+            if (!folded.getValue().equals(current.get(folded.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    List<SummaryManifest.Entry> pending(List<SummaryManifest.Entry> summaries) {
+        List<SummaryManifest.Entry> pending = new ArrayList<>();
+        for (SummaryManifest.Entry summary : summaries) {
+            if (!foldedETags.containsKey(summary.key)) {
+                pending.add(summary);
+            }
+        }
+        return pending;
+    }
+
+    void addAll(List<SummaryManifest.Entry> summaries) {
+        for (SummaryManifest.Entry summary : summaries) {
+            foldedETags.put(summary.key, summary.eTag);
+        }
+    }
+
+    void save(SummaryStore store, String date) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(foldedETags.size());
+        for (Map.Entry<String, String> folded : foldedETags.entrySet()) {
+            data.writeUTF(folded.getKey());
+            data.writeUTF(folded.getValue());
+        }
+        SummaryCodec.write(totals, data);
+        data.flush();
+        store.put(stateKey(date), bytes.toByteArray());
+    }
+}
@@ -0,0 +1,179 @@
+package com.fr.emse.group4;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Buckets kept as directories under a root, with the object key as the path inside the bucket's
+// directory, so a run can be inspected afterwards and the Operator can read the output bucket with
+// --local <root>/sales-data-output-bucket. The ETag of a file is derived from its size and
+// modification time. Content-Encoding is not kept: compressed objects are recognised by their .gz
+// suffix.
+final class FileObjectStore implements ObjectStore {
+
+    private final Path root;
+
+    FileObjectStore(Path root) {
+        this.root = root;
+    }
+
+    @Override
+    public StoredObject get(String bucketName, String key) throws IOException {
+        Path file = file(bucketName, key);
+        try {
+            InputStream content = Files.newInputStream(file);
+            return new StoredObject(Files.size(file), null, eTag(file), content);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public StoredObject head(String bucketName, String key) throws IOException {
+        Path file = file(bucketName, key);
+        try {
+            return new StoredObject(Files.size(file), null, eTag(file), null);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public InputStream openRange(String bucketName, String key, long start, long end) throws IOException {
+        try {
+            FileChannel channel = FileChannel.open(file(bucketName, key), StandardOpenOption.READ);
+            channel.position(start);
+            return new LimitedInputStream(Channels.newInputStream(channel), end - start + 1);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(key);
+        }
+    }
+
+    // Walks only the directory holding the prefix, such as summaries/<date>/ for a date's prefix,
+    // not the whole bucket
+    @Override
+    public List<SummaryManifest.Entry> list(String bucketName, String prefix) throws IOException {
+        Path bucket = root.resolve(bucketName);
+        Path directory = bucket.resolve(prefix.substring(0, prefix.lastIndexOf('/') + 1));
+        if (!Files.isDirectory(directory)) {
+            return new ArrayList<>();
+        }
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        List<SummaryManifest.Entry> objects = new ArrayList<>();
+        for (Path file : files) {
+            String key = bucket.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+            if (key.startsWith(prefix) && !key.endsWith(".tmp")) {
+                objects.add(new SummaryManifest.Entry(key, Files.size(file), eTag(file)));
+            }
+        }
+        return objects;
+    }
+
+    // Written to a temporary file and moved into place, so readers never see a partial object
+    @Override
+    public String put(String bucketName, String key, byte[] content, String contentType, String contentEncoding) throws IOException {
+        Path file = file(bucketName, key);
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, content);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return eTag(file);
+    }
+
+    // The check and the move hold this store's lock, so conditional writes are only atomic between
+    // the threads of one process, such as Backfill's or LoadTest's. Each version gets a later
+    // modification time than the one it replaces, so two versions of the same size never share an
+    // ETag.
+    @Override
+    public synchronized String putIfMatch(String bucketName, String key, byte[] content, String contentType, String expectedETag) throws IOException {
+        Path file = file(bucketName, key);
+        String current = Files.exists(file) ? eTag(file) : null;
+        if (expectedETag == null ? current != null : !expectedETag.equals(current)) {
+            return null;
+        }
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, content);
+            long modified = System.currentTimeMillis();
+            if (current != null) {
+                modified = Math.max(modified, Files.getLastModifiedTime(file).toMillis() + 1);
+            }
+            Files.setLastModifiedTime(temporary, FileTime.fromMillis(modified));
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return eTag(file);
+    }
+
+    @Override
+    public ObjectUpload upload(String bucketName, String key, String contentEncoding) {
+        return new PutObjectUpload(this, bucketName, key, contentEncoding);
+    }
+
+    @Override
+    public void delete(String bucketName, String key) throws IOException {
+        Files.deleteIfExists(file(bucketName, key));
+    }
+
+    private Path file(String bucketName, String key) {
+        return root.resolve(bucketName).resolve(key);
+    }
+
+    private static String eTag(Path file) throws IOException {
+        return Long.toHexString(Files.size(file)) + "-" + Long.toHexString(Files.getLastModifiedTime(file).toMillis());
+    }
+
+    private static final class LimitedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        LimitedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.fr.emse.group4;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock-free latency histogram in microseconds. Values below 16 us get a bucket each; above, every
+// power of two is split into 16 buckets, so a percentile is within about 6% of the true value.
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKETS = 16;
+    private static final int BUCKETS = (64 - 3) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMicros = new LongAdder();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(index(micros));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    double meanMillis() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalMicros.sum() / 1000.0 / n;
+    }
+
+    double maxMillis() {
+        return maxMicros.get() / 1000.0;
+    }
+
+    // Lower bound of the bucket holding the given percentile
+    double percentileMillis(double percentile) {
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return lowerBound(i) / 1000.0;
+            }
+        }
+        return maxMillis();
+    }
+
+    private static int index(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - 4)) & (SUB_BUCKETS - 1);
+        return (exponent - 3) * SUB_BUCKETS + sub;
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + 3;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - 4);
+    }
+}
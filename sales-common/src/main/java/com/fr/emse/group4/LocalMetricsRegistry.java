@@ -0,0 +1,58 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps the metrics in the process. The dump is one line per metric, sorted by name, after a
+// header line; counters show their rate since the registry was created:
+//   # metrics 2024-01-01T10:00:00Z uptime 60.0 s
+//   counter rows 1200000 (20000.0/s)
+//   gauge worker.concurrencyLimit 12
+//   timer parse count 60 mean 41.2 ms p50 40.0 ms p90 52.0 ms p99 60.0 ms max 61.3 ms
+final class LocalMetricsRegistry implements MetricsRegistry {
+
+    private final long start = System.nanoTime();
+    private final ConcurrentMap<String, LatencyHistogram> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+
+    @Override
+    public void recordLatency(String name, long nanos) {
+        timers.computeIfAbsent(name, key -> new LatencyHistogram()).record(nanos);
+    }
+
+    @Override
+    public void increment(String name, long amount) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).add(amount);
+    }
+
+    @Override
+    public void gauge(String name, long value) {
+        gauges.computeIfAbsent(name, key -> new AtomicLong()).set(value);
+    }
+
+    @Override
+    public void dump(Appendable out) throws IOException {
+        double uptimeSeconds = (System.nanoTime() - start) / 1e9;
+        out.append(String.format("# metrics %s uptime %.1f s%n", Instant.now(), uptimeSeconds));
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            long value = counter.getValue().sum();
+            out.append(String.format("counter %s %d (%.1f/s)%n", counter.getKey(), value, value / uptimeSeconds));
+        }
+        for (Map.Entry<String, AtomicLong> gauge : new TreeMap<>(gauges).entrySet()) {
+            out.append(String.format("gauge %s %d%n", gauge.getKey(), gauge.getValue().get()));
+        }
+        for (Map.Entry<String, LatencyHistogram> timer : new TreeMap<>(timers).entrySet()) {
+            LatencyHistogram histogram = timer.getValue();
+            out.append(String.format("timer %s count %d mean %.1f ms p50 %.1f ms p90 %.1f ms p99 %.1f ms max %.1f ms%n",
+                    timer.getKey(), histogram.count(), histogram.meanMillis(), histogram.percentileMillis(50),
+                    histogram.percentileMillis(90), histogram.percentileMillis(99), histogram.maxMillis()));
+        }
+    }
+}
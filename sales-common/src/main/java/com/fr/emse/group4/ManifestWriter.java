@@ -0,0 +1,217 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Adds summaries to the manifest of their date. The manifest is read with its ETag, extended, and
+// written back only if it still has that ETag (or still does not exist), so when two workers
+// update it at once one write fails instead of dropping the other's entries. The loser reads the
+// winner's manifest and tries again after a random pause. Within a process, the summaries recorded
+// at the same time for a date are written together, see Group.
+//
+// The same check keeps a sales file from being counted twice. When a worker stops after recording
+// a batch but before deleting its files, the files are received again and may be batched
+// differently; the new summary is then refused because the manifest already covers some of its
+// files in the same version. A new version of a file that another summary covers cannot replace
+// its part of that summary, so it is refused with a ChangedFilesException and left to be retried,
+// instead of being dropped as a redelivery.
+final class ManifestWriter {
+
+    // Thrown when summaries count files that other summaries cover in another version
+    static final class ChangedFilesException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        // Each changed file with the key of a summary counting another version of it
+        final Map<String, String> files;
+
+        ChangedFilesException(String date, Map<String, String> files) {
+            super("The manifest of " + date + " counts another version of " + files.keySet() + " in "
+                    + files.values().iterator().next());
+            this.files = files;
+        }
+    }
+
+    // Turns the manifest of a date, null when it has none or it cannot be read, into the manifest
+    // to write in its place; null to write nothing
+    interface Rewrite {
+        SummaryManifest apply(SummaryManifest current) throws IOException;
+    }
+
+    private static final int MAX_ATTEMPTS = 10;
+    private static final long MAX_PAUSE_MILLIS = 50;
+
+    // The manifests this process is updating, per store and "bucket/manifest key"
+    private static final Map<ObjectStore, Map<String, Group>> GROUPS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // The record calls waiting on one manifest. A single caller at a time reads the manifest, adds
+    // the summaries of every call queued so far and writes it once for all of them, while the calls
+    // arriving meanwhile queue for the next write. A worker storing thousands of files of a date
+    // from many threads thus makes one conditional write per round instead of one per file, and only
+    // competes with the other processes for the manifest.
+    private static final class Group {
+        final List<Request> queued = new ArrayList<>();
+        boolean writing;
+    }
+
+    private static final class Request {
+        final List<SummaryManifest.Entry> summaries;
+        Map<String, String> covered;
+        IOException failure;
+        boolean done;
+
+        Request(List<SummaryManifest.Entry> summaries) {
+            this.summaries = summaries;
+        }
+    }
+
+    private ManifestWriter() {
+    }
+
+    // Returns the files of the summaries that other summaries in the manifest already cover in the
+    // same version, each with the key of one of them, in which case nothing is recorded; empty once
+    // the summaries are recorded. Throws ChangedFilesException, recording nothing, if other
+    // summaries cover some of the files in another version, and an IOException if the manifest kept
+    // changing under the update for MAX_ATTEMPTS attempts.
+    static Map<String, String> record(ObjectStore store, String bucketName, String date, List<SummaryManifest.Entry> summaries) throws IOException {
+        Group group = group(store, bucketName + "/" + SummaryManifest.manifestKey(date));
+        Request request = new Request(summaries);
+        List<Request> round = null;
+        synchronized (group) {
+            group.queued.add(request);
+            while (!request.done && group.writing) {
+                try {
+                    group.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while updating manifest", e);
+                }
+            }
+            if (!request.done) {
+                group.writing = true;
+                round = new ArrayList<>(group.queued);
+                group.queued.clear();
+            }
+        }
+        if (round != null) {
+            try {
+                write(store, bucketName, date, round);
+            } finally {
+                synchronized (group) {
+                    group.writing = false;
+                    group.notifyAll();
+                }
+            }
+        }
+        if (request.failure != null) {
+            throw request.failure;
+        }
+        return request.covered;
+    }
+
+    // Replaces the manifest of the date with what the rewrite makes of it, under the same check as
+    // record: when summaries are recorded in the meantime, the rewrite runs again on the manifest
+    // holding them instead of dropping them. Returns the manifest written, or null if the rewrite
+    // wrote nothing.
+    static SummaryManifest rewrite(ObjectStore store, String bucketName, String date, Rewrite rewrite) throws IOException {
+        String manifestKey = SummaryManifest.manifestKey(date);
+        for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+            SummaryManifest current = null;
+            String eTag = null;
+            try (StoredObject object = store.get(bucketName, manifestKey)) {
+                if (object != null) {
+                    eTag = object.eTag;
+                    try {
+                        current = SummaryManifest.read(object.content());
+                    } catch (IOException e) {
+                        System.err.println("Ignoring the manifest of " + date + ": " + e.getMessage());
+                    }
+                }
+            }
+            SummaryManifest rewritten = rewrite.apply(current);
+            if (rewritten == null) {
+                return null;
+            }
+            if (store.putIfMatch(bucketName, manifestKey, rewritten.toBytes(), "text/plain", eTag) != null) {
+                return rewritten;
+            }
+            Metrics.increment("manifest.conflicts", 1);
+            pause(attempt);
+        }
+        throw new IOException("Could not rewrite the manifest of " + date + ": it kept changing");
+    }
+
+    private static Group group(ObjectStore store, String manifest) {
+        synchronized (GROUPS) {
+            return GROUPS.computeIfAbsent(store, s -> new HashMap<>()).computeIfAbsent(manifest, m -> new Group());
+        }
+    }
+
+    // Records the summaries of a round of calls with one conditional write, in the order the calls
+    // were queued, so each call is refused or recorded as if it had the manifest to itself. On a
+    // conflict the whole round is decided again on the winner's manifest.
+    private static void write(ObjectStore store, String bucketName, String date, List<Request> round) {
+        String manifestKey = SummaryManifest.manifestKey(date);
+        try {
+            for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+                SummaryManifest manifest = new SummaryManifest();
+                String eTag = null;
+                try (StoredObject current = store.get(bucketName, manifestKey)) {
+                    if (current != null) {
+                        manifest = SummaryManifest.read(current.content());
+                        eTag = current.eTag;
+                    }
+                }
+                boolean changes = false;
+                for (Request request : round) {
+                    request.failure = null;
+                    Map<String, String> changed = manifest.changedElsewhere(request.summaries);
+                    if (!changed.isEmpty()) {
+                        request.failure = new ChangedFilesException(date, changed);
+                        continue;
+                    }
+                    request.covered = manifest.coveredElsewhere(request.summaries);
+                    if (request.covered.isEmpty() && !manifest.containsAll(request.summaries)) {
+                        request.summaries.forEach(manifest::put);
+                        changes = true;
+                    }
+                }
+                if (!changes || store.putIfMatch(bucketName, manifestKey, manifest.toBytes(), "text/plain", eTag) != null) {
+                    for (Request request : round) {
+                        if (request.failure instanceof ChangedFilesException) {
+                            Metrics.increment("manifest.changedFiles", ((ChangedFilesException) request.failure).files.size());
+                        }
+                    }
+                    return;
+                }
+                Metrics.increment("manifest.conflicts", 1);
+                pause(attempt);
+            }
+            throw new IOException("Could not update the manifest of " + date + ": it kept changing");
+        } catch (IOException | RuntimeException e) {
+            for (Request request : round) {
+                request.failure = e instanceof IOException ? (IOException) e : new IOException("Could not update the manifest of " + date, e);
+            }
+        } finally {
+            for (Request request : round) {
+                request.done = true;
+            }
+        }
+    }
+
+    // Up to MAX_PAUSE_MILLIS doubled with every attempt, so workers that collided spread out
+    private static void pause(int attempt) throws IOException {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, MAX_PAUSE_MILLIS << Math.min(attempt - 1, 6)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while updating manifest", e);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.fr.emse.group4;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// In-process stand-in for the S3 buckets, used to run the client, workers and consolidator
+// together without an AWS account. Buckets are created on first use; the ETag of an object is the
+// MD5 of its content, as S3 computes it for single-part uploads.
+final class MemoryObjectStore implements ObjectStore {
+
+    private static final class Stored {
+        final byte[] content;
+        final String contentEncoding;
+        final String eTag;
+
+        Stored(byte[] content, String contentEncoding, String eTag) {
+            this.content = content;
+            this.contentEncoding = contentEncoding;
+            this.eTag = eTag;
+        }
+    }
+
+    private final Map<String, ConcurrentNavigableMap<String, Stored>> buckets = new ConcurrentHashMap<>();
+
+    @Override
+    public StoredObject get(String bucketName, String key) {
+        Stored stored = bucket(bucketName).get(key);
+        return stored == null ? null : new StoredObject(stored.content.length, stored.contentEncoding, stored.eTag,
+                new ByteArrayInputStream(stored.content));
+    }
+
+    @Override
+    public StoredObject head(String bucketName, String key) {
+        Stored stored = bucket(bucketName).get(key);
+        return stored == null ? null : new StoredObject(stored.content.length, stored.contentEncoding, stored.eTag, null);
+    }
+
+    @Override
+    public InputStream openRange(String bucketName, String key, long start, long end) {
+        Stored stored = bucket(bucketName).get(key);
+        if (stored == null || start >= stored.content.length) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        int length = (int) (Math.min(end + 1, stored.content.length) - start);
+        return new ByteArrayInputStream(stored.content, (int) start, length);
+    }
+
+    @Override
+    public List<SummaryManifest.Entry> list(String bucketName, String prefix) {
+        List<SummaryManifest.Entry> objects = new ArrayList<>();
+        for (Map.Entry<String, Stored> object : bucket(bucketName).tailMap(prefix).entrySet()) {
+            if (!object.getKey().startsWith(prefix)) {
+                break;
+            }
+            objects.add(new SummaryManifest.Entry(object.getKey(), object.getValue().content.length, object.getValue().eTag));
+        }
+        return objects;
+    }
+
+    @Override
+    public String put(String bucketName, String key, byte[] content, String contentType, String contentEncoding) {
+        String eTag = md5(content);
+        bucket(bucketName).put(key, new Stored(content, contentEncoding, eTag));
+        return eTag;
+    }
+
+    // Compares the held object itself, so the check and the write are one atomic step
+    @Override
+    public String putIfMatch(String bucketName, String key, byte[] content, String contentType, String expectedETag) {
+        Stored replacement = new Stored(content, null, md5(content));
+        ConcurrentNavigableMap<String, Stored> bucket = bucket(bucketName);
+        if (expectedETag == null) {
+            return bucket.putIfAbsent(key, replacement) == null ? replacement.eTag : null;
+        }
+        Stored current = bucket.get(key);
+        if (current == null || !current.eTag.equals(expectedETag)) {
+            return null;
+        }
+        return bucket.replace(key, current, replacement) ? replacement.eTag : null;
+    }
+
+    @Override
+    public ObjectUpload upload(String bucketName, String key, String contentEncoding) {
+        return new PutObjectUpload(this, bucketName, key, contentEncoding);
+    }
+
+    @Override
+    public void delete(String bucketName, String key) {
+        bucket(bucketName).remove(key);
+    }
+
+    // Bytes held in the bucket
+    long size(String bucketName) {
+        long size = 0;
+        for (Stored stored : bucket(bucketName).values()) {
+            size += stored.content.length;
+        }
+        return size;
+    }
+
+    private ConcurrentNavigableMap<String, Stored> bucket(String bucketName) {
+        return buckets.computeIfAbsent(bucketName, name -> new ConcurrentSkipListMap<>());
+    }
+
+    private static String md5(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+            return String.format("%032x", new BigInteger(1, digest));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.fr.emse.group4;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Entry point for the hot-path instrumentation. Stages are timed with
+//   try (StageTimer timer = Metrics.start("parse", key)) { ... }
+// and the registry is dumped every metrics.dumpIntervalSeconds (default 60, 0 to only dump on
+// demand) by whichever thread calls dumpIfDue, so no background thread is needed (a frozen Lambda
+// environment would not run one). The dump goes to stdout, or is appended to the file named by
+// metrics.dumpFile.
+final class Metrics {
+
+    private static final MetricsRegistry REGISTRY = createRegistry(System.getProperty("metrics.registry", "local"));
+    private static final boolean JFR = isJfrAvailable();
+    private static final long DUMP_INTERVAL_NANOS = Long.getLong("metrics.dumpIntervalSeconds", 60L) * 1_000_000_000L;
+    private static final String DUMP_FILE = System.getProperty("metrics.dumpFile");
+    private static final AtomicLong lastDump = new AtomicLong(System.nanoTime());
+
+    private Metrics() {
+    }
+
+    static MetricsRegistry registry() {
+        return REGISTRY;
+    }
+
+    static StageTimer start(String stage, String file) {
+        return new StageTimer(stage, file, JFR);
+    }
+
+    static void recordLatency(String name, long nanos) {
+        REGISTRY.recordLatency(name, nanos);
+    }
+
+    static void increment(String name, long amount) {
+        REGISTRY.increment(name, amount);
+    }
+
+    static void gauge(String name, long value) {
+        REGISTRY.gauge(name, value);
+    }
+
+    static void dumpIfDue() {
+        long last = lastDump.get();
+        if (DUMP_INTERVAL_NANOS > 0 && System.nanoTime() - last >= DUMP_INTERVAL_NANOS && lastDump.compareAndSet(last, System.nanoTime())) {
+            dump();
+        }
+    }
+
+    static void dump() {
+        try {
+            if (DUMP_FILE == null) {
+                StringBuilder out = new StringBuilder();
+                REGISTRY.dump(out);
+                System.out.print(out);
+                System.out.flush();
+            } else {
+                try (Writer out = new OutputStreamWriter(new FileOutputStream(DUMP_FILE, true), StandardCharsets.UTF_8)) {
+                    REGISTRY.dump(out);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error occurred while dumping metrics: " + e.getMessage());
+        }
+    }
+
+    private static MetricsRegistry createRegistry(String name) {
+        if ("local".equals(name)) {
+            return new LocalMetricsRegistry();
+        }
+        if ("none".equals(name)) {
+            return new MetricsRegistry() {
+                @Override
+                public void recordLatency(String metric, long nanos) {
+                }
+
+                @Override
+                public void increment(String metric, long amount) {
+                }
+
+                @Override
+                public void gauge(String metric, long value) {
+                }
+
+                @Override
+                public void dump(Appendable out) {
+                }
+            };
+        }
+        try {
+            return (MetricsRegistry) Class.forName(name).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            System.err.println("Unknown metrics registry " + name + ", using the local one: " + e);
+            return new LocalMetricsRegistry();
+        }
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return !Boolean.getBoolean("metrics.disableJfr");
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+
+// Where stage latencies and counters are recorded. Metrics picks the implementation from the
+// metrics.registry property: "local" (the default, LocalMetricsRegistry), "none", or the name of a
+// class implementing this interface with a public no-arg constructor.
+interface MetricsRegistry {
+
+    void recordLatency(String name, long nanos);
+
+    void increment(String name, long amount);
+
+    // Sets a value that is read as is, like a limit or a queue length
+    void gauge(String name, long value);
+
+    // Writes the current values in the registry's own format
+    void dump(Appendable out) throws IOException;
+}
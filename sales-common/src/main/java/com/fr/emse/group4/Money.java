@@ -0,0 +1,126 @@
+package com.fr.emse.group4;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Money is summed as a long number of cents so totals are exact and do not depend on the order
+// in which rows, ranges or files are added up. The unit prices and profits of sales files are read
+// in ten-thousandths (UNIT_SCALE), and a row's amount is only rounded to cents once multiplied by
+// its quantity, so 1000 units at 0.005 come to 5.00 rather than 10.00. Rounding is half up (away
+// from zero) throughout; unit amounts with more than four decimals are rounded to four when read.
+final class Money {
+
+    static final int SCALE = 2;
+    static final int UNIT_SCALE = 4;
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+            1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+            10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L,
+            10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+    private static final int MAX_FAST_DIGITS = 16; // keeps mantissa * 100 inside a long
+
+    private Money() {
+    }
+
+    static String format(long cents) {
+        StringBuilder sb = new StringBuilder(24);
+        if (cents < 0) {
+            sb.append('-');
+        }
+        long units = Math.abs(cents / 100);
+        int fraction = (int) Math.abs(cents % 100);
+        sb.append(units).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction).toString();
+    }
+
+    // Accepts plain and scientific decimals, e.g. "12", "-0.5", "1.2345E7".
+    static long parse(String value) {
+        String text = value.trim();
+        int length = text.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+            negative = text.charAt(0) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean fraction = false;
+        for (; i < length; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > MAX_FAST_DIGITS) {
+                    return parseSlow(text);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fraction) {
+                    scale++;
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c == 'e' || c == 'E') {
+                return parseSlow(text);
+            } else {
+                throw new NumberFormatException("Invalid amount: " + value);
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid amount: " + value);
+        }
+        long cents = toCents(mantissa, scale);
+        return negative ? -cents : cents;
+    }
+
+    // mantissa * 10^-scale expressed in cents, rounded half up. The mantissa must have at most 16 digits.
+    static long toCents(long mantissa, int scale) {
+        return rescale(mantissa, scale, SCALE);
+    }
+
+    // mantissa * 10^-scale expressed in ten-thousandths, rounded half up. The mantissa must have at
+    // most 14 digits.
+    static long toUnitAmount(long mantissa, int scale) {
+        return rescale(mantissa, scale, UNIT_SCALE);
+    }
+
+    // The amount of `quantity` units at a unit amount in ten-thousandths, rounded half up to cents.
+    // Throws ArithmeticException if the amount does not fit in a long number of cents.
+    static long rowCents(long unitAmount, int quantity) {
+        long amount = unitAmount * quantity;
+        if (Math.multiplyHigh(unitAmount, quantity) != amount >> 63) {
+            return BigDecimal.valueOf(unitAmount).multiply(BigDecimal.valueOf(quantity))
+                    .movePointLeft(UNIT_SCALE - SCALE).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+        return roundHalfUp(amount, POWERS_OF_TEN[UNIT_SCALE - SCALE]);
+    }
+
+    private static long rescale(long mantissa, int scale, int target) {
+        if (scale <= target) {
+            return mantissa * POWERS_OF_TEN[target - scale];
+        }
+        return roundHalfUp(mantissa, POWERS_OF_TEN[scale - target]);
+    }
+
+    // value / divisor, with halves rounded away from zero
+    private static long roundHalfUp(long value, long divisor) {
+        long quotient = value / divisor;
+        long remainder = Math.abs(value % divisor);
+        if (remainder * 2 >= divisor) {
+            return value < 0 ? quotient - 1 : quotient + 1;
+        }
+        return quotient;
+    }
+
+    private static long parseSlow(String text) {
+        try {
+            return new BigDecimal(text).setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.fr.emse.group4;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Maps store/product names to dense int ids straight from the UTF-8 bytes of a row.
+// A String is only created the first time a name is seen.
+final class NameDictionary {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] slots = new int[INITIAL_CAPACITY * 2]; // id + 1, 0 marks an empty slot
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private byte[] bytes = new byte[INITIAL_CAPACITY * 16];
+    private int bytesUsed;
+    private int size;
+
+    int idOf(byte[] source, int offset, int length) {
+        int hash = hash(source, offset, length);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            int id = entry - 1;
+            if (hashes[id] == hash && lengths[id] == length && sameBytes(id, source, offset, length)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return insert(slot, hash, source, offset, length);
+    }
+
+    int idOf(String name) {
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        return idOf(encoded, 0, encoded.length);
+    }
+
+    // Id in this dictionary of the name that has the given id in another one.
+    int idOf(NameDictionary other, int otherId) {
+        return idOf(other.bytes, other.offsets[otherId], other.lengths[otherId]);
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Forgets every name but keeps the capacity, so ids start again from 0
+    void clear() {
+        Arrays.fill(slots, 0);
+        Arrays.fill(names, 0, size, null);
+        bytesUsed = 0;
+        size = 0;
+    }
+
+    private int insert(int slot, int hash, byte[] source, int offset, int length) {
+        int id = size++;
+        if (id == names.length) {
+            int capacity = names.length * 2;
+            hashes = Arrays.copyOf(hashes, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        if (bytesUsed + length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, bytesUsed + length));
+        }
+        System.arraycopy(source, offset, bytes, bytesUsed, length);
+        hashes[id] = hash;
+        offsets[id] = bytesUsed;
+        lengths[id] = length;
+        names[id] = new String(source, offset, length, StandardCharsets.UTF_8);
+        bytesUsed += length;
+
+        slots[slot] = id + 1;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        int[] resized = new int[slots.length * 2];
+        int mask = resized.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (resized[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            resized[slot] = id + 1;
+        }
+        slots = resized;
+    }
+
+    private boolean sameBytes(int id, byte[] source, int offset, int length) {
+        int stored = offsets[id];
+        for (int i = 0; i < length; i++) {
+            if (bytes[stored + i] != source[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] source, int offset, int length) {
+        int h = 1;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            h = 31 * h + source[i];
+        }
+        return h ^ (h >>> 16);
+    }
+}
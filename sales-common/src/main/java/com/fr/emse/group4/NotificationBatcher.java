@@ -0,0 +1,136 @@
+package com.fr.emse.group4;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Collects notifications for uploaded files and sends them with batch calls, flushing as soon as a
+// full batch is ready or after maxDelayMillis, whichever comes first. Messages that fail are
+// retried once with the next flush. Each notification can carry an action to run once it is sent.
+final class NotificationBatcher implements AutoCloseable {
+
+    private static final class Notification {
+        final String body;
+        final Runnable onSent;
+
+        Notification(String body, Runnable onSent) {
+            this.body = body;
+            this.onSent = onSent;
+        }
+    }
+
+    private final Notifier notifier;
+    private final ScheduledExecutorService scheduler;
+    private final List<Notification> pending = new ArrayList<>();
+    private final List<Notification> retries = new ArrayList<>();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    NotificationBatcher(Notifier notifier, long maxDelayMillis) {
+        this.notifier = notifier;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "notification-batcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flush, maxDelayMillis, maxDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    void add(String body) {
+        add(body, () -> { });
+    }
+
+    // onSent runs on the sending thread once the notification is sent, never if it is given up
+    void add(String body, Runnable onSent) {
+        List<Notification> batch = null;
+        synchronized (pending) {
+            pending.add(new Notification(body, onSent));
+            if (pending.size() >= Notifier.MAX_BATCH_SIZE) {
+                batch = new ArrayList<>(pending);
+                pending.clear();
+            }
+        }
+        if (batch != null) {
+            send(batch, true);
+        }
+    }
+
+    void flush() {
+        List<Notification> batch;
+        List<Notification> retry;
+        synchronized (pending) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        synchronized (retries) {
+            retry = new ArrayList<>(retries);
+            retries.clear();
+        }
+        sendAll(batch, true);
+        sendAll(retry, false);
+    }
+
+    // Notifications given up after their retry
+    int failedCount() {
+        return failed.get();
+    }
+
+    private void sendAll(List<Notification> notifications, boolean retryFailed) {
+        for (int from = 0; from < notifications.size(); from += Notifier.MAX_BATCH_SIZE) {
+            send(notifications.subList(from, Math.min(notifications.size(), from + Notifier.MAX_BATCH_SIZE)), retryFailed);
+        }
+    }
+
+    private void send(List<Notification> batch, boolean retryFailed) {
+        List<String> bodies = new ArrayList<>(batch.size());
+        for (Notification notification : batch) {
+            bodies.add(notification.body);
+        }
+        Set<String> failedBodies;
+        try {
+            failedBodies = new HashSet<>(notifier.sendBatch(bodies));
+        } catch (RuntimeException e) {
+            System.err.println("Error occurred while sending " + batch.size() + " notifications: " + e.getMessage());
+            failedBodies = new HashSet<>(bodies);
+        }
+        List<Notification> failedNotifications = new ArrayList<>(failedBodies.size());
+        for (Notification notification : batch) {
+            if (failedBodies.contains(notification.body)) {
+                failedNotifications.add(notification);
+            } else {
+                notification.onSent.run();
+            }
+        }
+        if (failedNotifications.size() < batch.size()) {
+            Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+            System.out.println("Notified the workers of " + (batch.size() - failedNotifications.size()) + " files at : " + "[" + timestamp + "]");
+        }
+        if (retryFailed) {
+            synchronized (retries) {
+                retries.addAll(failedNotifications);
+            }
+        } else {
+            for (Notification notification : failedNotifications) {
+                System.err.println("Could not send notification: " + notification.body);
+            }
+            failed.addAndGet(failedNotifications.size());
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        flush(); // retries what failed in the first one
+    }
+}
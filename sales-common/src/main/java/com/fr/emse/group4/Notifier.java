@@ -0,0 +1,12 @@
+package com.fr.emse.group4;
+
+import java.util.List;
+
+// Tells the workers which files were uploaded, sending up to MAX_BATCH_SIZE messages per call.
+interface Notifier {
+
+    int MAX_BATCH_SIZE = 10;
+
+    // Returns the message bodies that could not be sent
+    List<String> sendBatch(List<String> bodies);
+}
@@ -0,0 +1,44 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+// The object operations shared by the workers, so the same processing runs against S3 (with
+// either SDK), a local directory or memory.
+interface ObjectStore {
+
+    // Null if there is no object with that key
+    default InputStream open(String bucketName, String key) throws IOException {
+        StoredObject object = get(bucketName, key);
+        return object == null ? null : object.content();
+    }
+
+    // Null if there is no object with that key
+    StoredObject get(String bucketName, String key) throws IOException;
+
+    // The size, Content-Encoding and ETag of the object without opening its content, like S3's
+    // HeadObject; null if there is no object with that key
+    StoredObject head(String bucketName, String key) throws IOException;
+
+    // Bytes start to end (inclusive) of the object
+    InputStream openRange(String bucketName, String key, long start, long end) throws IOException;
+
+    // All objects under the prefix, following every page of the listing
+    List<SummaryManifest.Entry> list(String bucketName, String prefix) throws IOException;
+
+    // Stores the whole content under the key and returns the ETag of the new object. The content
+    // type and encoding may be null.
+    String put(String bucketName, String key, byte[] content, String contentType, String contentEncoding) throws IOException;
+
+    // Stores the content only if the object still has the expected ETag, or does not exist yet when
+    // expectedETag is null, like S3's conditional writes (If-Match, If-None-Match: *). Returns the
+    // ETag of the new object, or null if another writer changed the object first.
+    String putIfMatch(String bucketName, String key, byte[] content, String contentType, String expectedETag) throws IOException;
+
+    // Stream that stores what is written to it under the key when closed. The content encoding may
+    // be null.
+    ObjectUpload upload(String bucketName, String key, String contentEncoding) throws IOException;
+
+    void delete(String bucketName, String key) throws IOException;
+}
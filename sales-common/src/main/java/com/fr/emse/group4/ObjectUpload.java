@@ -0,0 +1,17 @@
+package com.fr.emse.group4;
+
+import java.io.OutputStream;
+
+// Stream that stores everything written to it as one object when it is closed, unless it was
+// aborted first.
+abstract class ObjectUpload extends OutputStream {
+
+    // Discards what was written without storing anything; a later close does nothing
+    abstract void abort();
+
+    // Bytes written so far
+    abstract long size();
+
+    // ETag of the stored object, once closed
+    abstract String eTag();
+}
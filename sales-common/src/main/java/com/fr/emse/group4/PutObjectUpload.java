@@ -0,0 +1,62 @@
+package com.fr.emse.group4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+// ObjectUpload for stores without streaming uploads: the content is kept in memory and stored
+// with a single put when the stream is closed.
+final class PutObjectUpload extends ObjectUpload {
+
+    private final ObjectStore store;
+    private final String bucketName;
+    private final String key;
+    private final String contentEncoding;
+    private final ByteArrayOutputStream content = new ByteArrayOutputStream(64 * 1024);
+    private boolean closed;
+    private String eTag;
+
+    PutObjectUpload(ObjectStore store, String bucketName, String key, String contentEncoding) {
+        this.store = store;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.contentEncoding = contentEncoding;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Upload of " + key + " is already closed");
+        }
+        content.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        eTag = store.put(bucketName, key, content.toByteArray(), null, contentEncoding);
+    }
+
+    @Override
+    void abort() {
+        closed = true;
+        content.reset();
+    }
+
+    @Override
+    long size() {
+        return content.size();
+    }
+
+    @Override
+    String eTag() {
+        return eTag;
+    }
+}
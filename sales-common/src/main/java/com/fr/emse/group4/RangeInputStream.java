@@ -0,0 +1,85 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Reads an object from a start offset with ranged reads. The first request covers the expected
+// range; if the reader keeps going past it (to finish the last line of a range), the next bytes
+// are fetched in small continuation requests until the end of the object.
+final class RangeInputStream extends InputStream {
+
+    private static final long CONTINUATION_SIZE = 1024 * 1024;
+    private static final long MAX_DRAIN_ON_CLOSE = 256 * 1024;
+
+    private final ObjectStore store;
+    private final String bucketName;
+    private final String key;
+    private final long objectSize;
+
+    private long position;
+    private long requestEnd; // inclusive end of the current request
+    private InputStream content;
+
+    RangeInputStream(ObjectStore store, String bucketName, String key, long start, long firstEnd, long objectSize) {
+        this.store = store;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.objectSize = objectSize;
+        this.position = start;
+        this.requestEnd = Math.min(objectSize - 1, firstEnd);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            if (content == null) {
+                if (position >= objectSize) {
+                    return -1;
+                }
+                if (position > requestEnd) {
+                    requestEnd = Math.min(objectSize - 1, position + CONTINUATION_SIZE - 1);
+                }
+                content = store.openRange(bucketName, key, position, requestEnd);
+            }
+            int n = content.read(b, off, (int) Math.min(len, requestEnd - position + 1));
+            if (n > 0) {
+                position += n;
+                return n;
+            }
+            closeCurrent(true);
+            if (position <= requestEnd) {
+                throw new IOException("Unexpected end of " + key + " at offset " + position);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Finishing a nearly consumed request keeps an S3 connection reusable; closing it early
+        // drops the connection instead
+        closeCurrent(requestEnd - position + 1 <= MAX_DRAIN_ON_CLOSE);
+    }
+
+    private void closeCurrent(boolean drain) throws IOException {
+        if (content == null) {
+            return;
+        }
+        if (drain) {
+            byte[] skipped = new byte[8192];
+            while (content.read(skipped) != -1) {
+                // discard
+            }
+        }
+        content.close();
+        content = null;
+    }
+}
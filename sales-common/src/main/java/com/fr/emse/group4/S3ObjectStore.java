@@ -0,0 +1,168 @@
+package com.fr.emse.group4;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.SdkClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AmazonS3Exception;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsV2Request;
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+// ObjectStore over the SDK v1 client the workers already use for their files. Uploads stream
+// through S3UploadOutputStream with buffers taken from the given pool.
+final class S3ObjectStore implements ObjectStore {
+
+    private final AmazonS3 s3;
+    private final BufferPool buffers;
+
+    S3ObjectStore(AmazonS3 s3, BufferPool buffers) {
+        this.s3 = s3;
+        this.buffers = buffers;
+    }
+
+    @Override
+    public StoredObject get(String bucketName, String key) throws IOException {
+        S3Object s3Object;
+        try {
+            s3Object = s3.getObject(bucketName, key);
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw new IOException("Error occurred while reading " + key + " from S3 bucket: " + bucketName, e);
+        } catch (SdkClientException e) {
+            throw new IOException("Error occurred while reading " + key + " from S3 bucket: " + bucketName, e);
+        }
+        ObjectMetadata metadata = s3Object.getObjectMetadata();
+        S3ObjectInputStream content = s3Object.getObjectContent();
+        return new StoredObject(metadata.getContentLength(), metadata.getContentEncoding(), metadata.getETag(), content);
+    }
+
+    @Override
+    public StoredObject head(String bucketName, String key) throws IOException {
+        ObjectMetadata metadata;
+        try {
+            metadata = s3.getObjectMetadata(bucketName, key);
+        } catch (AmazonS3Exception e) {
+            if (e.getStatusCode() == 404) {
+                return null;
+            }
+            throw new IOException("Error occurred while reading the metadata of " + key + " from S3 bucket: " + bucketName, e);
+        } catch (SdkClientException e) {
+            throw new IOException("Error occurred while reading the metadata of " + key + " from S3 bucket: " + bucketName, e);
+        }
+        return new StoredObject(metadata.getContentLength(), metadata.getContentEncoding(), metadata.getETag(), null);
+    }
+
+    @Override
+    public InputStream openRange(String bucketName, String key, long start, long end) throws IOException {
+        try {
+            return s3.getObject(new GetObjectRequest(bucketName, key).withRange(start, end)).getObjectContent();
+        } catch (SdkClientException e) {
+            throw new IOException("Error occurred while reading a range of " + key + " from S3 bucket: " + bucketName, e);
+        }
+    }
+
+    @Override
+    public List<SummaryManifest.Entry> list(String bucketName, String prefix) throws IOException {
+        List<SummaryManifest.Entry> objects = new ArrayList<>();
+        ListObjectsV2Request request = new ListObjectsV2Request().withBucketName(bucketName).withPrefix(prefix);
+        ListObjectsV2Result result;
+        try {
+            do {
+                result = s3.listObjectsV2(request);
+                for (S3ObjectSummary object : result.getObjectSummaries()) {
+                    objects.add(new SummaryManifest.Entry(object.getKey(), object.getSize(), object.getETag()));
+                }
+                request.setContinuationToken(result.getNextContinuationToken());
+            } while (result.isTruncated());
+        } catch (SdkClientException e) {
+            throw new IOException("Error occurred while listing " + prefix + " in S3 bucket: " + bucketName, e);
+        }
+        return objects;
+    }
+
+    @Override
+    public String put(String bucketName, String key, byte[] content, String contentType, String contentEncoding) throws IOException {
+        try {
+            return s3.putObject(bucketName, key, new ByteArrayInputStream(content), metadata(content, contentType, contentEncoding)).getETag();
+        } catch (SdkClientException e) {
+            throw new IOException("Error occurred while uploading " + key + " to S3 bucket: " + bucketName, e);
+        }
+    }
+
+    // SDK v1 has no fields for the condition headers, so they are added to the request as they are
+    @Override
+    public String putIfMatch(String bucketName, String key, byte[] content, String contentType, String expectedETag) throws IOException {
+        PutObjectRequest request = new PutObjectRequest(bucketName, key, new ByteArrayInputStream(content), metadata(content, contentType, null));
+        if (expectedETag == null) {
+            request.putCustomRequestHeader("If-None-Match", "*");
+        } else {
+            request.putCustomRequestHeader("If-Match", "\"" + expectedETag + "\"");
+        }
+        try {
+            return s3.putObject(request).getETag();
+        } catch (AmazonS3Exception e) {
+            // 412 when the condition failed, 409 when a concurrent conditional write won the race
+            if (e.getStatusCode() == 412 || e.getStatusCode() == 409) {
+                return null;
+            }
+            throw new IOException("Error occurred while uploading " + key + " to S3 bucket: " + bucketName, e);
+        } catch (SdkClientException e) {
+            throw new IOException("Error occurred while uploading " + key + " to S3 bucket: " + bucketName, e);
+        }
+    }
+
+    private static ObjectMetadata metadata(byte[] content, String contentType, String contentEncoding) {
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(content.length);
+        if (contentType != null) {
+            metadata.setContentType(contentType);
+        }
+        if (contentEncoding != null) {
+            metadata.setContentEncoding(contentEncoding);
+        }
+        return metadata;
+    }
+
+    @Override
+    public ObjectUpload upload(String bucketName, String key, String contentEncoding) {
+        S3UploadOutputStream upload = new S3UploadOutputStream(s3, bucketName, key, buffers);
+        upload.setContentEncoding(contentEncoding);
+        return upload;
+    }
+
+    @Override
+    public void delete(String bucketName, String key) throws IOException {
+        try {
+            s3.deleteObject(bucketName, key);
+        } catch (SdkClientException e) {
+            throw new IOException("Error occurred while deleting " + key + " from S3 bucket: " + bucketName, e);
+        }
+    }
+
+    // True if the failure, or one of its causes, is S3 asking to slow down (503 Slow Down). The
+    // client has already retried such requests with backoff by the time this is seen.
+    static boolean isThrottling(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AmazonServiceException) {
+                AmazonServiceException service = (AmazonServiceException) cause;
+                if (service.getStatusCode() == 503 || "SlowDown".equals(service.getErrorCode())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
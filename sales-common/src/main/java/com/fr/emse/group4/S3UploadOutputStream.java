@@ -0,0 +1,173 @@
+package com.fr.emse.group4;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+// Uploads everything written to it to S3 when closed, without staging it on disk. Data is kept in
+// a pooled buffer; objects that fit in one part are sent with a single PutObject, larger ones
+// stream out as a multipart upload one part at a time.
+final class S3UploadOutputStream extends ObjectUpload {
+
+    static final int PART_SIZE = 8 * 1024 * 1024;
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private final String key;
+    private final BufferPool buffers;
+
+    private byte[] buffer;
+    private int count;
+    private String uploadId;
+    private final List<PartETag> partETags = new ArrayList<>();
+    private boolean closed;
+    private boolean failed;
+    private long size;
+    private String eTag;
+    private String contentEncoding;
+
+    S3UploadOutputStream(AmazonS3 s3, String bucketName, String key, BufferPool buffers) {
+        this.s3 = s3;
+        this.bucketName = bucketName;
+        this.key = key;
+        this.buffers = buffers;
+        this.buffer = buffers.acquire();
+    }
+
+    // Content-Encoding stored with the object, e.g. "gzip", or null; must be set before writing
+    void setContentEncoding(String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed || failed) {
+            throw new IOException("Upload of " + key + " is already " + (failed ? "failed" : "closed"));
+        }
+        while (len > 0) {
+            if (count == buffer.length) {
+                if (buffer.length < PART_SIZE) {
+                    buffer = Arrays.copyOf(buffer, Math.min(PART_SIZE, Math.max(buffer.length * 2, count + len)));
+                } else {
+                    uploadPart();
+                }
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            size += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (failed) {
+            throw new IOException("Upload of " + key + " to S3 bucket " + bucketName + " failed");
+        }
+        try {
+            if (uploadId == null) {
+                ObjectMetadata metadata = metadata();
+                metadata.setContentLength(count);
+                eTag = s3.putObject(bucketName, key, new ByteArrayInputStream(buffer, 0, count), metadata).getETag();
+            } else {
+                uploadPart();
+                eTag = s3.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags)).getETag();
+            }
+        } catch (RuntimeException e) {
+            abortMultipartUpload();
+            throw new IOException("Error occurred while uploading " + key + " to S3 bucket: " + bucketName, e);
+        } finally {
+            releaseBuffer();
+        }
+    }
+
+    // Nothing is stored: the parts sent so far are deleted with the multipart upload
+    @Override
+    void abort() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        abortMultipartUpload();
+        releaseBuffer();
+    }
+
+    @Override
+    long size() {
+        return size;
+    }
+
+    @Override
+    String eTag() {
+        return eTag;
+    }
+
+    private void uploadPart() throws IOException {
+        try {
+            if (uploadId == null) {
+                uploadId = s3.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, key, metadata())).getUploadId();
+            }
+            UploadPartRequest request = new UploadPartRequest()
+                    .withBucketName(bucketName)
+                    .withKey(key)
+                    .withUploadId(uploadId)
+                    .withPartNumber(partETags.size() + 1)
+                    .withInputStream(new ByteArrayInputStream(buffer, 0, count))
+                    .withPartSize(count);
+            partETags.add(s3.uploadPart(request).getPartETag());
+            count = 0;
+        } catch (RuntimeException e) {
+            abortMultipartUpload();
+            failed = true;
+            releaseBuffer();
+            throw new IOException("Error occurred while uploading part of " + key + " to S3 bucket: " + bucketName, e);
+        }
+    }
+
+    private ObjectMetadata metadata() {
+        ObjectMetadata metadata = new ObjectMetadata();
+        if (contentEncoding != null) {
+            metadata.setContentEncoding(contentEncoding);
+        }
+        return metadata;
+    }
+
+    private void releaseBuffer() {
+        if (buffer != null) {
+            buffers.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private void abortMultipartUpload() {
+        if (uploadId != null) {
+            try {
+                s3.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+            } catch (RuntimeException e) {
+                System.err.println("Error occurred while aborting upload of " + key + ": " + e.getMessage());
+            }
+            uploadId = null;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateBucketRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListBucketsResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+// UploadStore over the S3 input bucket. Bodies are streamed from disk; files of at least
+// MULTIPART_THRESHOLD are sent as a multipart upload, one part after the other.
+final class S3UploadStore implements UploadStore {
+
+    static final long MULTIPART_THRESHOLD = 16L * 1024 * 1024;
+    static final long PART_SIZE = 8L * 1024 * 1024;
+
+    private final S3Client s3;
+    private final String bucketName;
+
+    S3UploadStore(S3Client s3, String bucketName) {
+        this.s3 = s3;
+        this.bucketName = bucketName;
+    }
+
+    @Override
+    public void createBucketIfMissing() {
+        ListBucketsResponse listBucketResponse = s3.listBuckets();
+        if ((listBucketResponse.hasBuckets()) && (listBucketResponse.buckets().stream().noneMatch(x -> x.name().equals(bucketName)))) {
+            s3.createBucket(CreateBucketRequest.builder().bucket(bucketName).build());
+        }
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try {
+            s3.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key).build());
+            return true; // The file exists
+        } catch (NoSuchKeyException e) {
+            return false; // The file does not exist
+        }
+    }
+
+    @Override
+    public void put(String key, Path file, String contentEncoding) throws IOException {
+        long size = Files.size(file);
+        if (size < MULTIPART_THRESHOLD) {
+            PutObjectRequest request = PutObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .contentEncoding(contentEncoding)
+                    .build();
+            s3.putObject(request, RequestBody.fromFile(file));
+        } else {
+            uploadMultipart(file, key, size, contentEncoding);
+        }
+    }
+
+    private void uploadMultipart(Path file, String key, long size, String contentEncoding) {
+        CreateMultipartUploadRequest createRequest = CreateMultipartUploadRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .contentEncoding(contentEncoding)
+                .build();
+        String uploadId = s3.createMultipartUpload(createRequest).uploadId();
+        try {
+            List<CompletedPart> parts = new ArrayList<>();
+            for (long offset = 0; offset < size; offset += PART_SIZE) {
+                int partNumber = parts.size() + 1;
+                long partOffset = offset;
+                long partLength = Math.min(PART_SIZE, size - offset);
+                UploadPartRequest request = UploadPartRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .contentLength(partLength)
+                        .build();
+                // The provider may be asked for the body again when the SDK retries the part
+                RequestBody body = RequestBody.fromContentProvider(() -> openRange(file, partOffset, partLength), partLength, "text/csv");
+                String eTag = s3.uploadPart(request, body).eTag();
+                parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build());
+            }
+            s3.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(bucketName)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build());
+        } catch (RuntimeException e) {
+            s3.abortMultipartUpload(AbortMultipartUploadRequest.builder().bucket(bucketName).key(key).uploadId(uploadId).build());
+            throw e;
+        }
+    }
+
+    private static InputStream openRange(Path file, long offset, long length) {
+        try {
+            return new FileRangeInputStream(FileChannel.open(file, StandardOpenOption.READ), offset, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class FileRangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+
+        FileRangeInputStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= end) {
+                return -1;
+            }
+            int n = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (n > 0) {
+                position += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
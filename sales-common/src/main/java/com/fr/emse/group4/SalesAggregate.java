@@ -0,0 +1,120 @@
+package com.fr.emse.group4;
+
+import java.util.Arrays;
+
+// Store and product totals, kept in primitive arrays indexed by the dense ids of the two name
+// dictionaries. Money is in cents (see Money), so adding rows never allocates and merging partial
+// aggregates in any order gives the same totals.
+final class SalesAggregate {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    final NameDictionary stores = new NameDictionary();
+    final NameDictionary products = new NameDictionary();
+
+    private long[] storeProfit = new long[INITIAL_CAPACITY];
+    private long[] productQuantity = new long[INITIAL_CAPACITY];
+    private long[] productSold = new long[INITIAL_CAPACITY];
+    private long[] productProfit = new long[INITIAL_CAPACITY];
+    long malformedRowCount;
+
+    // Matches SalesFileParser.RowHandler, so it can be passed as aggregate::addRow
+    void addRow(int storeId, int productId, int quantity, long soldCents, long profitCents) {
+        if (storeId >= storeProfit.length) {
+            growStores(storeId);
+        }
+        if (productId >= productQuantity.length) {
+            growProducts(productId);
+        }
+        storeProfit[storeId] += profitCents;
+        productQuantity[productId] += quantity;
+        productSold[productId] += soldCents;
+        productProfit[productId] += profitCents;
+    }
+
+    void addStore(String name, long profitCents) {
+        addStore(stores.idOf(name), profitCents);
+    }
+
+    void addProduct(String name, long quantity, long soldCents, long profitCents) {
+        addProduct(products.idOf(name), quantity, soldCents, profitCents);
+    }
+
+    void merge(SalesAggregate other) {
+        for (int i = 0; i < other.storeCount(); i++) {
+            addStore(stores.idOf(other.stores, i), other.storeProfit[i]);
+        }
+        for (int i = 0; i < other.productCount(); i++) {
+            addProduct(products.idOf(other.products, i), other.productQuantity[i], other.productSold[i], other.productProfit[i]);
+        }
+        malformedRowCount += other.malformedRowCount;
+    }
+
+    // Drops the products, keeping the stores; used to spill products to disk (see SpillingAggregator)
+    void clearProducts() {
+        int count = products.size();
+        Arrays.fill(productQuantity, 0, count, 0);
+        Arrays.fill(productSold, 0, count, 0);
+        Arrays.fill(productProfit, 0, count, 0);
+        products.clear();
+    }
+
+    int storeCount() {
+        return stores.size();
+    }
+
+    String storeName(int storeId) {
+        return stores.name(storeId);
+    }
+
+    long storeProfit(int storeId) {
+        return storeProfit[storeId];
+    }
+
+    int productCount() {
+        return products.size();
+    }
+
+    String productName(int productId) {
+        return products.name(productId);
+    }
+
+    long productQuantity(int productId) {
+        return productQuantity[productId];
+    }
+
+    long productSold(int productId) {
+        return productSold[productId];
+    }
+
+    long productProfit(int productId) {
+        return productProfit[productId];
+    }
+
+    void addStore(int storeId, long profitCents) {
+        if (storeId >= storeProfit.length) {
+            growStores(storeId);
+        }
+        storeProfit[storeId] += profitCents;
+    }
+
+    void addProduct(int productId, long quantity, long soldCents, long profitCents) {
+        if (productId >= productQuantity.length) {
+            growProducts(productId);
+        }
+        productQuantity[productId] += quantity;
+        productSold[productId] += soldCents;
+        productProfit[productId] += profitCents;
+    }
+
+    private void growStores(int storeId) {
+        storeProfit = Arrays.copyOf(storeProfit, Math.max(storeProfit.length * 2, storeId + 1));
+    }
+
+    private void growProducts(int productId) {
+        int capacity = Math.max(productQuantity.length * 2, productId + 1);
+        productQuantity = Arrays.copyOf(productQuantity, capacity);
+        productSold = Arrays.copyOf(productSold, capacity);
+        productProfit = Arrays.copyOf(productProfit, capacity);
+    }
+}
@@ -0,0 +1,291 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Parses the ';'-separated sales files directly from the raw bytes of the stream.
+// Columns: date;store;product;quantity;unit price;unit cost;unit profit
+// One instance keeps its read buffer between files, so use one parser per thread.
+final class SalesFileParser {
+
+    interface RowHandler {
+        // The amounts of the row, quantity times its unit price and profit, in cents (see Money)
+        void onRow(int storeId, int productId, int quantity, long soldCents, long profitCents);
+    }
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte SEPARATOR = ';';
+    private static final int FIELD_COUNT = 7;
+    private static final int STORE = 1;
+    private static final int PRODUCT = 2;
+    private static final int QUANTITY = 3;
+    private static final int UNIT_PRICE = 4;
+    private static final int UNIT_PROFIT = 6;
+
+    private static final int MAX_FAST_DIGITS = 14; // keeps mantissa * 10^4 inside a long
+
+    private byte[] buffer;
+    private final int[] fieldStart = new int[FIELD_COUNT];
+    private final int[] fieldEnd = new int[FIELD_COUNT];
+
+    private int parsedInt;
+    private long parsedAmount;
+
+    private long rowCount;
+    private long malformedRowCount;
+
+    SalesFileParser() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    SalesFileParser(int bufferSize) {
+        this.buffer = new byte[bufferSize];
+    }
+
+    // Returns the number of rows handed to the handler. Rows that cannot be parsed are
+    // counted in malformedRowCount() and skipped.
+    long parse(InputStream in, boolean skipHeader, NameDictionary stores, NameDictionary products,
+               RowHandler handler) throws IOException {
+        return parse(in, skipHeader, Long.MAX_VALUE, stores, products, handler);
+    }
+
+    // Only lines starting before limit (counted from the start of the stream) are parsed, and
+    // reading stops once such a line is complete. With skipFirstLine everything up to the first
+    // newline is ignored, which skips either the header or a line owned by the previous range.
+    long parse(InputStream in, boolean skipFirstLine, long limit, NameDictionary stores, NameDictionary products,
+               RowHandler handler) throws IOException {
+        rowCount = 0;
+        malformedRowCount = 0;
+        boolean skip = skipFirstLine;
+        long position = 0; // stream offset of buffer[0]
+        int length = 0;
+        int scanned = 0;
+        int read;
+        while ((read = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            byte[] buf = buffer;
+            int lineStart = 0;
+            for (int i = scanned; i < length; i++) {
+                if (buf[i] == '\n') {
+                    if (skip) {
+                        skip = false;
+                    } else if (position + lineStart >= limit) {
+                        return rowCount;
+                    } else {
+                        parseLine(lineStart, i, stores, products, handler);
+                    }
+                    lineStart = i + 1;
+                }
+            }
+
+            length -= lineStart;
+            position += lineStart;
+            if (lineStart > 0) {
+                System.arraycopy(buffer, lineStart, buffer, 0, length);
+            } else if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2); // a single line larger than the buffer
+            }
+            scanned = length;
+            if (!skip && position >= limit) {
+                return rowCount;
+            }
+        }
+        if (length > 0 && !skip && position < limit) {
+            parseLine(0, length, stores, products, handler);
+        }
+        return rowCount;
+    }
+
+    long rowCount() {
+        return rowCount;
+    }
+
+    long malformedRowCount() {
+        return malformedRowCount;
+    }
+
+    private void parseLine(int start, int end, NameDictionary stores, NameDictionary products, RowHandler handler) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        if (start == end) {
+            return; // blank line
+        }
+
+        byte[] buf = buffer;
+        int[] starts = fieldStart;
+        int[] ends = fieldEnd;
+        int field = 0;
+        int begin = start;
+        for (int i = start; i < end; i++) {
+            if (buf[i] == SEPARATOR) {
+                starts[field] = begin;
+                ends[field] = i;
+                begin = i + 1;
+                if (++field == FIELD_COUNT) {
+                    break;
+                }
+            }
+        }
+        if (field == FIELD_COUNT - 1) {
+            starts[field] = begin;
+            ends[field] = end;
+            field++;
+        }
+
+        if (field < FIELD_COUNT
+                || !parseInt(fieldStart[QUANTITY], fieldEnd[QUANTITY])) {
+            malformedRowCount++;
+            return;
+        }
+        int quantity = parsedInt;
+        if (!parseAmount(fieldStart[UNIT_PRICE], fieldEnd[UNIT_PRICE])) {
+            malformedRowCount++;
+            return;
+        }
+        long unitPrice = parsedAmount;
+        if (!parseAmount(fieldStart[UNIT_PROFIT], fieldEnd[UNIT_PROFIT])) {
+            malformedRowCount++;
+            return;
+        }
+        long unitProfit = parsedAmount;
+        long soldCents;
+        long profitCents;
+        try {
+            soldCents = Money.rowCents(unitPrice, quantity);
+            profitCents = Money.rowCents(unitProfit, quantity);
+        } catch (ArithmeticException e) {
+            malformedRowCount++;
+            return;
+        }
+
+        int storeId = stores.idOf(buffer, fieldStart[STORE], fieldEnd[STORE] - fieldStart[STORE]);
+        int productId = products.idOf(buffer, fieldStart[PRODUCT], fieldEnd[PRODUCT] - fieldStart[PRODUCT]);
+        rowCount++;
+        handler.onRow(storeId, productId, quantity, soldCents, profitCents);
+    }
+
+    // Same accepted syntax as Integer.parseInt: optional sign followed by decimal digits.
+    private boolean parseInt(int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        int i = start;
+        boolean negative = false;
+        if (buffer[i] == '-' || buffer[i] == '+') {
+            negative = buffer[i] == '-';
+            if (++i == end) {
+                return false;
+            }
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = buffer[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                return false;
+            }
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value > Integer.MAX_VALUE) {
+            return false;
+        }
+        parsedInt = (int) value;
+        return true;
+    }
+
+    // Reads a plain or scientific decimal as a whole number of ten-thousandths (see Money). Up to 14
+    // digits are handled directly from the bytes; longer numbers and exponents go through BigDecimal.
+    private boolean parseAmount(int start, int end) {
+        while (start < end && isWhitespace(buffer[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(buffer[end - 1])) {
+            end--;
+        }
+        if (start >= end) {
+            return false;
+        }
+
+        int i = start;
+        boolean negative = false;
+        if (buffer[i] == '-' || buffer[i] == '+') {
+            negative = buffer[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean fraction = false;
+        boolean exact = true;
+        for (; i < end; i++) {
+            byte c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                exact &= ++digits <= MAX_FAST_DIGITS;
+                if (exact) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (fraction) {
+                        scale++;
+                    }
+                }
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if ((c == 'e' || c == 'E') && digits > 0 && isExponent(i + 1, end)) {
+                return parseAmountSlow(start, end);
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (!exact) {
+            return parseAmountSlow(start, end);
+        }
+
+        long amount = Money.toUnitAmount(mantissa, scale);
+        parsedAmount = negative ? -amount : amount;
+        return true;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    private boolean isExponent(int start, int end) {
+        int i = start;
+        if (i < end && (buffer[i] == '-' || buffer[i] == '+')) {
+            i++;
+        }
+        if (i == end) {
+            return false;
+        }
+        for (; i < end; i++) {
+            if (buffer[i] < '0' || buffer[i] > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Only reached for syntactically valid numbers; BigDecimal can only reject out of range values.
+    private boolean parseAmountSlow(int start, int end) {
+        try {
+            parsedAmount = new BigDecimal(new String(buffer, start, end - start, StandardCharsets.ISO_8859_1))
+                    .setScale(Money.UNIT_SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            return true;
+        } catch (ArithmeticException | NumberFormatException e) {
+            return false;
+        }
+    }
+}
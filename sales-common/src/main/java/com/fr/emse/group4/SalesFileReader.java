@@ -0,0 +1,248 @@
+package com.fr.emse.group4;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipException;
+
+// Downloads and aggregates one sales file. Files of at least worker.rangedReadThresholdBytes are
+// split into byte ranges that are fetched with concurrent ranged reads and parsed on separate cores;
+// a range owns the lines that start inside it. Smaller files are read as a single stream, and so are
+// gzip-compressed ones (a ".gz" key or Content-Encoding: gzip), which are inflated while parsing.
+// The time blocked on the download is recorded as the download stage, the rest of each read as the
+// parse stage (which includes aggregating the rows), and merging the ranges (and any spills) as the aggregate stage.
+//
+// worker.aggregationMemoryMB bounds the memory a file's products may take; past it they are
+// spilled to disk (see SpillingAggregator and BoundedAggregate). The ranges of a file share the
+// budget. The default, 0, keeps every product in memory.
+//
+// Without a memory budget, uncompressed files larger than worker.checkpointIntervalBytes are read
+// that many bytes at a time, and after each segment the totals so far and the offset reached are
+// stored as a Checkpoint. If the worker dies or times out, the redelivered message resumes from
+// the last checkpoint. 0 turns checkpoints off.
+final class SalesFileReader {
+
+    static final long RANGED_READ_THRESHOLD = Long.getLong("worker.rangedReadThresholdBytes", 64L * 1024 * 1024);
+    static final long AGGREGATION_MEMORY_MB = Long.getLong("worker.aggregationMemoryMB", 0L);
+    static final int AGGREGATION_BUDGET = AGGREGATION_MEMORY_MB > 0
+            ? SpillingAggregator.budgetFor(AGGREGATION_MEMORY_MB * 1024 * 1024) : Integer.MAX_VALUE;
+    static final long CHECKPOINT_INTERVAL = Long.getLong("worker.checkpointIntervalBytes", 256L * 1024 * 1024);
+    static final String GZIP_SUFFIX = ".gz";
+
+    private static final long MIN_RANGE_SIZE = 16L * 1024 * 1024;
+    private static final long RANGE_OVERHANG = 64 * 1024;
+    private static final int RANGE_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final ThreadLocal<SalesFileParser> PARSER = ThreadLocal.withInitial(SalesFileParser::new);
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ExecutorService RANGE_POOL = Executors.newFixedThreadPool(RANGE_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "range-reader-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SalesFileReader() {
+    }
+
+    static BoundedAggregate read(ObjectStore store, String bucketName, String key) throws IOException {
+        return read(store, bucketName, key, AGGREGATION_BUDGET);
+    }
+
+    // Holds at most `budget` products in memory; close the result to delete any spill files
+    @SuppressWarnings("try")
+    static BoundedAggregate read(ObjectStore store, String bucketName, String key, int budget) throws IOException {
+        SpillDirectory directory = new SpillDirectory();
+        try {
+            List<SpillingAggregator> parts = null;
+            long size;
+            String eTag;
+            // A .gz file is read whole whatever its size; other files are looked up first, so a
+            // large one is read in ranges without opening a GET of the whole object
+            StoredObject head = key.endsWith(GZIP_SUFFIX) ? null : store.head(bucketName, key);
+            if (head != null && !"gzip".equals(head.contentEncoding) && head.size >= RANGED_READ_THRESHOLD) {
+                size = head.size;
+                eTag = head.eTag;
+            } else {
+                try (StoredObject object = store.get(bucketName, key)) {
+                    if (object == null) {
+                        throw new FileNotFoundException("No file " + key + " in bucket " + bucketName);
+                    }
+                    size = object.size;
+                    eTag = object.eTag;
+                    TimedInputStream download = new TimedInputStream(object.content());
+                    if (key.endsWith(GZIP_SUFFIX) || "gzip".equals(object.contentEncoding)) {
+                        try (InputStream content = new GZIPInputStream(download, 64 * 1024)) {
+                            parts = Collections.singletonList(timedParse(key, download, content, Long.MAX_VALUE, new SpillingAggregator(budget, 0, directory)));
+                        }
+                    } else {
+                        parts = Collections.singletonList(timedParse(key, download, download, Long.MAX_VALUE, new SpillingAggregator(budget, 0, directory)));
+                    }
+                }
+            }
+            BoundedAggregate aggregate;
+            if (parts == null && budget == Integer.MAX_VALUE && CHECKPOINT_INTERVAL > 0 && size > CHECKPOINT_INTERVAL) {
+                aggregate = BoundedAggregate.checkpointed(readCheckpointed(store, bucketName, key, size, eTag, directory), directory);
+            } else {
+                if (parts == null) {
+                    parts = readRanges(store, bucketName, key, 0, size, size, budget, directory);
+                }
+                try (StageTimer timer = Metrics.start("aggregate", key)) {
+                    aggregate = BoundedAggregate.merge(parts, budget, directory);
+                }
+            }
+            aggregate.setInput(size, eTag);
+            return aggregate;
+        } catch (IOException | RuntimeException e) {
+            directory.close();
+            throw e;
+        }
+    }
+
+    // Reads a plain file in rangeCount ranges whatever its size, so tests can split small files
+    static BoundedAggregate read(ObjectStore store, String bucketName, String key, int budget, int rangeCount) throws IOException {
+        SpillDirectory directory = new SpillDirectory();
+        try {
+            StoredObject head = store.head(bucketName, key);
+            if (head == null) {
+                throw new FileNotFoundException("No file " + key + " in bucket " + bucketName);
+            }
+            long size = head.size;
+            String eTag = head.eTag;
+            BoundedAggregate aggregate = BoundedAggregate.merge(
+                    readRanges(store, bucketName, key, 0, size, size, (int) Math.max(1, Math.min(rangeCount, size)), budget, directory),
+                    budget, directory);
+            aggregate.setInput(size, eTag);
+            return aggregate;
+        } catch (IOException | RuntimeException e) {
+            directory.close();
+            throw e;
+        }
+    }
+
+    // True if the failure is the file's own fault: it no longer exists, e.g. another worker already
+    // processed it, or it is not valid gzip. Reading it again would fail the same way, unlike after
+    // a network error or throttling.
+    static boolean isDataError(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof FileNotFoundException || cause instanceof ZipException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Name of the file without its compression suffix, used to name its summaries
+    static String uncompressedName(String key) {
+        return key.endsWith(GZIP_SUFFIX) ? key.substring(0, key.length() - GZIP_SUFFIX.length()) : key;
+    }
+
+    static SalesAggregate parse(InputStream content, boolean skipFirstLine, long limit) throws IOException {
+        SalesAggregate aggregate = new SalesAggregate();
+        SalesFileParser parser = PARSER.get();
+        parser.parse(content, skipFirstLine, limit, aggregate.stores, aggregate.products, aggregate::addRow);
+        aggregate.malformedRowCount = parser.malformedRowCount();
+        return aggregate;
+    }
+
+    // content is download itself, or download being inflated
+    private static SpillingAggregator timedParse(String key, TimedInputStream download, InputStream content, long limit,
+                                                 SpillingAggregator into) throws IOException {
+        try (StageTimer timer = Metrics.start("parse", key)) {
+            SalesFileParser parser = PARSER.get();
+            parser.parse(content, true, limit, into.aggregate.stores, into.aggregate.products, into);
+            into.aggregate.malformedRowCount = parser.malformedRowCount();
+            timer.bytes(download.bytes()).rows(parser.rowCount()).ioWait("download", download.nanos());
+            return into;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Segment by segment, resuming after the checkpoint of this version of the file if there is one.
+    // A segment owns the lines starting inside it, like a range, so the totals after each segment
+    // are those of a prefix of the file and merging the segments in order keeps the product order.
+    @SuppressWarnings("try")
+    private static SalesAggregate readCheckpointed(ObjectStore store, String bucketName, String key, long size, String eTag,
+                                                   SpillDirectory directory) throws IOException {
+        Checkpoint checkpoint = Checkpoint.load(store, bucketName, key, size, eTag);
+        SalesAggregate totals = checkpoint != null ? checkpoint.totals : new SalesAggregate();
+        long offset = checkpoint != null ? checkpoint.offset : 0;
+        if (checkpoint != null) {
+            System.out.println("Resuming " + key + " from its checkpoint at byte " + offset + " of " + size);
+            Metrics.increment("checkpoint.resumed", 1);
+            Metrics.increment("checkpoint.skippedBytes", offset);
+        }
+        while (offset < size) {
+            long end = Math.min(size, offset + CHECKPOINT_INTERVAL);
+            List<SpillingAggregator> parts = readRanges(store, bucketName, key, offset, end, size, Integer.MAX_VALUE, directory);
+            try (StageTimer timer = Metrics.start("aggregate", key)) {
+                for (SpillingAggregator part : parts) {
+                    totals.merge(part.aggregate);
+                }
+            }
+            offset = end;
+            if (offset < size) {
+                try (StageTimer timer = Metrics.start("checkpoint", key)) {
+                    Checkpoint.save(store, bucketName, key, size, eTag, offset, totals);
+                }
+            }
+        }
+        return totals;
+    }
+
+    // Reads bytes from to to of the file in ranges. Range i numbers its products from i << 40, so
+    // after merging, the products of earlier ranges come first, as they do when the partial
+    // aggregates are merged in memory.
+    private static List<SpillingAggregator> readRanges(ObjectStore store, String bucketName, String key, long from, long to, long size,
+                                                       int budget, SpillDirectory directory) throws IOException {
+        int rangeCount = (int) Math.max(1, Math.min(RANGE_THREADS * 2L, (to - from) / MIN_RANGE_SIZE));
+        return readRanges(store, bucketName, key, from, to, size, rangeCount, budget, directory);
+    }
+
+    private static List<SpillingAggregator> readRanges(ObjectStore store, String bucketName, String key, long from, long to, long size,
+                                                       int rangeCount, int budget, SpillDirectory directory) throws IOException {
+        long rangeSize = (to - from + rangeCount - 1) / rangeCount;
+        int rangeBudget = budget == Integer.MAX_VALUE ? budget : Math.max(1, budget / Math.min(rangeCount, RANGE_THREADS));
+
+        List<Future<SpillingAggregator>> partials = new ArrayList<>(rangeCount);
+        for (int i = 0; i < rangeCount; i++) {
+            long start = from + i * rangeSize;
+            long end = Math.min(to, start + rangeSize);
+            // Start one byte early so a range beginning exactly at a line start does not lose that line
+            long streamStart = start == 0 ? 0 : start - 1;
+            SpillingAggregator part = new SpillingAggregator(rangeBudget, (long) i << 40, directory);
+            partials.add(RANGE_POOL.submit(() -> {
+                try (TimedInputStream in = new TimedInputStream(new RangeInputStream(store, bucketName, key, streamStart, end - 1 + RANGE_OVERHANG, size))) {
+                    return timedParse(key, in, in, end - streamStart, part);
+                }
+            }));
+        }
+
+        List<SpillingAggregator> parts = new ArrayList<>(rangeCount);
+        try {
+            for (Future<SpillingAggregator> partial : partials) {
+                parts.add(partial.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading " + key, e);
+        } catch (ExecutionException e) {
+            throw new IOException("Error occurred while reading a range of " + key, e.getCause());
+        } finally {
+            for (Future<SpillingAggregator> partial : partials) {
+                partial.cancel(true);
+            }
+        }
+        return parts;
+    }
+}
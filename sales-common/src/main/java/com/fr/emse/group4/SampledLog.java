@@ -0,0 +1,28 @@
+package com.fr.emse.group4;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Logs the first occurrences of a kind of message, then only one in every `every`, noting how many
+// have been seen. The message is only built when it is logged.
+final class SampledLog {
+
+    private final int first;
+    private final int every;
+    private final AtomicLong count = new AtomicLong();
+
+    SampledLog(int first, int every) {
+        this.first = first;
+        this.every = Math.max(1, every);
+    }
+
+    void log(Consumer<String> out, Supplier<String> message) {
+        long n = count.incrementAndGet();
+        if (n <= first || every == 1) {
+            out.accept(message.get());
+        } else if ((n - first) % every == 0) {
+            out.accept(message.get() + " [" + n + " so far, logging 1 in " + every + "]");
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.fr.emse.group4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Temporary directory for the spill files of one sales file, under worker.spillDirectory (the
+// system temp directory by default, which is /tmp on Lambda). It is only created on the first
+// spill, and close deletes it with everything in it.
+final class SpillDirectory implements Closeable {
+
+    private static final Path ROOT = Paths.get(System.getProperty("worker.spillDirectory", System.getProperty("java.io.tmpdir")));
+
+    private Path path;
+    private boolean closed;
+
+    synchronized SpillFile newFile() throws IOException {
+        if (closed) {
+            throw new IOException("Spill directory already deleted");
+        }
+        if (path == null) {
+            path = Files.createTempDirectory(ROOT, "sales-spill-");
+        }
+        return new SpillFile(Files.createTempFile(path, "spill-", ".bin"));
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (path == null) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("Could not delete spill directory " + path + ": " + e.getMessage());
+        }
+        path = null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.fr.emse.group4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Product totals spilled to disk, one record per product: the name (int byte length, then UTF-8
+// bytes), the sequence number of its first appearance, then quantity, sold and profit (longs).
+final class SpillFile implements Closeable {
+
+    static final int PARTITIONS = 16;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private DataOutputStream out;
+    private long records;
+
+    SpillFile(Path path) throws IOException {
+        this.path = path;
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE));
+    }
+
+    void write(byte[] name, int nameLength, long firstSeen, long quantity, long soldCents, long profitCents) throws IOException {
+        out.writeInt(nameLength);
+        out.write(name, 0, nameLength);
+        out.writeLong(firstSeen);
+        out.writeLong(quantity);
+        out.writeLong(soldCents);
+        out.writeLong(profitCents);
+        records++;
+    }
+
+    long records() {
+        return records;
+    }
+
+    // Closes the file for writing; it can then be read any number of times
+    @Override
+    public void close() throws IOException {
+        if (out != null) {
+            out.close();
+            out = null;
+        }
+    }
+
+    Reader read() throws IOException {
+        close();
+        return new Reader(new DataInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE)));
+    }
+
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    // Partition of a name, with a different spread for every seed
+    static int partitionOf(byte[] name, int length, int seed) {
+        int h = seed * 0x9E3779B9;
+        for (int i = 0; i < length; i++) {
+            h = 31 * h + name[i];
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return (h & Integer.MAX_VALUE) % PARTITIONS;
+    }
+
+    // Reads the records one at a time into its fields
+    static final class Reader implements Closeable {
+
+        private final DataInputStream in;
+        byte[] name = new byte[256];
+        int nameLength;
+        long firstSeen;
+        long quantity;
+        long soldCents;
+        long profitCents;
+
+        private Reader(DataInputStream in) {
+            this.in = in;
+        }
+
+        boolean next() throws IOException {
+            try {
+                nameLength = in.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            if (nameLength > name.length) {
+                name = Arrays.copyOf(name, Math.max(nameLength, name.length * 2));
+            }
+            in.readFully(name, 0, nameLength);
+            firstSeen = in.readLong();
+            quantity = in.readLong();
+            soldCents = in.readLong();
+            profitCents = in.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
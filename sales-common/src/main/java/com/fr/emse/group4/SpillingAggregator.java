@@ -0,0 +1,85 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// Aggregates the rows of a file, or of one range of it, holding at most `budget` distinct products
+// in memory. When the budget is reached, the products gathered so far are appended to
+// SpillFile.PARTITIONS spill files chosen by a hash of the name and then cleared; BoundedAggregate
+// merges the spills at the end. Stores are few per file and always stay in memory.
+//
+// Every spilled product carries the sequence number of its first appearance, counted from
+// sequenceBase, so the merge can restore the order in which the in-memory path lists products.
+final class SpillingAggregator implements SalesFileParser.RowHandler {
+
+    // Rough heap cost of a product: its dictionary entry, String and name bytes, the three totals,
+    // and the slack left by growing the arrays by doubling
+    static final int BYTES_PER_PRODUCT = 200;
+
+    final SalesAggregate aggregate = new SalesAggregate();
+    private final int budget;
+    private final long sequenceBase;
+    private final SpillDirectory directory;
+    private SpillFile[] partitions;
+    private long spilledSequence;
+
+    SpillingAggregator(int budget, long sequenceBase, SpillDirectory directory) {
+        this.budget = Math.max(1, budget);
+        this.sequenceBase = sequenceBase;
+        this.directory = directory;
+    }
+
+    // Products that fit in the given number of bytes, at least one
+    static int budgetFor(long memoryBytes) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBytes / BYTES_PER_PRODUCT));
+    }
+
+    @Override
+    public void onRow(int storeId, int productId, int quantity, long soldCents, long profitCents) {
+        aggregate.addRow(storeId, productId, quantity, soldCents, profitCents);
+        if (productId + 1 >= budget) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not spill products to disk", e);
+            }
+        }
+    }
+
+    boolean spilled() {
+        return partitions != null;
+    }
+
+    // Spill file of each partition, null if nothing was spilled
+    SpillFile[] partitions() {
+        return partitions;
+    }
+
+    // Spills what is still in memory and closes the spill files. Once one range of a file has
+    // spilled, every range is finished this way, so all the products are in the partitions.
+    void finish() throws IOException {
+        spill();
+        for (SpillFile partition : partitions) {
+            partition.close();
+        }
+    }
+
+    private void spill() throws IOException {
+        if (partitions == null) {
+            partitions = new SpillFile[SpillFile.PARTITIONS];
+            for (int i = 0; i < partitions.length; i++) {
+                partitions[i] = directory.newFile();
+            }
+        }
+        int count = aggregate.productCount();
+        for (int product = 0; product < count; product++) {
+            byte[] name = aggregate.productName(product).getBytes(StandardCharsets.UTF_8);
+            partitions[SpillFile.partitionOf(name, name.length, 0)].write(name, name.length, sequenceBase + spilledSequence + product,
+                    aggregate.productQuantity(product), aggregate.productSold(product), aggregate.productProfit(product));
+        }
+        spilledSequence += count;
+        aggregate.clearProducts();
+        Metrics.increment("spill.products", count);
+    }
+}
@@ -0,0 +1,38 @@
+package com.fr.emse.group4;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// One stage of one file in a flight recording, e.g. with -XX:StartFlightRecording. Without a
+// recording, begin and commit cost next to nothing.
+@Name("com.fr.emse.group4.Stage")
+@Label("Pipeline Stage")
+@Category("Sales Pipeline")
+@Description("A stage of processing a sales file or summary")
+@StackTrace(false)
+final class StageEvent extends Event {
+
+    @Label("Stage")
+    String stage;
+
+    @Label("File")
+    String file;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("I/O Wait")
+    @Description("Time spent blocked reading the input, recorded separately as the download stage")
+    @Timespan
+    long ioWait;
+}
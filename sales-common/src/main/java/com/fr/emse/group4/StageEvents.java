@@ -0,0 +1,28 @@
+package com.fr.emse.group4;
+
+// Creates and commits StageEvents. Only used once Metrics has checked that the JVM has the JFR
+// API (OpenJDK 8u262 and later), so older runtimes never load StageEvent.
+final class StageEvents {
+
+    private StageEvents() {
+    }
+
+    static Object begin() {
+        StageEvent event = new StageEvent();
+        event.begin();
+        return event;
+    }
+
+    static void commit(Object begun, String stage, String file, long bytes, long rows, long ioWaitNanos) {
+        StageEvent event = (StageEvent) begun;
+        event.end();
+        if (event.shouldCommit()) {
+            event.stage = stage;
+            event.file = file;
+            event.bytes = bytes;
+            event.rows = rows;
+            event.ioWait = ioWaitNanos;
+            event.commit();
+        }
+    }
+}
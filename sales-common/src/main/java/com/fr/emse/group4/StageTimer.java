@@ -0,0 +1,60 @@
+package com.fr.emse.group4;
+
+// Times one stage of one file, from Metrics.start until close. On close the latency goes to the
+// registry as the stage's timer, the bytes and rows to "<stage>.bytes" and "<stage>.rows", and a
+// StageEvent is committed to JFR. Time spent blocked on I/O inside the stage can be reported with
+// ioWait: it is then recorded as its own stage and left out of this one.
+// A timer is usually opened in a try-with-resources statement that never names it, which javac's
+// "try" lint reports, so the methods doing that suppress it.
+final class StageTimer implements AutoCloseable {
+
+    private final String stage;
+    private final String file;
+    private final long start = System.nanoTime();
+    private final Object event;
+    private long bytes;
+    private long rows;
+    private String ioStage;
+    private long ioWaitNanos;
+
+    StageTimer(String stage, String file, boolean jfr) {
+        this.stage = stage;
+        this.file = file;
+        this.event = jfr ? StageEvents.begin() : null;
+    }
+
+    StageTimer bytes(long bytes) {
+        this.bytes += bytes;
+        return this;
+    }
+
+    StageTimer rows(long rows) {
+        this.rows += rows;
+        return this;
+    }
+
+    StageTimer ioWait(String ioStage, long nanos) {
+        this.ioStage = ioStage;
+        this.ioWaitNanos += nanos;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        long nanos = System.nanoTime() - start;
+        MetricsRegistry registry = Metrics.registry();
+        registry.recordLatency(stage, Math.max(0, nanos - ioWaitNanos));
+        if (ioStage != null) {
+            registry.recordLatency(ioStage, ioWaitNanos);
+        }
+        if (bytes > 0) {
+            registry.increment(stage + ".bytes", bytes);
+        }
+        if (rows > 0) {
+            registry.increment(stage + ".rows", rows);
+        }
+        if (event != null) {
+            StageEvents.commit(event, stage, file, bytes, rows, ioWaitNanos);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.fr.emse.group4;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+// An object opened for reading, with the size, Content-Encoding and ETag stored along with it.
+// Objects from ObjectStore.head have no content.
+class StoredObject implements Closeable {
+
+    final long size;
+    // Null if the object was stored without one
+    final String contentEncoding;
+    final String eTag;
+    // Null for objects from ObjectStore.head
+    private final InputStream content;
+
+    StoredObject(long size, String contentEncoding, String eTag, InputStream content) {
+        this.size = size;
+        this.contentEncoding = contentEncoding;
+        this.eTag = eTag;
+        this.content = content;
+    }
+
+    InputStream content() {
+        return content;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (content != null) {
+            content.close();
+        }
+    }
+}
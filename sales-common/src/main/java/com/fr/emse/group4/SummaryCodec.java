@@ -0,0 +1,142 @@
+package com.fr.emse.group4;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Binary summary written next to (or instead of) the CSV one:
+//   magic "SSUM", version byte, store count, product count (ints)
+//   names: store names then product names, each an int byte length followed by UTF-8 bytes
+//   columns: store profit, then product quantity, sold and profit, one long per row (cents for money)
+// Readers reject unknown versions, so the layout can change by bumping VERSION.
+final class SummaryCodec {
+
+    static final String EXTENSION = ".bin";
+
+    private static final int MAGIC = 0x5353554D;
+    private static final int VERSION = 1;
+    private static final int MAX_NAME_LENGTH = 64 * 1024;
+
+    private SummaryCodec() {
+    }
+
+    // Products too many to hold in one aggregate, handed over in chunks of consecutive products
+    interface Chunks {
+        void forEach(ChunkConsumer consumer) throws IOException;
+    }
+
+    interface ChunkConsumer {
+        void accept(SalesAggregate chunk) throws IOException;
+    }
+
+    static void write(SalesAggregate aggregate, OutputStream out) throws IOException {
+        write(aggregate, aggregate.productCount(), consumer -> consumer.accept(aggregate), out);
+    }
+
+    // Writes the stores of the first aggregate and the products of the chunks. The product columns
+    // take one pass over the chunks each, so every pass must give the products in the same order.
+    static void write(SalesAggregate stores, int productCount, Chunks products, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        int storeCount = stores.storeCount();
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeInt(storeCount);
+        data.writeInt(productCount);
+        for (int store = 0; store < storeCount; store++) {
+            writeName(data, stores.storeName(store));
+        }
+        products.forEach(chunk -> {
+            for (int product = 0; product < chunk.productCount(); product++) {
+                writeName(data, chunk.productName(product));
+            }
+        });
+        for (int store = 0; store < storeCount; store++) {
+            data.writeLong(stores.storeProfit(store));
+        }
+        products.forEach(chunk -> {
+            for (int product = 0; product < chunk.productCount(); product++) {
+                data.writeLong(chunk.productQuantity(product));
+            }
+        });
+        products.forEach(chunk -> {
+            for (int product = 0; product < chunk.productCount(); product++) {
+                data.writeLong(chunk.productSold(product));
+            }
+        });
+        products.forEach(chunk -> {
+            for (int product = 0; product < chunk.productCount(); product++) {
+                data.writeLong(chunk.productProfit(product));
+            }
+        });
+        data.flush();
+    }
+
+    // Adds the totals of a binary summary to the given aggregate.
+    static void read(InputStream in, SalesAggregate into) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a binary summary");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary summary version " + version);
+        }
+        int storeCount = readCount(data);
+        int productCount = readCount(data);
+
+        int[] storeIds = readNames(data, storeCount, into.stores);
+        int[] productIds = readNames(data, productCount, into.products);
+
+        for (int store = 0; store < storeCount; store++) {
+            into.addStore(storeIds[store], data.readLong());
+        }
+        long[] quantity = new long[productCount];
+        long[] sold = new long[productCount];
+        for (int product = 0; product < productCount; product++) {
+            quantity[product] = data.readLong();
+        }
+        for (int product = 0; product < productCount; product++) {
+            sold[product] = data.readLong();
+        }
+        for (int product = 0; product < productCount; product++) {
+            into.addProduct(productIds[product], quantity[product], sold[product], data.readLong());
+        }
+    }
+
+    private static void writeName(DataOutputStream data, String name) throws IOException {
+        byte[] encoded = name.getBytes(StandardCharsets.UTF_8);
+        data.writeInt(encoded.length);
+        data.write(encoded);
+    }
+
+    // Looks each name up straight from its bytes, so known names do not allocate a String
+    private static int[] readNames(DataInputStream data, int count, NameDictionary dictionary) throws IOException {
+        int[] ids = new int[count];
+        byte[] name = new byte[256];
+        for (int i = 0; i < count; i++) {
+            int length = data.readInt();
+            if (length < 0 || length > MAX_NAME_LENGTH) {
+                throw new IOException("Corrupt binary summary: name length " + length);
+            }
+            if (length > name.length) {
+                name = new byte[length];
+            }
+            data.readFully(name, 0, length);
+            ids[i] = dictionary.idOf(name, 0, length);
+        }
+        return ids;
+    }
+
+    private static int readCount(DataInputStream data) throws IOException {
+        int count = data.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt binary summary: negative count " + count);
+        }
+        return count;
+    }
+}
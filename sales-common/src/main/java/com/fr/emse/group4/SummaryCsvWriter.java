@@ -0,0 +1,49 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.Writer;
+
+// Writes a summary CSV byte for byte like opencsv's CSVWriter with its defaults (every field
+// quoted, quotes doubled, "\n" line ends), so the workers do not need opencsv.
+final class SummaryCsvWriter {
+
+    private SummaryCsvWriter() {
+    }
+
+    static void write(SalesAggregate aggregate, Writer out) throws IOException {
+        writeStores(aggregate, out);
+        writeProducts(aggregate, out);
+    }
+
+    // Header and store rows
+    static void writeStores(SalesAggregate aggregate, Writer out) throws IOException {
+        writeRow(out, "Type", "Name", "Total Quantity", "Total Sold", "Total Profit");
+        for (int store = 0; store < aggregate.storeCount(); store++) {
+            writeRow(out, "Store", aggregate.storeName(store), "", "", Money.format(aggregate.storeProfit(store)));
+        }
+    }
+
+    static void writeProducts(SalesAggregate aggregate, Writer out) throws IOException {
+        for (int product = 0; product < aggregate.productCount(); product++) {
+            writeRow(out, "Product", aggregate.productName(product), String.valueOf(aggregate.productQuantity(product)),
+                    Money.format(aggregate.productSold(product)), Money.format(aggregate.productProfit(product)));
+        }
+    }
+
+    private static void writeRow(Writer out, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.write('"');
+            String field = fields[i];
+            if (field.indexOf('"') < 0) {
+                out.write(field);
+            } else {
+                out.write(field.replace("\"", "\"\""));
+            }
+            out.write('"');
+        }
+        out.write('\n');
+    }
+}
@@ -0,0 +1,280 @@
+package com.fr.emse.group4;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Summaries of a dated sales file are stored under summaries/<date>/, next to a small _manifest
+// object listing them, one "key;size;etag" line each. The Operator finds the summaries of a date
+// with a single read of that manifest instead of listing the bucket.
+//
+// A summary covers the sales file it is named after. The summary of a batch of files instead has a
+// "#covers <key> <file>..." line naming the files in it; readers that predate these lines skip them
+// as comments. Each file is "<name>/<etag>/<size>", URL-encoded, with the ETag and size of the
+// version of the file that was counted, so that a file received again can be told from a new
+// version of it. Summaries of single files get such a line too when the version is known. No file
+// may be covered by two summaries, see ManifestWriter.
+final class SummaryManifest {
+
+    static final String ROOT = "summaries/";
+    static final String MANIFEST_NAME = "_manifest";
+
+    private static final String HEADER = "# summary manifest v1";
+    private static final String COVERS = "#covers ";
+    private static final String SUMMARY_PREFIX = "Summary-";
+    // In the names of batch summaries, <date>-batch-<hash>.csv
+    static final String BATCH_MARKER = "-batch-";
+    private static final Pattern DATED_FILE = Pattern.compile("^(\\d{2}-\\d{2}-\\d{4}|\\d{4}-\\d{2}-\\d{2})[-_.].*");
+
+    // A version of a sales file counted in a summary
+    static final class Input {
+        final String name;
+        // Null if not known, e.g. for local files or lines that predate versions
+        final String eTag;
+        final long size;
+
+        Input(String name, String eTag, long size) {
+            this.name = name;
+            this.eTag = eTag;
+            this.size = size;
+        }
+
+        // True only if both versions are known and the same
+        boolean sameVersion(Input other) {
+            return eTag != null && eTag.equals(other.eTag) && size == other.size;
+        }
+    }
+
+    static final class Entry {
+        final String key;
+        final long size;
+        final String eTag;
+        // The sales files this summary was made from, several for a batch; empty when they are not
+        // known, and the summary counts the file it is named after
+        final List<Input> files;
+
+        Entry(String key, long size, String eTag) {
+            this(key, size, eTag, Collections.emptyList());
+        }
+
+        Entry(String key, long size, String eTag, List<Input> files) {
+            this.key = key;
+            this.size = size;
+            this.eTag = eTag;
+            this.files = files;
+        }
+
+        Entry covering(List<Input> files) {
+            return new Entry(key, size, eTag, files);
+        }
+
+        // Name of the summary, shared by its CSV and binary forms
+        String summaryName() {
+            String name = key.substring(key.lastIndexOf('/') + 1);
+            if (name.endsWith(SalesFileReader.GZIP_SUFFIX)) {
+                name = name.substring(0, name.length() - SalesFileReader.GZIP_SUFFIX.length());
+            }
+            if (name.endsWith(SummaryCodec.EXTENSION)) {
+                name = name.substring(0, name.length() - SummaryCodec.EXTENSION.length());
+            }
+            return name.startsWith(SUMMARY_PREFIX) ? name.substring(SUMMARY_PREFIX.length()) : name;
+        }
+
+        // The sales files counted in this summary
+        List<Input> covered() {
+            return files.isEmpty() ? Collections.singletonList(new Input(summaryName(), null, -1)) : files;
+        }
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    // Date a sales file belongs to, taken from the start of its name, or null if there is none
+    static String dateOf(String fileName) {
+        Matcher matcher = DATED_FILE.matcher(fileName);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    static String datePrefix(String date) {
+        return ROOT + date + "/";
+    }
+
+    static String manifestKey(String date) {
+        return datePrefix(date) + MANIFEST_NAME;
+    }
+
+    // Undated files keep the original flat Summary-<file> key
+    static String summaryKey(String fileName) {
+        String date = dateOf(fileName);
+        return date == null ? SUMMARY_PREFIX + fileName : datePrefix(date) + SUMMARY_PREFIX + fileName;
+    }
+
+    static boolean isBatch(String summaryName) {
+        String date = dateOf(summaryName);
+        return date != null && summaryName.startsWith(BATCH_MARKER, date.length());
+    }
+
+    // Manifests and other bookkeeping objects under a date prefix start with '_'
+    static boolean isMetadata(String key) {
+        return key.startsWith("_", key.lastIndexOf('/') + 1);
+    }
+
+    static SummaryManifest read(InputStream in) throws IOException {
+        SummaryManifest manifest = new SummaryManifest();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Map<String, List<Input>> covers = new HashMap<>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(COVERS)) {
+                String[] names = line.substring(COVERS.length()).split(" ");
+                List<Input> files = new ArrayList<>(names.length - 1);
+                for (int i = 1; i < names.length; i++) {
+                    files.add(decodeInput(names[i], line));
+                }
+                covers.put(decode(names[0]), files);
+                continue;
+            }
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            // Keys may contain ';', so the two other fields are taken from the end
+            int eTagStart = line.lastIndexOf(';');
+            int sizeStart = eTagStart > 0 ? line.lastIndexOf(';', eTagStart - 1) : -1;
+            if (sizeStart <= 0) {
+                throw new IOException("Corrupt manifest line: " + line);
+            }
+            try {
+                manifest.put(new Entry(line.substring(0, sizeStart),
+                        Long.parseLong(line.substring(sizeStart + 1, eTagStart)), line.substring(eTagStart + 1)));
+            } catch (NumberFormatException e) {
+                throw new IOException("Corrupt manifest line: " + line, e);
+            }
+        }
+        covers.forEach((key, files) -> {
+            Entry entry = manifest.entries.get(key);
+            if (entry != null) {
+                manifest.put(entry.covering(files));
+            }
+        });
+        return manifest;
+    }
+
+    void put(Entry entry) {
+        entries.put(entry.key, entry);
+    }
+
+    // True if every given entry is listed with the same ETag
+    boolean containsAll(List<Entry> expected) {
+        for (Entry entry : expected) {
+            Entry listed = entries.get(entry.key);
+            if (listed == null || !listed.eTag.equals(entry.eTag)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The files counted in the given summaries that a summary of another name already covers in the
+    // same version, i.e. that were received again, each with the key of that summary
+    Map<String, String> coveredElsewhere(List<Entry> summaries) {
+        return countedElsewhere(summaries, true);
+    }
+
+    // The files counted in the given summaries that a summary of another name covers in another or
+    // an unknown version, each with the key of that summary. Recording them would count two
+    // versions of the file.
+    Map<String, String> changedElsewhere(List<Entry> summaries) {
+        return countedElsewhere(summaries, false);
+    }
+
+    private Map<String, String> countedElsewhere(List<Entry> summaries, boolean sameVersion) {
+        Set<String> names = new HashSet<>();
+        for (Entry summary : summaries) {
+            names.add(summary.summaryName());
+        }
+        Map<String, Entry> coveredBy = new HashMap<>();
+        Map<String, Input> versions = new HashMap<>();
+        for (Entry entry : entries.values()) {
+            if (!names.contains(entry.summaryName())) {
+                for (Input file : entry.covered()) {
+                    coveredBy.put(file.name, entry);
+                    versions.put(file.name, file);
+                }
+            }
+        }
+        Map<String, String> counted = new LinkedHashMap<>();
+        for (Entry summary : summaries) {
+            for (Input file : summary.covered()) {
+                Entry entry = coveredBy.get(file.name);
+                if (entry != null && file.sameVersion(versions.get(file.name)) == sameVersion) {
+                    counted.put(file.name, entry.key);
+                }
+            }
+        }
+        return counted;
+    }
+
+    // Null if the key is not listed
+    Entry get(String key) {
+        return entries.get(key);
+    }
+
+    List<Entry> entries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    byte[] toBytes() {
+        StringBuilder sb = new StringBuilder(HEADER).append('\n');
+        for (Entry entry : entries.values()) {
+            sb.append(entry.key).append(';').append(entry.size).append(';').append(entry.eTag).append('\n');
+            if (!entry.files.isEmpty()) {
+                sb.append(COVERS).append(encode(entry.key));
+                for (Input file : entry.files) {
+                    sb.append(' ').append(encode(file.name));
+                    if (file.eTag != null) {
+                        sb.append('/').append(encode(file.eTag)).append('/').append(file.size);
+                    }
+                }
+                sb.append('\n');
+            }
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String encode(String name) {
+        return URLEncoder.encode(name, StandardCharsets.UTF_8);
+    }
+
+    private static String decode(String name) {
+        return URLDecoder.decode(name, StandardCharsets.UTF_8);
+    }
+
+    // "<name>" or "<name>/<etag>/<size>"; encoded names and ETags have no '/'
+    private static Input decodeInput(String token, String line) throws IOException {
+        String[] parts = token.split("/");
+        if (parts.length == 1) {
+            return new Input(decode(parts[0]), null, -1);
+        }
+        try {
+            if (parts.length == 3) {
+                return new Input(decode(parts[0]), decode(parts[1]), Long.parseLong(parts[2]));
+            }
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt manifest line: " + line, e);
+        }
+        throw new IOException("Corrupt manifest line: " + line);
+    }
+}
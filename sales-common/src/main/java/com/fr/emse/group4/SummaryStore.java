@@ -0,0 +1,55 @@
+package com.fr.emse.group4;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.amazonaws.services.s3.AmazonS3;
+
+// Where the Consolidator reads worker summaries from: the output bucket on an ObjectStore, so the
+// same code reads S3, a local directory holding a copy of the bucket (to run and time
+// consolidation offline) or the in-memory buckets of the load test.
+final class SummaryStore {
+
+    final ObjectStore objects;
+    final String bucketName;
+
+    SummaryStore(ObjectStore objects, String bucketName) {
+        this.objects = objects;
+        this.bucketName = bucketName;
+    }
+
+    // The Consolidator only reads and writes whole small objects, so it needs few upload buffers
+    static SummaryStore s3(AmazonS3 s3, String bucketName) {
+        return new SummaryStore(new S3ObjectStore(s3, new BufferPool(64 * 1024, 1)), bucketName);
+    }
+
+    // The directory is the bucket, as in a FileObjectStore rooted at its parent
+    static SummaryStore local(Path directory) {
+        Path bucket = directory.toAbsolutePath().normalize();
+        if (bucket.getParent() == null) {
+            throw new IllegalArgumentException("Not a bucket directory: " + directory);
+        }
+        return new SummaryStore(new FileObjectStore(bucket.getParent()), bucket.getFileName().toString());
+    }
+
+    // All objects under the prefix, following every page of the listing
+    List<SummaryManifest.Entry> list(String prefix) throws IOException {
+        return objects.list(bucketName, prefix);
+    }
+
+    // Throws FileNotFoundException if there is no object with that key
+    InputStream open(String key) throws IOException {
+        InputStream content = objects.open(bucketName, key);
+        if (content == null) {
+            throw new FileNotFoundException(key);
+        }
+        return content;
+    }
+
+    void put(String key, byte[] content) throws IOException {
+        objects.put(bucketName, key, content, null, null);
+    }
+}
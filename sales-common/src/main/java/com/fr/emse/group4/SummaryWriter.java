@@ -0,0 +1,145 @@
+package com.fr.emse.group4;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+// Writes the summaries of a file, or of a batch of files, to the output bucket in the formats
+// chosen by summary.format and records them in the manifest of their date. Used by both workers and
+// by Backfill, so every summary has the same keys and bytes whichever wrote it.
+final class SummaryWriter {
+
+    static final String OUTPUT_BUCKET = "sales-data-output-bucket";
+
+    // csv, binary or both
+    private static final String SUMMARY_FORMAT = System.getProperty("summary.format", "both");
+    // summary.compression=gzip stores summaries gzip-compressed, with a .gz suffix
+    private static final boolean COMPRESS_SUMMARIES = "gzip".equals(System.getProperty("summary.compression"));
+    private static final String SUMMARY_SUFFIX = COMPRESS_SUMMARIES ? SalesFileReader.GZIP_SUFFIX : "";
+
+    private final ObjectStore store;
+
+    SummaryWriter(ObjectStore store) {
+        this.store = store;
+    }
+
+    // Stores the summaries of a file read by SalesFileReader, named after the uncompressed file, then
+    // deletes its checkpoint, which a redelivery would not need any more. A file that a batch summary
+    // already counts in the same version keeps only that one; a new version of it fails with a
+    // ManifestWriter.ChangedFilesException.
+    void storeFile(String inputBucketName, String fileName, BoundedAggregate aggregate) throws IOException {
+        String summaryName = SalesFileReader.uncompressedName(fileName);
+        List<SummaryManifest.Input> inputs = aggregate.inputETag() == null ? Collections.emptyList()
+                : Collections.singletonList(new SummaryManifest.Input(summaryName, aggregate.inputETag(), aggregate.inputBytes()));
+        Map<String, String> covered = store(summaryName, inputs, aggregate.stores(), aggregate.productCount(), aggregate);
+        if (!covered.isEmpty()) {
+            System.out.println("File " + fileName + " is already counted in " + covered.values().iterator().next() + "; dropped its new summary.");
+        }
+        if (aggregate.checkpointed()) {
+            Checkpoint.delete(store, inputBucketName, fileName);
+        }
+    }
+
+    // Writes the summaries named after summaryName, of the given versions of files, and records them
+    // in the manifest of its date. If other summaries already count some of the files in the same
+    // version, the new summaries are deleted instead and those files are returned, each with the key
+    // of a summary counting it. Throws if the manifest could not be updated, deleting the new
+    // summaries when they count files that other summaries cover in another version; failing the
+    // file leaves its message to be received again, which records the summaries again.
+    @SuppressWarnings("try")
+    Map<String, String> store(String summaryName, List<SummaryManifest.Input> files, SalesAggregate stores, int productCount,
+            SummaryCodec.Chunks products) throws IOException {
+        List<SummaryManifest.Entry> summaries = write(summaryName, stores, productCount, products);
+        String date = SummaryManifest.dateOf(summaryName);
+        if (date == null) {
+            return Collections.emptyMap();
+        }
+        if (!files.isEmpty()) {
+            summaries.replaceAll(summary -> summary.covering(files));
+        }
+        Map<String, String> covered;
+        try (StageTimer timer = Metrics.start("manifest", summaryName)) {
+            covered = ManifestWriter.record(store, OUTPUT_BUCKET, date, summaries);
+        } catch (ManifestWriter.ChangedFilesException e) {
+            delete(summaries);
+            throw e;
+        }
+        if (!covered.isEmpty()) {
+            delete(summaries);
+        }
+        return covered;
+    }
+
+    private void delete(List<SummaryManifest.Entry> summaries) throws IOException {
+        for (SummaryManifest.Entry summary : summaries) {
+            store.delete(OUTPUT_BUCKET, summary.key);
+        }
+    }
+
+    // Writes the summaries named after summaryName without adding them to a manifest
+    List<SummaryManifest.Entry> write(String summaryName, SalesAggregate stores, int productCount, SummaryCodec.Chunks products) throws IOException {
+        List<SummaryManifest.Entry> summaries = new ArrayList<>(2);
+        if (!"binary".equals(SUMMARY_FORMAT)) {
+            summaries.add(writeCsv(stores, products, summaryName));
+        }
+        if (!"csv".equals(SUMMARY_FORMAT)) {
+            summaries.add(writeBinary(stores, productCount, products, summaryName));
+        }
+        return summaries;
+    }
+
+    @SuppressWarnings("try")
+    private SummaryManifest.Entry writeBinary(SalesAggregate stores, int productCount, SummaryCodec.Chunks products, String summaryName) throws IOException {
+        String outputKey = SummaryManifest.summaryKey(summaryName) + SummaryCodec.EXTENSION + SUMMARY_SUFFIX;
+        ObjectUpload upload = upload(outputKey);
+        try {
+            OutputStream out = summaryStream(upload, outputKey);
+            try (StageTimer timer = Metrics.start("serialize", outputKey)) {
+                SummaryCodec.write(stores, productCount, products, out);
+            }
+            out.close();
+        } catch (IOException | RuntimeException e) {
+            upload.abort();
+            throw e;
+        }
+        return new SummaryManifest.Entry(outputKey, upload.size(), upload.eTag());
+    }
+
+    @SuppressWarnings("try")
+    private SummaryManifest.Entry writeCsv(SalesAggregate stores, SummaryCodec.Chunks products, String summaryName) throws IOException {
+        String outputKey = SummaryManifest.summaryKey(summaryName) + SUMMARY_SUFFIX;
+        ObjectUpload upload = upload(outputKey);
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(summaryStream(upload, outputKey), StandardCharsets.UTF_8), 64 * 1024);
+            try (StageTimer timer = Metrics.start("serialize", outputKey)) {
+                SummaryCsvWriter.writeStores(stores, writer);
+                // Products come in chunks when they were spilled to disk
+                products.forEach(chunk -> SummaryCsvWriter.writeProducts(chunk, writer));
+            }
+            writer.close();
+        } catch (IOException | RuntimeException e) {
+            upload.abort();
+            throw e;
+        }
+        return new SummaryManifest.Entry(outputKey, upload.size(), upload.eTag());
+    }
+
+    // The summary streams are closed, which completes the upload, only once the summary is written
+    // in full. After a failure the upload is aborted instead, so a truncated summary is never stored.
+    private ObjectUpload upload(String outputKey) throws IOException {
+        return store.upload(OUTPUT_BUCKET, outputKey, COMPRESS_SUMMARIES ? "gzip" : null);
+    }
+
+    private static OutputStream summaryStream(ObjectUpload upload, String outputKey) throws IOException {
+        OutputStream out = new TimedUploadStream(upload, outputKey);
+        return COMPRESS_SUMMARIES ? new GZIPOutputStream(out, 64 * 1024) : out;
+    }
+}
@@ -0,0 +1,30 @@
+package com.fr.emse.group4;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+// Generates sales files in the client's format (date;store;product;quantity;unit price;unit cost;
+// unit profit) for priming and for the cold-start harness. The same seed gives the same file.
+final class SyntheticSales {
+
+    private SyntheticSales() {
+    }
+
+    static byte[] generate(String date, int rows, int stores, int products, long seed) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(64 + rows * 48);
+        sb.append("Date;Store;Product;Quantity;Unit Price;Unit Cost;Unit Profit\n");
+        for (int i = 0; i < rows; i++) {
+            int priceCents = 100 + random.nextInt(9900);
+            int costCents = priceCents * (50 + random.nextInt(40)) / 100;
+            sb.append(date).append(';')
+                    .append("Store-").append(random.nextInt(stores)).append(';')
+                    .append("Product-").append(random.nextInt(products)).append(';')
+                    .append(1 + random.nextInt(20)).append(';')
+                    .append(Money.format(priceCents)).append(';')
+                    .append(Money.format(costCents)).append(';')
+                    .append(Money.format(priceCents - costCents)).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
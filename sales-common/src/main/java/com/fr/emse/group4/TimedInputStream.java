@@ -0,0 +1,47 @@
+package com.fr.emse.group4;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Counts the bytes read through it and the time spent blocked in the underlying stream, which for
+// an S3 object is the time spent waiting for the download.
+final class TimedInputStream extends FilterInputStream {
+
+    private long bytes;
+    private long nanos;
+
+    TimedInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int b = in.read();
+        nanos += System.nanoTime() - start;
+        if (b >= 0) {
+            bytes++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        int n = in.read(b, off, len);
+        nanos += System.nanoTime() - start;
+        if (n > 0) {
+            bytes += n;
+        }
+        return n;
+    }
+
+    long bytes() {
+        return bytes;
+    }
+
+    long nanos() {
+        return nanos;
+    }
+}
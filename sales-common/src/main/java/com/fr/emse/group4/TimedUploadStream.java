@@ -0,0 +1,40 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Passes writes through to an upload and times its close, which sends what is still buffered and
+// completes the upload, as the upload stage. Writing the summary into it is the serialize stage.
+final class TimedUploadStream extends OutputStream {
+
+    private final ObjectUpload upload;
+    private final String key;
+
+    TimedUploadStream(ObjectUpload upload, String key) {
+        this.upload = upload;
+        this.key = key;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        upload.write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        upload.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        upload.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (StageTimer timer = Metrics.start("upload", key)) {
+            upload.close();
+            timer.bytes(upload.size());
+        }
+    }
+}
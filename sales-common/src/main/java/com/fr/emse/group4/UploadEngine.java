@@ -0,0 +1,145 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+// Uploads sales files to the input bucket on a fixed number of threads sharing one store, and
+// queues a notification for each file uploaded. Files recorded as unchanged in the upload manifest
+// are skipped. An uploaded file is only recorded once its notification is sent, so a file the
+// workers never heard of is uploaded and notified again by the next run.
+final class UploadEngine implements AutoCloseable {
+
+    static final String GZIP_SUFFIX = ".gz";
+
+    private final UploadStore store;
+    private final String bucketName;
+    private final NotificationBatcher notifications;
+    private final UploadManifest manifest;
+    private final boolean compress;
+    private final ExecutorService pool;
+    private final long start = System.nanoTime();
+    private final AtomicInteger uploaded = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    // With compress set, files are stored gzip-compressed under their name plus ".gz"
+    UploadEngine(UploadStore store, String bucketName, int concurrency, NotificationBatcher notifications, UploadManifest manifest,
+                 boolean compress) {
+        this.store = store;
+        this.bucketName = bucketName;
+        this.notifications = notifications;
+        this.manifest = manifest;
+        this.compress = compress;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(concurrency, runnable -> new Thread(runnable, "uploader-" + threadCount.incrementAndGet()));
+    }
+
+    void createBucketIfMissing() throws IOException {
+        store.createBucketIfMissing();
+    }
+
+    void submit(Path file, String key) {
+        pool.execute(() -> {
+            try {
+                UploadManifest.Entry current = upload(file, key);
+                if (current != null) {
+                    uploaded.incrementAndGet();
+                    String objectKey = compress ? key + GZIP_SUFFIX : key;
+                    notifications.add(bucketName + ";" + objectKey, () -> manifest.put(key, current));
+                } else {
+                    skipped.incrementAndGet();
+                }
+            } catch (IOException | RuntimeException e) {
+                failed.incrementAndGet();
+                System.err.println("Error occurred while uploading " + file + ": " + e.getMessage());
+            }
+        });
+    }
+
+    // Returns the manifest entry of the file uploaded, to record once the workers are notified, or
+    // null if it was skipped
+    private UploadManifest.Entry upload(Path file, String key) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            System.out.println("File not found: " + file);
+            return null;
+        }
+        long size = Files.size(file);
+        long modifiedMillis = Files.getLastModifiedTime(file).toMillis();
+        UploadManifest.Entry previous = manifest.get(key);
+        if (previous != null && previous.size == size && previous.modifiedMillis == modifiedMillis) {
+            System.out.println("The file " + key + " is unchanged since its last upload. Skipping upload.");
+            if (previous.crc == UploadManifest.UNKNOWN_CRC) {
+                manifest.put(key, new UploadManifest.Entry(size, modifiedMillis, UploadManifest.checksum(file)));
+            }
+            return null;
+        }
+
+        UploadManifest.Entry current = new UploadManifest.Entry(size, modifiedMillis, UploadManifest.checksum(file));
+        if (previous != null && previous.size == size && previous.crc == current.crc) {
+            System.out.println("The content of " + key + " is unchanged since its last upload. Skipping upload.");
+            manifest.put(key, current);
+            return null;
+        }
+        String objectKey = compress ? key + GZIP_SUFFIX : key;
+        // Without a manifest, files already waiting in the bucket are recorded and skipped
+        if (previous == null && !manifest.existed() && store.exists(objectKey)) {
+            System.out.println("The file " + objectKey + " already exists in bucket " + bucketName + ". Skipping upload.");
+            manifest.put(key, current);
+            return null;
+        }
+
+        Path body = compress ? compress(file) : file;
+        try {
+            store.put(objectKey, body, compress ? "gzip" : null);
+        } finally {
+            if (compress) {
+                Files.deleteIfExists(body);
+            }
+        }
+        System.out.println("The file " + key + " is uploaded to bucket " + bucketName + (compress ? " as " + objectKey : ""));
+        return current;
+    }
+
+    // Compresses into a temporary file, so the body is still streamed from disk with a known length
+    static Path compress(Path file) throws IOException {
+        Path compressed = Files.createTempFile("upload-", GZIP_SUFFIX);
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed), 64 * 1024)) {
+            Files.copy(file, out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(compressed);
+            throw e;
+        }
+        return compressed;
+    }
+
+    // Waits for every submitted file, then sends the remaining notifications and saves the manifest
+    @Override
+    public void close() {
+        pool.shutdown();
+        try {
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // Stop waiting, but still send the notifications and save the manifest of the files done
+            Thread.currentThread().interrupt();
+        }
+        notifications.close();
+        try {
+            manifest.save();
+        } catch (IOException e) {
+            System.err.println("Error occurred while saving the upload manifest: " + e.getMessage());
+        }
+        System.out.println("Uploaded " + uploaded.get() + " files, skipped " + skipped.get() + ", failed " + failed.get()
+                + " in " + TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start) + " s.");
+        if (notifications.failedCount() > 0) {
+            System.err.println(notifications.failedCount() + " files were uploaded but their workers could not be notified;"
+                    + " they are not recorded in the upload manifest, so the next run uploads them again.");
+        }
+    }
+}
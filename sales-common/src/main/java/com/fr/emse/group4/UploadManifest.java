@@ -0,0 +1,132 @@
+package com.fr.emse.group4;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32C;
+
+// Local record of the files already uploaded: a "#upload-manifest <version>" line, then one
+// "name;size;modified;crc32c" line per file name. A file whose size and modification time match
+// its entry is skipped without reading it or asking the bucket; if only the modification time
+// changed, the checksum decides. Manifests without the version line hold CRC32 checksums, which
+// are not kept: those files are checksummed again the next time they are seen.
+final class UploadManifest {
+
+    static final int VERSION = 2;
+    // The checksum of an entry read from an earlier version
+    static final long UNKNOWN_CRC = -1;
+
+    private static final String HEADER = "#upload-manifest ";
+
+    static final class Entry {
+        final long size;
+        final long modifiedMillis;
+        final long crc;
+
+        Entry(long size, long modifiedMillis, long crc) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+            this.crc = crc;
+        }
+    }
+
+    private final Path path;
+    private final boolean existed;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private UploadManifest(Path path, boolean existed) {
+        this.path = path;
+        this.existed = existed;
+    }
+
+    static UploadManifest load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new UploadManifest(path, false);
+        }
+        UploadManifest manifest = new UploadManifest(path, true);
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            int version = 1;
+            if (line != null && line.startsWith(HEADER)) {
+                try {
+                    version = Integer.parseInt(line.substring(HEADER.length()));
+                } catch (NumberFormatException e) {
+                    version = -1;
+                }
+                if (version != VERSION) {
+                    // Files are checked against the bucket, as on a first run
+                    System.err.println("Ignoring the upload manifest " + path + " of unknown version: " + line);
+                    return new UploadManifest(path, false);
+                }
+                line = reader.readLine();
+            }
+            for (; line != null; line = reader.readLine()) {
+                // File names may contain ';', so the other fields are taken from the end
+                int crcStart = line.lastIndexOf(';');
+                int modifiedStart = crcStart > 0 ? line.lastIndexOf(';', crcStart - 1) : -1;
+                int sizeStart = modifiedStart > 0 ? line.lastIndexOf(';', modifiedStart - 1) : -1;
+                if (sizeStart <= 0) {
+                    System.err.println("Ignoring invalid upload manifest line: " + line);
+                    continue;
+                }
+                try {
+                    manifest.entries.put(line.substring(0, sizeStart), new Entry(
+                            Long.parseLong(line.substring(sizeStart + 1, modifiedStart)),
+                            Long.parseLong(line.substring(modifiedStart + 1, crcStart)),
+                            version == VERSION ? Long.parseLong(line.substring(crcStart + 1), 16) : UNKNOWN_CRC));
+                } catch (NumberFormatException e) {
+                    System.err.println("Ignoring invalid upload manifest line: " + line);
+                }
+            }
+        }
+        return manifest;
+    }
+
+    // False when there was no manifest yet, in which case the bucket has to be consulted
+    boolean existed() {
+        return existed;
+    }
+
+    Entry get(String name) {
+        return entries.get(name);
+    }
+
+    void put(String name, Entry entry) {
+        entries.put(name, entry);
+    }
+
+    void save() throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write(HEADER + VERSION);
+            writer.newLine();
+            for (Map.Entry<String, Entry> file : new TreeMap<>(entries).entrySet()) {
+                Entry entry = file.getValue();
+                writer.write(file.getKey() + ";" + entry.size + ";" + entry.modifiedMillis + ";" + Long.toHexString(entry.crc));
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static long checksum(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        return crc.getValue();
+    }
+}
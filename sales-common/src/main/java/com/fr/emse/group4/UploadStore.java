@@ -0,0 +1,16 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+// The bucket the client uploads sales files to: the S3 input bucket, or an in-process stand-in
+// when the pipeline is load-tested locally.
+interface UploadStore {
+
+    void createBucketIfMissing() throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    // Stores the file under the key; the content encoding may be null
+    void put(String key, Path file, String contentEncoding) throws IOException;
+}
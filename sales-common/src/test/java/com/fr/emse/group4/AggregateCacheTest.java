@@ -0,0 +1,198 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class AggregateCacheTest {
+
+    private static final long NEVER = Long.MAX_VALUE;
+
+    // One summary per date, whose ETag can be changed to make the date's summaries change
+    private final Map<String, String> eTags = new ConcurrentHashMap<>();
+    private final AtomicInteger consolidations = new AtomicInteger();
+
+    private final AggregateCache.Source source = new AggregateCache.Source() {
+        @Override
+        public List<SummaryManifest.Entry> summaries(String date) {
+            String eTag = eTags.getOrDefault(date, "\"a\"");
+            return Collections.singletonList(new SummaryManifest.Entry(
+                    SummaryManifest.summaryKey(date + "-store1.csv"), 10, eTag, Collections.emptyList()));
+        }
+
+        @Override
+        public SalesAggregate consolidate(String date, List<SummaryManifest.Entry> summaries) throws IOException {
+            consolidations.incrementAndGet();
+            SalesAggregate totals = new SalesAggregate();
+            totals.addStore(date, 100);
+            return totals;
+        }
+    };
+
+    @Test
+    public void answersAFreshDateFromTheCache() throws IOException {
+        AggregateCache cache = new AggregateCache(source, 1 << 20, NEVER);
+        AggregateCache.Result first = cache.get("01-01-2024");
+        AggregateCache.Result second = cache.get("01-01-2024");
+
+        assertFalse(first.hit);
+        assertTrue(second.hit);
+        assertSame(first.totals, second.totals);
+        assertEquals(1, consolidations.get());
+    }
+
+    @Test
+    public void consolidatesAgainOnlyWhenTheSummariesChanged() throws IOException {
+        AggregateCache cache = new AggregateCache(source, 1 << 20, 0);
+        cache.get("01-01-2024");
+        assertTrue(cache.get("01-01-2024").hit);
+        assertEquals(1, consolidations.get());
+
+        eTags.put("01-01-2024", "\"b\"");
+        assertFalse(cache.get("01-01-2024").hit);
+        assertEquals(2, consolidations.get());
+    }
+
+    @Test
+    public void concurrentQueriesLoadADateOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AggregateCache cache = new AggregateCache(new AggregateCache.Source() {
+            @Override
+            public List<SummaryManifest.Entry> summaries(String date) throws IOException {
+                return source.summaries(date);
+            }
+
+            @Override
+            public SalesAggregate consolidate(String date, List<SummaryManifest.Entry> summaries) throws IOException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return source.consolidate(date, summaries);
+            }
+        }, 1 << 20, NEVER);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<AggregateCache.Result>> results = new ArrayList<>();
+            results.add(pool.submit(() -> cache.get("01-01-2024")));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            for (int i = 0; i < 7; i++) {
+                results.add(pool.submit(() -> cache.get("01-01-2024")));
+            }
+            assertEquals(1, cache.loadingCount());
+            release.countDown();
+
+            SalesAggregate totals = results.get(0).get().totals;
+            for (Future<AggregateCache.Result> result : results) {
+                assertSame(totals, result.get().totals);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(1, consolidations.get());
+        assertEquals(0, cache.loadingCount());
+    }
+
+    @Test
+    public void keepsNoLoadOnceItIsDone() throws IOException {
+        AggregateCache cache = new AggregateCache(source, 1 << 20, NEVER);
+        for (int day = 1; day <= 28; day++) {
+            cache.get(String.format("%02d-02-2024", day));
+        }
+        assertEquals(0, cache.loadingCount());
+    }
+
+    @Test
+    public void aFailedLoadIsTriedAgainByTheNextQuery() throws Exception {
+        AtomicInteger failures = new AtomicInteger(1);
+        AggregateCache cache = new AggregateCache(new AggregateCache.Source() {
+            @Override
+            public List<SummaryManifest.Entry> summaries(String date) throws IOException {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IOException("manifest unavailable");
+                }
+                return source.summaries(date);
+            }
+
+            @Override
+            public SalesAggregate consolidate(String date, List<SummaryManifest.Entry> summaries) throws IOException {
+                return source.consolidate(date, summaries);
+            }
+        }, 1 << 20, NEVER);
+
+        try {
+            cache.get("01-01-2024");
+            fail("Answered without the summaries of the date");
+        } catch (IOException expected) {
+            // expected
+        }
+        assertEquals(0, cache.loadingCount());
+        assertFalse(cache.get("01-01-2024").hit);
+    }
+
+    @Test
+    public void queriesWaitingOnAFailedLoadFailToo() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AggregateCache cache = new AggregateCache(new AggregateCache.Source() {
+            @Override
+            public List<SummaryManifest.Entry> summaries(String date) throws IOException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                throw new IOException("manifest unavailable");
+            }
+
+            @Override
+            public SalesAggregate consolidate(String date, List<SummaryManifest.Entry> summaries) {
+                throw new AssertionError();
+            }
+        }, 1 << 20, NEVER);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<AggregateCache.Result> loading = pool.submit(() -> cache.get("01-01-2024"));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            Future<AggregateCache.Result> waiting = pool.submit(() -> cache.get("01-01-2024"));
+            // Gives the second query the time to find the load running; if it comes too late, it
+            // loads the date itself and fails the same way
+            Thread.sleep(50);
+            release.countDown();
+            for (Future<AggregateCache.Result> result : Arrays.asList(loading, waiting)) {
+                try {
+                    result.get();
+                    fail("Answered without the summaries of the date");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IOException);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(0, cache.loadingCount());
+    }
+}
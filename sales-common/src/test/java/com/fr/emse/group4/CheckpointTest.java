@@ -0,0 +1,73 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class CheckpointTest {
+
+    private static final String KEY = "01-01-2024-store1.csv";
+    private static final long SIZE = 1000;
+    private static final String ETAG = "\"abc\"";
+
+    private final MemoryObjectStore store = new MemoryObjectStore();
+
+    @Test
+    public void resumesFromTheOffsetAndTotalsSaved() throws IOException {
+        SalesAggregate totals = new SalesAggregate();
+        totals.addStore("Lyon", 1250);
+        totals.addProduct("Pen", 3, 450, 150);
+        totals.malformedRowCount = 2;
+        Checkpoint.save(store, "input", KEY, SIZE, ETAG, 600, totals);
+
+        Checkpoint checkpoint = Checkpoint.load(store, "input", KEY, SIZE, ETAG);
+
+        assertNotNull(checkpoint);
+        assertEquals(600, checkpoint.offset);
+        assertEquals("Lyon", checkpoint.totals.storeName(0));
+        assertEquals(1250, checkpoint.totals.storeProfit(0));
+        assertEquals(450, checkpoint.totals.productSold(0));
+        assertEquals(2, checkpoint.totals.malformedRowCount);
+    }
+
+    @Test
+    public void ignoresTheCheckpointOfAnotherVersion() throws IOException {
+        Checkpoint.save(store, "input", KEY, SIZE, ETAG, 600, new SalesAggregate());
+        assertNull(Checkpoint.load(store, "input", KEY, SIZE + 1, ETAG));
+        assertNull(Checkpoint.load(store, "input", KEY, SIZE, "\"other\""));
+        assertNull(Checkpoint.load(store, "input", "01-01-2024-store2.csv", SIZE, ETAG));
+    }
+
+    @Test
+    public void deletesCheckpointsItCannotDecode() throws IOException {
+        SalesAggregate totals = new SalesAggregate();
+        totals.addProduct("Pen", 3, 450, 150);
+        Checkpoint.save(store, "input", KEY, SIZE, ETAG, 600, totals);
+        byte[] valid;
+        try (StoredObject saved = store.get(Checkpoint.BUCKET, Checkpoint.key("input", KEY))) {
+            valid = saved.content().readAllBytes();
+        }
+
+        // Magic, version, size and ETag, then the offset, the malformed count and the totals
+        int offsetAt = 4 + 1 + 8 + 2 + ETAG.length();
+        byte[] badOffset = valid.clone();
+        Arrays.fill(badOffset, offsetAt, offsetAt + 8, (byte) 0x7F);
+        byte[] corruptTotals = valid.clone();
+        Arrays.fill(corruptTotals, offsetAt + 16, offsetAt + 30, (byte) 0xFF);
+        for (byte[] content : new byte[][] {
+                new byte[0],
+                Arrays.copyOf(valid, valid.length - 3),
+                "not a checkpoint".getBytes("UTF-8"),
+                corruptTotals,
+                badOffset}) {
+            store.put(Checkpoint.BUCKET, Checkpoint.key("input", KEY), content, null, null);
+            assertNull(Checkpoint.load(store, "input", KEY, SIZE, ETAG));
+            assertNull(store.get(Checkpoint.BUCKET, Checkpoint.key("input", KEY)));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ConsolidationStateTest {
+
+    private static final String DATE = "01-01-2024";
+
+    private final MemoryObjectStore objects = new MemoryObjectStore();
+    private final SummaryStore store = new SummaryStore(objects, SummaryWriter.OUTPUT_BUCKET);
+
+    @Test
+    public void savedStateIsReadBack() throws IOException {
+        ConsolidationState state = new ConsolidationState();
+        state.totals.addStore("Lyon", 1250);
+        state.totals.addProduct("Pen", 3, 450, 150);
+        state.addAll(Arrays.asList(summary("store1", "\"a\""), summary("store2", "\"b\"")));
+        state.save(store, DATE);
+
+        ConsolidationState read = ConsolidationState.load(store, DATE);
+
+        assertNotNull(read);
+        assertEquals("Lyon", read.totals.storeName(0));
+        assertEquals(1250, read.totals.storeProfit(0));
+        assertEquals(150, read.totals.productProfit(0));
+        assertTrue(read.pending(Arrays.asList(summary("store1", "\"a\""), summary("store2", "\"b\""))).isEmpty());
+    }
+
+    @Test
+    public void onlySummariesNotIncludedArePending() throws IOException {
+        ConsolidationState state = new ConsolidationState();
+        state.addAll(Arrays.asList(summary("store1", "\"a\"")));
+
+        List<SummaryManifest.Entry> pending = state.pending(Arrays.asList(summary("store1", "\"a\""), summary("store2", "\"b\"")));
+
+        assertEquals(1, pending.size());
+        assertEquals(summary("store2", "\"b\"").key, pending.get(0).key);
+    }
+
+    @Test
+    public void summariesRewrittenOrRemovedMakeTheStateInconsistent() {
+        ConsolidationState state = new ConsolidationState();
+        state.addAll(Arrays.asList(summary("store1", "\"a\""), summary("store2", "\"b\"")));
+
+        assertTrue(state.isConsistentWith(Arrays.asList(summary("store1", "\"a\""), summary("store2", "\"b\""), summary("store3", "\"c\""))));
+        assertFalse(state.isConsistentWith(Arrays.asList(summary("store1", "\"a\""), summary("store2", "\"b2\""))));
+        assertFalse(state.isConsistentWith(Collections.singletonList(summary("store1", "\"a\""))));
+    }
+
+    @Test
+    public void aDateWithoutStateHasNone() throws IOException {
+        assertNull(ConsolidationState.load(store, DATE));
+    }
+
+    @Test
+    public void anUnreadableStateIsIgnored() throws IOException {
+        ConsolidationState state = new ConsolidationState();
+        state.totals.addProduct("Pen", 3, 450, 150);
+        state.addAll(Arrays.asList(summary("store1", "\"a\"")));
+        state.save(store, DATE);
+        byte[] saved;
+        try (StoredObject content = objects.get(SummaryWriter.OUTPUT_BUCKET, ConsolidationState.stateKey(DATE))) {
+            saved = content.content().readAllBytes();
+        }
+
+        for (byte[] content : new byte[][] {
+                Arrays.copyOf(saved, saved.length - 4),
+                "not a state".getBytes(StandardCharsets.UTF_8)}) {
+            objects.put(SummaryWriter.OUTPUT_BUCKET, ConsolidationState.stateKey(DATE), content, null, null);
+            assertNull(ConsolidationState.load(store, DATE));
+        }
+    }
+
+    private static SummaryManifest.Entry summary(String store, String eTag) {
+        return new SummaryManifest.Entry(SummaryManifest.summaryKey(DATE + "-" + store + ".csv"), 50, eTag, Collections.emptyList());
+    }
+}
@@ -0,0 +1,55 @@
+package com.fr.emse.group4;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+// Passes every call on to another store, for tests to step into some of them
+class ForwardingObjectStore implements ObjectStore {
+
+    final ObjectStore store;
+
+    ForwardingObjectStore(ObjectStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public StoredObject get(String bucketName, String key) throws IOException {
+        return store.get(bucketName, key);
+    }
+
+    @Override
+    public StoredObject head(String bucketName, String key) throws IOException {
+        return store.head(bucketName, key);
+    }
+
+    @Override
+    public InputStream openRange(String bucketName, String key, long start, long end) throws IOException {
+        return store.openRange(bucketName, key, start, end);
+    }
+
+    @Override
+    public List<SummaryManifest.Entry> list(String bucketName, String prefix) throws IOException {
+        return store.list(bucketName, prefix);
+    }
+
+    @Override
+    public String put(String bucketName, String key, byte[] content, String contentType, String contentEncoding) throws IOException {
+        return store.put(bucketName, key, content, contentType, contentEncoding);
+    }
+
+    @Override
+    public String putIfMatch(String bucketName, String key, byte[] content, String contentType, String expectedETag) throws IOException {
+        return store.putIfMatch(bucketName, key, content, contentType, expectedETag);
+    }
+
+    @Override
+    public ObjectUpload upload(String bucketName, String key, String contentEncoding) throws IOException {
+        return store.upload(bucketName, key, contentEncoding);
+    }
+
+    @Override
+    public void delete(String bucketName, String key) throws IOException {
+        store.delete(bucketName, key);
+    }
+}
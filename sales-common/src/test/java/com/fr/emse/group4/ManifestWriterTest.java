@@ -0,0 +1,265 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class ManifestWriterTest {
+
+    private static final String BUCKET = SummaryWriter.OUTPUT_BUCKET;
+    private static final String DATE = "01-01-2024";
+    private static final String BATCH = SummaryManifest.datePrefix(DATE) + "Summary-" + DATE + "-batch-0123456789abcdef.csv";
+
+    private final MemoryObjectStore store = new MemoryObjectStore();
+
+    @Test
+    public void recordsSummariesInTheManifestOfTheirDate() throws IOException {
+        assertTrue(ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(single("store1", "\"a\"", 10))).isEmpty());
+        assertTrue(ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(single("store2", "\"b\"", 20))).isEmpty());
+        assertEquals(2, manifest().entries().size());
+    }
+
+    @Test
+    public void refusesFilesABatchCountsInTheSameVersion() throws IOException {
+        recordBatch(input("store1", "\"a\"", 10), input("store2", "\"b\"", 20));
+        byte[] before = manifestBytes();
+
+        Map<String, String> covered = ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(single("store2", "\"b\"", 20)));
+
+        assertEquals(Collections.singletonMap(DATE + "-store2.csv", BATCH), covered);
+        assertEquals(new String(before, StandardCharsets.UTF_8), new String(manifestBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void failsNewVersionsOfFilesABatchCounts() throws IOException {
+        recordBatch(input("store1", "\"a\"", 10), input("store2", "\"b\"", 20));
+        byte[] before = manifestBytes();
+
+        try {
+            ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(single("store2", "\"b2\"", 20)));
+            fail("Recorded a second version of store2");
+        } catch (ManifestWriter.ChangedFilesException e) {
+            assertEquals(Collections.singletonMap(DATE + "-store2.csv", BATCH), e.files);
+        }
+        assertEquals(new String(before, StandardCharsets.UTF_8), new String(manifestBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void failsFilesCountedInAnUnknownVersion() throws IOException {
+        recordBatch(input("store1", "\"a\"", 10));
+        try {
+            ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(single("store1", null, -1)));
+            fail("Recorded a file of unknown version");
+        } catch (ManifestWriter.ChangedFilesException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void aSummaryOfTheSameNameReplacesItsEntry() throws IOException {
+        recordBatch(input("store1", "\"a\"", 10), input("store2", "\"b\"", 20));
+        // The same files batched again, one of them in a new version
+        SummaryManifest.Entry again = new SummaryManifest.Entry(BATCH, 200, "\"batch2\"",
+                Arrays.asList(input("store1", "\"a\"", 10), input("store2", "\"b2\"", 25)));
+        assertTrue(ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(again)).isEmpty());
+
+        SummaryManifest.Entry entry = manifest().get(BATCH);
+        assertEquals("\"batch2\"", entry.eTag);
+        assertEquals("\"b2\"", entry.files.get(1).eTag);
+        assertEquals(25, entry.files.get(1).size);
+    }
+
+    @Test
+    public void coversKeepTheirVersionsThroughTheManifest() throws IOException {
+        SummaryManifest manifest = new SummaryManifest();
+        manifest.put(new SummaryManifest.Entry("summaries/x/Summary-a b;c.csv", 5, "\"e\"",
+                Arrays.asList(new SummaryManifest.Input("a b/c.csv", "\"x/y\"", 7), new SummaryManifest.Input("plain.csv", null, -1))));
+
+        SummaryManifest read = SummaryManifest.read(new ByteArrayInputStream(manifest.toBytes()));
+
+        List<SummaryManifest.Input> files = read.get("summaries/x/Summary-a b;c.csv").files;
+        assertEquals("a b/c.csv", files.get(0).name);
+        assertEquals("\"x/y\"", files.get(0).eTag);
+        assertEquals(7, files.get(0).size);
+        assertEquals("plain.csv", files.get(1).name);
+        assertNull(files.get(1).eTag);
+    }
+
+    @Test
+    public void storeFileDeletesTheSummariesOfANewVersion() throws IOException {
+        recordBatch(input("store1", "\"old\"", 10));
+        byte[] content = SyntheticSales.generate(DATE, 10, 2, 3, 1);
+        store.put("input", DATE + "-store1.csv", content, "text/csv", null);
+        SummaryWriter writer = new SummaryWriter(store);
+
+        try (BoundedAggregate aggregate = SalesFileReader.read(store, "input", DATE + "-store1.csv")) {
+            writer.storeFile("input", DATE + "-store1.csv", aggregate);
+            fail("Stored a second version of store1");
+        } catch (ManifestWriter.ChangedFilesException expected) {
+            // expected
+        }
+        // Only the manifest is left under the date
+        assertEquals(1, store.list(BUCKET, SummaryManifest.datePrefix(DATE)).size());
+        assertEquals(Arrays.asList(BATCH), keys(manifest()));
+    }
+
+    @Test
+    public void retriesOnTheManifestOfTheWriterThatWon() throws IOException {
+        // Another worker records a summary just before each of the first three writes
+        int[] conflicts = {3};
+        ObjectStore racing = new ForwardingObjectStore(store) {
+            @Override
+            public String putIfMatch(String bucketName, String key, byte[] content, String contentType, String expectedETag) throws IOException {
+                if (conflicts[0] > 0) {
+                    ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(single("other" + conflicts[0]--, "\"o\"", 1)));
+                }
+                return store.putIfMatch(bucketName, key, content, contentType, expectedETag);
+            }
+        };
+
+        assertTrue(ManifestWriter.record(racing, BUCKET, DATE, Arrays.asList(single("store1", "\"a\"", 10))).isEmpty());
+
+        assertEquals(4, manifest().entries().size());
+        assertEquals(0, conflicts[0]);
+    }
+
+    @Test
+    public void writesTheSummariesRecordedAtOnceTogether() throws Exception {
+        int[] writes = {0};
+        ObjectStore counting = new ForwardingObjectStore(store) {
+            @Override
+            public String putIfMatch(String bucketName, String key, byte[] content, String contentType, String expectedETag) throws IOException {
+                synchronized (writes) {
+                    writes[0]++;
+                }
+                return store.putIfMatch(bucketName, key, content, contentType, expectedETag);
+            }
+        };
+        int files = 200;
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<Map<String, String>>> results = new ArrayList<>();
+            for (int i = 0; i < files; i++) {
+                SummaryManifest.Entry summary = single("store" + i, "\"e" + i + "\"", i);
+                results.add(pool.submit(() -> ManifestWriter.record(counting, BUCKET, DATE, Arrays.asList(summary))));
+            }
+            for (Future<Map<String, String>> result : results) {
+                assertTrue(result.get().isEmpty());
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(files, manifest().entries().size());
+        assertTrue(writes[0] + " writes", writes[0] < files);
+    }
+
+    @Test
+    public void aRoundDecidesEachCallOnItsOwn() throws Exception {
+        recordBatch(input("store1", "\"a\"", 10));
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        try {
+            Future<Map<String, String>> redelivered = pool.submit(() ->
+                    ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(single("store1", "\"a\"", 10))));
+            Future<Map<String, String>> changed = pool.submit(() ->
+                    ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(single("store1", "\"a2\"", 10))));
+            Future<Map<String, String>> added = pool.submit(() ->
+                    ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(single("store2", "\"b\"", 20))));
+
+            assertEquals(Collections.singletonMap(DATE + "-store1.csv", BATCH), redelivered.get());
+            try {
+                changed.get();
+                fail("Recorded a second version of store1");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof ManifestWriter.ChangedFilesException);
+            }
+            assertTrue(added.get().isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(Arrays.asList(BATCH, SummaryManifest.summaryKey(DATE + "-store2.csv")), keys(manifest()));
+    }
+
+    @Test
+    public void rewriteRunsAgainOnSummariesRecordedMeanwhile() throws IOException {
+        ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(single("store1", "\"a\"", 10)));
+        List<Integer> seen = new ArrayList<>();
+
+        SummaryManifest written = ManifestWriter.rewrite(store, BUCKET, DATE, current -> {
+            seen.add(current.entries().size());
+            if (seen.size() == 1) {
+                ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(single("store2", "\"b\"", 20)));
+            }
+            return current;
+        });
+
+        assertEquals(Arrays.asList(1, 2), seen);
+        assertEquals(2, written.entries().size());
+        assertEquals(2, manifest().entries().size());
+    }
+
+    @Test
+    public void rewriteIgnoresAManifestItCannotRead() throws IOException {
+        store.put(BUCKET, SummaryManifest.manifestKey(DATE), "not;a;manifest\n".getBytes(StandardCharsets.UTF_8), "text/plain", null);
+        SummaryManifest[] handed = {new SummaryManifest()};
+
+        ManifestWriter.rewrite(store, BUCKET, DATE, current -> {
+            handed[0] = current;
+            SummaryManifest rewritten = new SummaryManifest();
+            rewritten.put(single("store1", "\"a\"", 10));
+            return rewritten;
+        });
+
+        assertNull(handed[0]);
+        assertEquals(1, manifest().entries().size());
+    }
+
+    private void recordBatch(SummaryManifest.Input... files) throws IOException {
+        SummaryManifest.Entry batch = new SummaryManifest.Entry(BATCH, 100, "\"batch\"", Arrays.asList(files));
+        assertTrue(ManifestWriter.record(store, BUCKET, DATE, Arrays.asList(batch)).isEmpty());
+    }
+
+    private static SummaryManifest.Input input(String store, String eTag, long size) {
+        return new SummaryManifest.Input(DATE + "-" + store + ".csv", eTag, size);
+    }
+
+    private static SummaryManifest.Entry single(String store, String eTag, long size) {
+        SummaryManifest.Input file = input(store, eTag, size);
+        List<SummaryManifest.Input> files = eTag == null ? Collections.emptyList() : Collections.singletonList(file);
+        return new SummaryManifest.Entry(SummaryManifest.summaryKey(file.name), 50, "\"s\"", files);
+    }
+
+    private SummaryManifest manifest() throws IOException {
+        return SummaryManifest.read(new ByteArrayInputStream(manifestBytes()));
+    }
+
+    private byte[] manifestBytes() throws IOException {
+        try (StoredObject manifest = store.get(BUCKET, SummaryManifest.manifestKey(DATE))) {
+            return manifest.content().readAllBytes();
+        }
+    }
+
+    private static List<String> keys(SummaryManifest manifest) {
+        List<String> keys = new ArrayList<>();
+        for (SummaryManifest.Entry entry : manifest.entries()) {
+            keys.add(entry.key);
+        }
+        return keys;
+    }
+}
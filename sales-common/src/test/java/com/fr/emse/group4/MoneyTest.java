@@ -0,0 +1,98 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class MoneyTest {
+
+    @Test
+    public void formatsTwoDecimals() {
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("0.50", Money.format(50));
+        assertEquals("1234.56", Money.format(123456));
+    }
+
+    @Test
+    public void formatsNegativeAmountsBelowOneUnit() {
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("-1.05", Money.format(-105));
+    }
+
+    @Test
+    public void parsesPlainDecimals() {
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(150, Money.parse("+1.5"));
+        assertEquals(-50, Money.parse("-0.5"));
+        assertEquals(50, Money.parse(".5"));
+        assertEquals(100, Money.parse("1."));
+        assertEquals(310, Money.parse(" 3.10 "));
+    }
+
+    @Test
+    public void roundsHalfAwayFromZero() {
+        assertEquals(1, Money.parse("0.005"));
+        assertEquals(0, Money.parse("0.0049"));
+        assertEquals(-1, Money.parse("-0.005"));
+        assertEquals(1235, Money.toCents(12345, 3));
+        assertEquals(1234, Money.toCents(12344, 3));
+        assertEquals(1235, Money.toUnitAmount(12345, 5));
+        assertEquals(1, Money.toUnitAmount(5, 5));
+    }
+
+    @Test
+    public void roundsRowAmountsOnceMultiplied() {
+        // 0.005 and 0.0049 per unit, in ten-thousandths
+        assertEquals(500, Money.rowCents(50, 1000));
+        assertEquals(490, Money.rowCents(49, 1000));
+        assertEquals(1, Money.rowCents(50, 1));
+        assertEquals(-1, Money.rowCents(-50, 1));
+        assertEquals(0, Money.rowCents(49, 1));
+    }
+
+    @Test
+    public void computesRowAmountsPastALong() {
+        // 10^6 per unit times the largest quantity is past a long of ten-thousandths, not of cents
+        assertEquals(100_000_000L * Integer.MAX_VALUE, Money.rowCents(10_000_000_000L, Integer.MAX_VALUE));
+        assertEquals(-100_000_000L * Integer.MAX_VALUE, Money.rowCents(-10_000_000_000L, Integer.MAX_VALUE));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void rejectsRowAmountsPastALongOfCents() {
+        Money.rowCents(Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void parsesScientificNotation() {
+        assertEquals(1_234_500_000L, Money.parse("1.2345E7"));
+        assertEquals(2, Money.parse("1.5e-2"));
+        assertEquals(0, Money.parse("1e-3"));
+    }
+
+    @Test
+    public void parsesLongNumbersPastTheFastPath() {
+        // 16 digits are parsed from the characters, 17 go through BigDecimal
+        assertEquals(999_999_999_999_999_900L, Money.parse("9999999999999999"));
+        assertEquals(1_234_567_890_123_456_700L, Money.parse("12345678901234567"));
+        assertEquals(1_234_567_890_123_456_789L, Money.parse("12345678901234567.891"));
+    }
+
+    @Test
+    public void rejectsInvalidAmounts() {
+        for (String value : new String[] {"", " ", "-", ".", "1.2.3", "abc", "1,5", "--1"}) {
+            try {
+                Money.parse(value);
+                fail("Parsed \"" + value + "\"");
+            } catch (NumberFormatException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void rejectsAmountsOutOfRange() {
+        Money.parse("99999999999999999999");
+    }
+}
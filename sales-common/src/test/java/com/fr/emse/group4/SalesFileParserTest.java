@@ -0,0 +1,134 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SalesFileParserTest {
+
+    private static final String HEADER = "Date;Store;Product;Quantity;Unit Price;Unit Cost;Unit Profit\n";
+
+    private final SalesFileParser parser = new SalesFileParser();
+    private final NameDictionary stores = new NameDictionary();
+    private final NameDictionary products = new NameDictionary();
+
+    @Test
+    public void parsesRowsAfterTheHeader() throws IOException {
+        List<String> rows = parse(HEADER
+                + "01-01-2024;Lyon;Pen;3;1.50;1.00;0.50\n"
+                + "01-01-2024;Paris;Book;1;12;8;4\n");
+        assertEquals(Arrays.asList("Lyon Pen 3 450 150", "Paris Book 1 1200 400"), rows);
+        assertEquals(2, parser.rowCount());
+        assertEquals(0, parser.malformedRowCount());
+    }
+
+    @Test
+    public void acceptsCrLfBlankLinesAndNoFinalNewline() throws IOException {
+        List<String> rows = parse(HEADER.replace("\n", "\r\n")
+                + "01-01-2024;Lyon;Pen;3;1.50;1.00;0.50\r\n"
+                + "\r\n"
+                + "\n"
+                + "01-01-2024;Lyon;Pen;2;1.50;1.00; 0.50 ");
+        assertEquals(Arrays.asList("Lyon Pen 3 450 150", "Lyon Pen 2 300 100"), rows);
+        assertEquals(0, parser.malformedRowCount());
+    }
+
+    @Test
+    public void parsesIntegerAndAmountBoundaries() throws IOException {
+        List<String> rows = parse(HEADER
+                + "d;S;P;2147483647;0.005;0;-0.005\n"
+                + "d;S;P;-2147483648;1.2345E2;0;1e-3\n"
+                + "d;S;P;+1;123456789012345;0;0\n");
+        assertEquals(Arrays.asList("S P 2147483647 1073741824 -1073741824", "S P -2147483648 -26510685634560 -214748365",
+                "S P 1 12345678901234500 0"), rows);
+        assertEquals(0, parser.malformedRowCount());
+    }
+
+    @Test
+    public void roundsRowAmountsNotUnitAmounts() throws IOException {
+        List<String> rows = parse(HEADER
+                + "d;S;P;1000;0.005;0;0.0049\n"
+                + "d;S;P;3;0.3333;0;-0.005\n"
+                + "d;S;P;1;0.005;0;0.00005\n");
+        assertEquals(Arrays.asList("S P 1000 500 490", "S P 3 100 -2", "S P 1 1 0"), rows);
+    }
+
+    @Test
+    public void countsAndSkipsMalformedRows() throws IOException {
+        List<String> rows = parse(HEADER
+                + "d;S;P;1;1;1\n"              // six fields
+                + "d;S;P;2147483648;1;0;1\n"   // quantity overflows an int
+                + "d;S;P;-;1;0;1\n"
+                + "d;S;P;1.5;1;0;1\n"
+                + "d;S;P;1;;0;1\n"
+                + "d;S;P;1;1,5;0;1\n"
+                + "d;S;P;1;1e;0;1\n"
+                + "d;S;P;1;--1;0;1\n"
+                + "d;S;P;1;1;0;99999999999999999999\n"
+                + "d;S;P;2147483647;99999999999999;0;1\n"  // amount overflows a long of cents
+                + "d;S;P;1;2;0;1\n");
+        assertEquals(Arrays.asList("S P 1 200 100"), rows);
+        assertEquals(1, parser.rowCount());
+        assertEquals(10, parser.malformedRowCount());
+    }
+
+    @Test
+    public void readsLinesLongerThanTheBuffer() throws IOException {
+        SalesFileParser small = new SalesFileParser(16);
+        String longName = String.join("", java.util.Collections.nCopies(100, "x"));
+        List<String> rows = new ArrayList<>();
+        small.parse(trickle(HEADER + "d;" + longName + ";P;1;1;0;1\nd;S;P;2;1;0;1\n"), true, stores, products,
+                (store, product, quantity, price, profit) -> rows.add(stores.name(store) + " " + quantity));
+        assertEquals(Arrays.asList(longName + " 1", "S 2"), rows);
+    }
+
+    @Test
+    public void stopsAtTheLimit() throws IOException {
+        String first = "d;S;A;1;1;0;1\n";
+        String second = "d;S;B;1;1;0;1\n";
+        String content = first + second + "d;S;C;1;1;0;1\n";
+        // A line starting before the limit is read to its end; one starting at the limit is not
+        assertEquals(Arrays.asList("S A 1 100 100", "S B 1 100 100"), parse(content, false, first.length() + 1));
+        assertEquals(Arrays.asList("S A 1 100 100"), parse(content, false, first.length()));
+        // Skipping the first line drops the partial line a previous range owns
+        assertEquals(Arrays.asList("S B 1 100 100"), parse(content.substring(3), true, first.length() - 3 + 1));
+    }
+
+    @Test
+    public void resetsCountsBetweenFiles() throws IOException {
+        parse(HEADER + "d;S;P;x;1;0;1\nd;S;P;1;1;0;1\n");
+        parse(HEADER + "d;S;P;1;1;0;1\n");
+        assertEquals(1, parser.rowCount());
+        assertEquals(0, parser.malformedRowCount());
+    }
+
+    private List<String> parse(String content) throws IOException {
+        return parse(content, true, Long.MAX_VALUE);
+    }
+
+    private List<String> parse(String content, boolean skipFirstLine, long limit) throws IOException {
+        List<String> rows = new ArrayList<>();
+        parser.parse(trickle(content), skipFirstLine, limit, stores, products,
+                (store, product, quantity, price, profit) ->
+                        rows.add(stores.name(store) + " " + products.name(product) + " " + quantity + " " + price + " " + profit));
+        return rows;
+    }
+
+    // Hands out a few bytes per read, so lines and fields cross the ends of reads
+    private static InputStream trickle(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 5));
+            }
+        };
+    }
+}
@@ -0,0 +1,114 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SalesFileReaderTest {
+
+    private static final String BUCKET = "input";
+
+    @Test
+    public void rangesSplitAnywhereGiveTheTotalsOfOneRead() throws IOException {
+        // Short lines, so range boundaries fall on every position in a line: its first byte, its
+        // newline, and the bytes around them
+        String content = "Date;Store;Product;Quantity;Unit Price;Unit Cost;Unit Profit\n"
+                + "d;S1;A;1;1.00;0;1.00\n"
+                + "d;S2;B;2;2.00;0;1.50\r\n"
+                + "d;S1;C;3;0.10;0;0.05\n"
+                + "\n"
+                + "d;S2;A;4;1.00;0;1.00\n"
+                + "d;S3;D;5;9.99;0;3.33";
+        MemoryObjectStore store = store("small.csv", content.getBytes(StandardCharsets.UTF_8));
+        String expected = describe(SalesFileReader.read(store, BUCKET, "small.csv", Integer.MAX_VALUE, 1));
+        for (int ranges = 2; ranges <= content.length(); ranges++) {
+            assertEquals(ranges + " ranges", expected,
+                    describe(SalesFileReader.read(store, BUCKET, "small.csv", Integer.MAX_VALUE, ranges)));
+        }
+    }
+
+    @Test
+    public void rangesKeepProductOrderAndMalformedCounts() throws IOException {
+        byte[] content = SyntheticSales.generate("01-01-2024", 2000, 10, 300, 7);
+        byte[] withMalformed = (new String(content, StandardCharsets.UTF_8) + "d;S;P;x;1;0;1\n").getBytes(StandardCharsets.UTF_8);
+        MemoryObjectStore store = store("synthetic.csv", withMalformed);
+        String expected = describe(SalesFileReader.read(store, BUCKET, "synthetic.csv", Integer.MAX_VALUE, 1));
+        for (int ranges : new int[] {2, 3, 7, 16, 61}) {
+            assertEquals(ranges + " ranges", expected,
+                    describe(SalesFileReader.read(store, BUCKET, "synthetic.csv", Integer.MAX_VALUE, ranges)));
+        }
+    }
+
+    @Test
+    public void rangesThatSpillGiveTheSameTotals() throws IOException {
+        MemoryObjectStore store = store("synthetic.csv", SyntheticSales.generate("01-01-2024", 2000, 10, 300, 11));
+        String expected = describe(SalesFileReader.read(store, BUCKET, "synthetic.csv", Integer.MAX_VALUE, 1));
+        assertEquals(expected, describe(SalesFileReader.read(store, BUCKET, "synthetic.csv", 50, 4)));
+    }
+
+    @Test
+    public void rangedReadsLookTheFileUpWithoutOpeningIt() throws IOException {
+        List<String> calls = new ArrayList<>();
+        ObjectStore recording = new ForwardingObjectStore(store("synthetic.csv", SyntheticSales.generate("01-01-2024", 200, 2, 30, 5))) {
+            @Override
+            public StoredObject get(String bucketName, String key) throws IOException {
+                calls.add("get");
+                return super.get(bucketName, key);
+            }
+
+            @Override
+            public StoredObject head(String bucketName, String key) throws IOException {
+                calls.add("head");
+                return super.head(bucketName, key);
+            }
+        };
+
+        try (BoundedAggregate aggregate = SalesFileReader.read(recording, BUCKET, "synthetic.csv", Integer.MAX_VALUE, 4)) {
+            assertEquals(Arrays.asList("head"), calls);
+            assertEquals(recording.head(BUCKET, "synthetic.csv").eTag, aggregate.inputETag());
+        }
+    }
+
+    @Test
+    public void aMissingFileIsNotFound() throws IOException {
+        try {
+            SalesFileReader.read(new MemoryObjectStore(), BUCKET, "missing.csv", Integer.MAX_VALUE, 4);
+            fail("Read a missing file");
+        } catch (FileNotFoundException expected) {
+            // expected
+        }
+    }
+
+    private static MemoryObjectStore store(String key, byte[] content) {
+        MemoryObjectStore store = new MemoryObjectStore();
+        store.put(BUCKET, key, content, "text/csv", null);
+        return store;
+    }
+
+    // Stores and products with their totals, products in the order they are summarized
+    private static String describe(BoundedAggregate aggregate) throws IOException {
+        try (BoundedAggregate read = aggregate) {
+            StringBuilder sb = new StringBuilder();
+            SalesAggregate stores = read.stores();
+            for (int i = 0; i < stores.storeCount(); i++) {
+                sb.append(stores.storeName(i)).append('=').append(stores.storeProfit(i)).append('\n');
+            }
+            read.forEach(chunk -> {
+                for (int i = 0; i < chunk.productCount(); i++) {
+                    sb.append(chunk.productName(i)).append('=').append(chunk.productQuantity(i)).append('/')
+                            .append(chunk.productSold(i)).append('/').append(chunk.productProfit(i)).append('\n');
+                }
+            });
+            sb.append("products=").append(read.productCount()).append(" malformed=").append(read.malformedRowCount());
+            return sb.toString();
+        }
+    }
+}
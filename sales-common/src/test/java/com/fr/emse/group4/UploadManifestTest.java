@@ -0,0 +1,111 @@
+package com.fr.emse.group4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UploadManifestTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void savedEntriesAreReadBack() throws IOException {
+        Path path = folder.getRoot().toPath().resolve(".upload-manifest");
+        UploadManifest manifest = UploadManifest.load(path);
+        assertFalse(manifest.existed());
+        manifest.put("01-01-2024-a;b.csv", new UploadManifest.Entry(10, 1000, 0xCAFEBABEL));
+        manifest.save();
+
+        UploadManifest read = UploadManifest.load(path);
+
+        assertTrue(read.existed());
+        UploadManifest.Entry entry = read.get("01-01-2024-a;b.csv");
+        assertEquals(10, entry.size);
+        assertEquals(1000, entry.modifiedMillis);
+        assertEquals(0xCAFEBABEL, entry.crc);
+    }
+
+    @Test
+    public void checksumsAreCrc32c() throws IOException {
+        byte[] content = SyntheticSales.generate("01-01-2024", 100, 1, 10, 1);
+        Path file = folder.newFile("01-01-2024-store1.csv").toPath();
+        Files.write(file, content);
+        CRC32C expected = new CRC32C();
+        expected.update(content);
+        assertEquals(expected.getValue(), UploadManifest.checksum(file));
+    }
+
+    @Test
+    public void entriesOfAnEarlierVersionHaveNoChecksum() throws IOException {
+        Path path = folder.getRoot().toPath().resolve(".upload-manifest");
+        Files.write(path, Arrays.asList("01-01-2024-store1.csv;10;1000;1c291ca3"), StandardCharsets.UTF_8);
+
+        UploadManifest manifest = UploadManifest.load(path);
+
+        assertTrue(manifest.existed());
+        UploadManifest.Entry entry = manifest.get("01-01-2024-store1.csv");
+        assertEquals(10, entry.size);
+        assertEquals(UploadManifest.UNKNOWN_CRC, entry.crc);
+    }
+
+    @Test
+    public void aManifestOfAnUnknownVersionIsIgnored() throws IOException {
+        Path path = folder.getRoot().toPath().resolve(".upload-manifest");
+        Files.write(path, Arrays.asList("#upload-manifest 3", "01-01-2024-store1.csv;10;1000;1c291ca3"), StandardCharsets.UTF_8);
+
+        UploadManifest manifest = UploadManifest.load(path);
+
+        assertFalse(manifest.existed());
+        assertNull(manifest.get("01-01-2024-store1.csv"));
+    }
+
+    @Test
+    public void unchangedFilesOfAnEarlierManifestAreChecksummedWithoutAnUpload() throws IOException {
+        Path file = folder.newFile("01-01-2024-store1.csv").toPath();
+        Files.write(file, SyntheticSales.generate("01-01-2024", 100, 1, 10, 1));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(1000));
+        Path path = folder.getRoot().toPath().resolve(".upload-manifest");
+        Files.write(path, Arrays.asList("01-01-2024-store1.csv;" + Files.size(file) + ";1000;1c291ca3"), StandardCharsets.UTF_8);
+        List<String> uploads = new ArrayList<>();
+        UploadStore store = new UploadStore() {
+            @Override
+            public void createBucketIfMissing() {
+            }
+
+            @Override
+            public boolean exists(String key) {
+                return false;
+            }
+
+            @Override
+            public void put(String key, Path body, String contentEncoding) {
+                uploads.add(key);
+            }
+        };
+
+        try (UploadEngine engine = new UploadEngine(store, "input", 1,
+                new NotificationBatcher(bodies -> Collections.emptyList(), 50), UploadManifest.load(path), false)) {
+            engine.submit(file, "01-01-2024-store1.csv");
+        }
+
+        assertTrue(uploads.isEmpty());
+        assertEquals(UploadManifest.checksum(file), UploadManifest.load(path).get("01-01-2024-store1.csv").crc);
+    }
+}